@@ -18,7 +18,6 @@ package com.google.auto.common;
 import static com.google.auto.common.MoreElements.asExecutable;
 import static com.google.auto.common.MoreElements.asPackage;
 import static com.google.auto.common.MoreElements.isAnnotationPresent;
-import static com.google.auto.common.SuperficialValidation.validateElement;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Iterables.transform;
@@ -29,6 +28,7 @@ import static javax.tools.Diagnostic.Kind.ERROR;
 import com.google.common.base.Ascii;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicates;
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
@@ -36,7 +36,11 @@ import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
 import java.lang.annotation.Annotation;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import javax.annotation.processing.AbstractProcessor;
@@ -44,12 +48,14 @@ import javax.annotation.processing.Messager;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.Processor;
 import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Name;
 import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.ErrorType;
+import javax.lang.model.util.ElementFilter;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.SimpleElementVisitor8;
 
@@ -73,7 +79,15 @@ import javax.lang.model.util.SimpleElementVisitor8;
  * <p>A non-package element is considered well-formed if its type, type parameters, parameters,
  * default values, supertypes, annotations, and enclosed elements are. Package elements are treated
  * similarly, except that their enclosed elements are not validated. See {@link
- * SuperficialValidation#validateElement(Element)} for details.
+ * SuperficialValidation#validateElement(Element)} for details. Each type is validated at most once
+ * per round, however many annotated elements it encloses, and a type that has been found valid is
+ * not validated again in later rounds.
+ *
+ * <p>When an element is deferred because it references types that cannot be resolved, the names
+ * of those types are remembered (see {@link SuperficialValidation#missingTypeNames(Element)}). In
+ * later rounds, the element is only looked at again once a type with one of those names has been
+ * generated; until then it stays deferred without being validated. Elements that are invalid for
+ * some other reason are looked at again in every round.
  *
  * <p>The primary disadvantage to this validation is that any element that forms a circular
  * dependency with a type generated by another {@code BasicAnnotationProcessor} will never compile
@@ -98,16 +112,28 @@ import javax.lang.model.util.SimpleElementVisitor8;
  * <p>However, if {@code A} references {@code B} only indirectly (for example, from within a method
  * body), then the well-formedness check will not defer processing {@code A}, but a processing step
  * can reject {@code A}.
+ *
+ * <h3>Profiling</h3>
+ *
+ * If the {@code -Aauto.profile=<path>} option is given, then at the end of each round the processor
+ * appends to that file a line of JSON with the time spent validating elements and in each step,
+ * the number of elements deferred to the next round, and the number of deferred elements that were
+ * not looked at again because none of the types they were waiting for had been generated.
  */
 public abstract class BasicAnnotationProcessor extends AbstractProcessor {
 
   private final Set<ElementName> deferredElementNames = new LinkedHashSet<>();
   private final SetMultimap<ProcessingStep, ElementName> elementsDeferredBySteps =
       LinkedHashMultimap.create();
+  private final ValidationCache validationCache = new ValidationCache();
+  // For each element in deferredElementNames, the simple names of the missing types that it is
+  // waiting for, or an empty set if they are not known.
+  private final Map<ElementName, ImmutableSet<String>> missingTypeNames = new HashMap<>();
 
   private Elements elements;
   private Messager messager;
   private ImmutableList<? extends ProcessingStep> steps;
+  private ProfileReport profileReport;
 
   @Override
   public final synchronized void init(ProcessingEnvironment processingEnv) {
@@ -115,6 +141,7 @@ public abstract class BasicAnnotationProcessor extends AbstractProcessor {
     this.elements = processingEnv.getElementUtils();
     this.messager = processingEnv.getMessager();
     this.steps = ImmutableList.copyOf(initSteps());
+    this.profileReport = ProfileReport.create(processingEnv, getClass().getSimpleName());
   }
 
   /**
@@ -160,6 +187,18 @@ public abstract class BasicAnnotationProcessor extends AbstractProcessor {
     return builder.build();
   }
 
+  /**
+   * Returns the options supported by this processor, which are those given by a {@link
+   * javax.annotation.processing.SupportedOptions} annotation, plus {@code auto.profile}.
+   */
+  @Override
+  public Set<String> getSupportedOptions() {
+    return ImmutableSet.<String>builder()
+        .addAll(super.getSupportedOptions())
+        .add(ProfileReport.PROFILE_OPTION)
+        .build();
+  }
+
   @Override
   public final boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
     checkState(elements != null);
@@ -169,6 +208,7 @@ public abstract class BasicAnnotationProcessor extends AbstractProcessor {
     // If this is the last round, report all of the missing elements if there
     // were no errors raised in the round; otherwise reporting the missing
     // elements just adds noise the output.
+    profileReport.startRound();
     if (roundEnv.processingOver()) {
       postRound(roundEnv);
       if (!roundEnv.errorRaised()) {
@@ -178,12 +218,18 @@ public abstract class BasicAnnotationProcessor extends AbstractProcessor {
                 .addAll(elementsDeferredBySteps.values())
                 .build());
       }
+      profileReport.endRound(0);
       return false;
     }
 
-    process(validElements(roundEnv));
+    long start = profileReport.now();
+    ImmutableSetMultimap<Class<? extends Annotation>, Element> validElements =
+        validElements(roundEnv);
+    profileReport.add("phases", "validate", start);
+    process(validElements);
 
     postRound(roundEnv);
+    profileReport.endRound(deferredElementNames.size() + elementsDeferredBySteps.size());
 
     return false;
   }
@@ -199,7 +245,9 @@ public abstract class BasicAnnotationProcessor extends AbstractProcessor {
       if (stepElements.isEmpty()) {
         elementsDeferredBySteps.removeAll(step);
       } else {
+        long start = profileReport.now();
         Set<? extends Element> rejectedElements = step.process(stepElements);
+        profileReport.add("steps", step.getClass().getName(), start);
         elementsDeferredBySteps.replaceValues(
             step, transform(rejectedElements, ElementName::forAnnotatedElement));
       }
@@ -235,12 +283,23 @@ public abstract class BasicAnnotationProcessor extends AbstractProcessor {
    */
   private ImmutableSetMultimap<Class<? extends Annotation>, Element> validElements(
       RoundEnvironment roundEnv) {
+    validationCache.startRound();
     ImmutableSet<ElementName> prevDeferredElementNames = ImmutableSet.copyOf(deferredElementNames);
     deferredElementNames.clear();
 
     ImmutableSetMultimap.Builder<Class<? extends Annotation>, Element>
         deferredElementsByAnnotationBuilder = ImmutableSetMultimap.builder();
+    Set<String> newTypeNames = newTypeNames(roundEnv);
+    int retriesSkipped = 0;
     for (ElementName deferredElementName : prevDeferredElementNames) {
+      ImmutableSet<String> waitingFor =
+          missingTypeNames.getOrDefault(deferredElementName, ImmutableSet.of());
+      if (!waitingFor.isEmpty() && Collections.disjoint(waitingFor, newTypeNames)) {
+        // Nothing that it was waiting for has been generated, so it would still be invalid.
+        deferredElementNames.add(deferredElementName);
+        retriesSkipped++;
+        continue;
+      }
       Optional<? extends Element> deferredElement = deferredElementName.getElement(elements);
       if (deferredElement.isPresent()) {
         findAnnotatedElements(
@@ -272,11 +331,21 @@ public abstract class BasicAnnotationProcessor extends AbstractProcessor {
       ImmutableSet<Element> prevRoundElements = deferredElementsByAnnotation.get(annotationClass);
       for (Element element : Sets.union(roundElements, prevRoundElements)) {
         ElementName elementName = ElementName.forAnnotatedElement(element);
-        boolean isValidElement =
-            validElementNames.contains(elementName)
-                || (!deferredElementNames.contains(elementName)
-                    && validateElement(
-                        element.getKind().equals(PACKAGE) ? element : getEnclosingType(element)));
+        boolean isValidElement;
+        if (validElementNames.contains(elementName)) {
+          isValidElement = true;
+        } else if (deferredElementNames.contains(elementName)) {
+          isValidElement = false;
+        } else {
+          Element validatedElement =
+              element.getKind().equals(PACKAGE) ? element : getEnclosingType(element);
+          isValidElement = validationCache.validate(validatedElement);
+          if (!isValidElement) {
+            missingTypeNames.put(
+                elementName,
+                simpleNames(SuperficialValidation.missingTypeNames(validatedElement)));
+          }
+        }
         if (isValidElement) {
           validElements.put(annotationClass, element);
           validElementNames.add(elementName);
@@ -286,9 +355,49 @@ public abstract class BasicAnnotationProcessor extends AbstractProcessor {
       }
     }
 
+    missingTypeNames.keySet().retainAll(deferredElementNames);
+    profileReport.count("retriesSkipped", retriesSkipped);
     return validElements.build();
   }
 
+  /**
+   * Returns every identifier in the given type names, since a missing {@code a.b.C} might be
+   * resolved by generating a type called {@code a}, {@code b}, or {@code C}. Returns an empty set
+   * if any of the names is not made of identifiers, so that nothing is known about when the types
+   * might be generated.
+   */
+  private static ImmutableSet<String> simpleNames(Set<String> typeNames) {
+    ImmutableSet.Builder<String> simpleNames = ImmutableSet.builder();
+    for (String typeName : typeNames) {
+      for (String simpleName : Splitter.on('.').split(typeName)) {
+        if (!SourceVersion.isIdentifier(simpleName)) {
+          return ImmutableSet.of();
+        }
+        simpleNames.add(simpleName);
+      }
+    }
+    return simpleNames.build();
+  }
+
+  /**
+   * Returns the simple names of the types that are new in this round, and of the types nested
+   * within them. Any type that was generated in the previous round is among them.
+   */
+  private static Set<String> newTypeNames(RoundEnvironment roundEnv) {
+    Set<String> names = new HashSet<>();
+    for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+      addTypeNames(type, names);
+    }
+    return names;
+  }
+
+  private static void addTypeNames(TypeElement type, Set<String> names) {
+    names.add(type.getSimpleName().toString());
+    for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+      addTypeNames(nested, names);
+    }
+  }
+
   private ImmutableSetMultimap<Class<? extends Annotation>, Element> indexByAnnotation(
       Set<ElementName> annotatedElements,
       Set<? extends Class<? extends Annotation>> annotationClasses) {
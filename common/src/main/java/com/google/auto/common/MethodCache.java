@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.common;
+
+import com.google.auto.common.Overrides.ExplicitOverrides;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+
+/**
+ * Remembers the results of {@link MoreElements#getAllMethods(TypeElement, Types,
+ * javax.lang.model.util.Elements) getAllMethods} and {@link
+ * MoreElements#getLocalAndInheritedMethods(TypeElement, Types, javax.lang.model.util.Elements)
+ * getLocalAndInheritedMethods}, so that a processor that asks about the same types, or about
+ * many types with common ancestors, does not walk the same hierarchies over and over. The methods
+ * of each type are found by merging the remembered methods of its supertypes with its own, so each
+ * ancestor is only examined once, however many paths lead to it.
+ *
+ * <p>The results are the same as those of the {@code MoreElements} methods, in the same order.
+ *
+ * <p>A cache holds on to every {@code TypeElement} it has seen. Since elements obtained in one
+ * round of annotation processing are not guaranteed to be meaningful in the next, a cache should
+ * be used within a single round, and then {@linkplain #clear cleared} or discarded.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class MethodCache {
+  private final Overrides overrides;
+
+  // For each type, all the methods of the type and its ancestors, including overridden ones, with
+  // those in ancestors before those in descendants.
+  private final Map<TypeElement, ImmutableList<ExecutableElement>> allMethodsIncludingOverridden =
+      new HashMap<>();
+  private final Map<TypeElement, ImmutableSet<ExecutableElement>> allMethods = new HashMap<>();
+  private final Map<TypeElement, ImmutableSet<ExecutableElement>> localAndInheritedMethods =
+      new HashMap<>();
+
+  /**
+   * Creates a cache that uses the given {@link Types} to determine whether one method overrides
+   * another.
+   */
+  public MethodCache(Types typeUtils) {
+    this.overrides = new ExplicitOverrides(typeUtils);
+  }
+
+  /**
+   * Returns the same result as {@link MoreElements#getAllMethods(TypeElement, Types,
+   * javax.lang.model.util.Elements)}.
+   */
+  public ImmutableSet<ExecutableElement> getAllMethods(TypeElement type) {
+    ImmutableSet<ExecutableElement> methods = allMethods.get(type);
+    if (methods == null) {
+      methods =
+          MoreElements.removeOverridden(type, allMethodsIncludingOverridden(type), overrides);
+      allMethods.put(type, methods);
+    }
+    return methods;
+  }
+
+  /**
+   * Returns the same result as {@link MoreElements#getLocalAndInheritedMethods(TypeElement, Types,
+   * javax.lang.model.util.Elements)}.
+   */
+  public ImmutableSet<ExecutableElement> getLocalAndInheritedMethods(TypeElement type) {
+    ImmutableSet<ExecutableElement> methods = localAndInheritedMethods.get(type);
+    if (methods == null) {
+      methods = MoreElements.localAndInheritedMethods(type, getAllMethods(type));
+      localAndInheritedMethods.put(type, methods);
+    }
+    return methods;
+  }
+
+  private ImmutableList<ExecutableElement> allMethodsIncludingOverridden(TypeElement type) {
+    // We can't use computeIfAbsent here, because this method is recursive.
+    ImmutableList<ExecutableElement> methods = allMethodsIncludingOverridden.get(type);
+    if (methods == null) {
+      // This visits supertypes in the same order as MoreElements.getAllMethods, so a method that
+      // is reachable more than once is kept at the position where that method first adds it.
+      Set<ExecutableElement> methodSet = new LinkedHashSet<>();
+      for (TypeMirror superInterface : type.getInterfaces()) {
+        methodSet.addAll(allMethodsIncludingOverridden(MoreTypes.asTypeElement(superInterface)));
+      }
+      if (type.getSuperclass().getKind() != TypeKind.NONE) {
+        methodSet.addAll(
+            allMethodsIncludingOverridden(MoreTypes.asTypeElement(type.getSuperclass())));
+      }
+      methodSet.addAll(ElementFilter.methodsIn(type.getEnclosedElements()));
+      methods = ImmutableList.copyOf(methodSet);
+      allMethodsIncludingOverridden.put(type, methods);
+    }
+    return methods;
+  }
+
+  /** Forgets all the types that have been seen. */
+  public void clear() {
+    allMethodsIncludingOverridden.clear();
+    allMethods.clear();
+    localAndInheritedMethods.clear();
+  }
+}
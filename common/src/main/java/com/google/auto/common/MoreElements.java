@@ -23,12 +23,13 @@ import com.google.auto.common.Overrides.ExplicitOverrides;
 import com.google.common.annotations.Beta;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
-import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.LinkedHashMultimap;
-import com.google.common.collect.SetMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multimaps;
 import java.lang.annotation.Annotation;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -346,10 +347,16 @@ public final class MoreElements {
 
   private static ImmutableSet<ExecutableElement> getLocalAndInheritedMethods(
       TypeElement type, Overrides overrides) {
+    return localAndInheritedMethods(type, getAllMethods(type, overrides));
+  }
+
+  // Filters the result of getAllMethods(type) to give the result of getLocalAndInheritedMethods.
+  static ImmutableSet<ExecutableElement> localAndInheritedMethods(
+      TypeElement type, ImmutableSet<ExecutableElement> allMethods) {
     PackageElement pkg = getPackage(type);
 
     ImmutableSet.Builder<ExecutableElement> methods = ImmutableSet.builder();
-    for (ExecutableElement method : getAllMethods(type, overrides)) {
+    for (ExecutableElement method : allMethods) {
       // Filter out all static and non-visible methods.
       if (!method.getModifiers().contains(STATIC) && methodVisibleFromPackage(method, pkg)) {
         methods.add(method);
@@ -413,52 +420,70 @@ public final class MoreElements {
 
   private static ImmutableSet<ExecutableElement> getAllMethods(
       TypeElement type, Overrides overrides) {
-    SetMultimap<String, ExecutableElement> methodMap = LinkedHashMultimap.create();
-    getAllMethods(type, methodMap);
-    // Find methods that are overridden. We do this using `Elements.overrides`, which means
-    // that it is inherently a quadratic operation, since we have to compare every method against
-    // every other method. We reduce the performance impact by (a) grouping methods by name, since
-    // a method cannot override another method with a different name, and (b) making sure that
-    // methods in ancestor types precede those in descendant types, which means we only have to
-    // check a method against the ones that follow it in that order.
-    Set<ExecutableElement> overridden = new LinkedHashSet<ExecutableElement>();
-    for (Collection<ExecutableElement> methods : methodMap.asMap().values()) {
-      List<ExecutableElement> methodList = ImmutableList.copyOf(methods);
-      for (int i = 0; i < methodList.size(); i++) {
-        ExecutableElement methodI = methodList.get(i);
-        for (int j = i + 1; j < methodList.size(); j++) {
-          ExecutableElement methodJ = methodList.get(j);
-          if (overrides.overrides(methodJ, methodI, type)) {
-            overridden.add(methodI);
-            break;
-          }
-        }
-      }
-    }
-    Set<ExecutableElement> methods = new LinkedHashSet<ExecutableElement>(methodMap.values());
-    methods.removeAll(overridden);
-    return ImmutableSet.copyOf(methods);
+    Set<ExecutableElement> methods = new LinkedHashSet<ExecutableElement>();
+    getAllMethods(type, methods, new HashSet<TypeElement>());
+    return removeOverridden(type, methods, overrides);
   }
 
   // Add to `methods` the static and instance methods from `type`. This means all methods from
   // `type` itself and all methods it inherits from its ancestors. This method does not take
   // overriding into account, so it will add both an ancestor method and a descendant method that
-  // overrides it. `methods` is a multimap from a method name to all of the methods with that name,
-  // including methods that override or overload one another. Within those methods, those in
-  // ancestor types always precede those in descendant types.
+  // overrides it. Methods in ancestor types always precede those in descendant types. A type that
+  // is reached more than once, through a diamond-shaped hierarchy, is only visited the first time,
+  // since visiting it again would not add anything.
   private static void getAllMethods(
-      TypeElement type, SetMultimap<String, ExecutableElement> methods) {
+      TypeElement type, Set<ExecutableElement> methods, Set<TypeElement> visited) {
+    if (!visited.add(type)) {
+      return;
+    }
     for (TypeMirror superInterface : type.getInterfaces()) {
-      getAllMethods(MoreTypes.asTypeElement(superInterface), methods);
+      getAllMethods(MoreTypes.asTypeElement(superInterface), methods, visited);
     }
     if (type.getSuperclass().getKind() != TypeKind.NONE) {
       // Visit the superclass after superinterfaces so we will always see the implementation of a
       // method after any interfaces that declared it.
-      getAllMethods(MoreTypes.asTypeElement(type.getSuperclass()), methods);
+      getAllMethods(MoreTypes.asTypeElement(type.getSuperclass()), methods, visited);
     }
-    for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
-      methods.put(method.getSimpleName().toString(), method);
+    methods.addAll(ElementFilter.methodsIn(type.getEnclosedElements()));
+  }
+
+  /**
+   * Returns {@code methods}, which are all the methods of {@code type} and its ancestors, minus
+   * those that are overridden by another of the methods. Within {@code methods}, those in ancestor
+   * types must precede those in descendant types.
+   */
+  static ImmutableSet<ExecutableElement> removeOverridden(
+      TypeElement type, Collection<ExecutableElement> methods, Overrides overrides) {
+    // Find methods that are overridden. We do this using `Overrides.overrides`, which means
+    // that it is inherently a quadratic operation, since we have to compare every method against
+    // every other method. We reduce the performance impact by (a) grouping methods by name and
+    // number of parameters, since a method cannot override another method that differs in either,
+    // and (b) making sure that methods in ancestor types precede those in descendant types, which
+    // means we only have to check a method against the ones that follow it in that order.
+    ListMultimap<String, ExecutableElement> methodMap = ArrayListMultimap.create();
+    for (ExecutableElement method : methods) {
+      methodMap.put(method.getSimpleName() + "/" + method.getParameters().size(), method);
+    }
+    Set<ExecutableElement> overridden = new HashSet<ExecutableElement>();
+    for (List<ExecutableElement> methodList : Multimaps.asMap(methodMap).values()) {
+      for (int i = 0; i < methodList.size(); i++) {
+        ExecutableElement methodI = methodList.get(i);
+        for (int j = i + 1; j < methodList.size(); j++) {
+          ExecutableElement methodJ = methodList.get(j);
+          if (overrides.overrides(methodJ, methodI, type)) {
+            overridden.add(methodI);
+            break;
+          }
+        }
+      }
+    }
+    ImmutableSet.Builder<ExecutableElement> result = ImmutableSet.builder();
+    for (ExecutableElement method : methods) {
+      if (!overridden.contains(method)) {
+        result.add(method);
+      }
     }
+    return result.build();
   }
 
   static boolean methodVisibleFromPackage(ExecutableElement method, PackageElement pkg) {
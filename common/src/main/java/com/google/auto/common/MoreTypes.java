@@ -29,6 +29,7 @@ import com.google.common.base.Objects;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -73,7 +74,7 @@ public final class MoreTypes {
 
     @Override
     protected int doHash(TypeMirror t) {
-      return MoreTypes.hash(t, ImmutableSet.<Element>of());
+      return MoreTypes.hash(t, new ArrayList<Element>());
     }
   }
 
@@ -91,6 +92,10 @@ public final class MoreTypes {
    * <li>If you want wildcard types to compare equal if they have the same bounds. {@code
    *     Types.isSameType} never considers wildcards equal, even when comparing a type to itself.
    * </ul>
+   *
+   * <p>If the same types are compared or hashed many times, {@link
+   * TypeMirrorInterner#equivalence()} gives the same results but only examines the structure of
+   * each {@code TypeMirror} once.
    */
   public static Equivalence<TypeMirror> equivalence() {
     return TypeEquivalence.INSTANCE;
@@ -352,7 +357,11 @@ public final class MoreTypes {
   private static final int HASH_SEED = 17;
   private static final int HASH_MULTIPLIER = 31;
 
-  private static final class HashVisitor extends SimpleTypeVisitor8<Integer, Set<Element>> {
+  // The visiting parameter is the list of the elements of the declared types that enclose the
+  // current one. Rather than copying it at each level, which would allocate a new collection for
+  // every declared type, each visitDeclared call adds its element and removes it again before
+  // returning. The list is usually very short, so searching it is faster than hashing.
+  private static final class HashVisitor extends SimpleTypeVisitor8<Integer, List<Element>> {
     private static final HashVisitor INSTANCE = new HashVisitor();
 
     int hashKind(int seed, TypeMirror t) {
@@ -362,12 +371,12 @@ public final class MoreTypes {
     }
 
     @Override
-    protected Integer defaultAction(TypeMirror e, Set<Element> visiting) {
+    protected Integer defaultAction(TypeMirror e, List<Element> visiting) {
       return hashKind(HASH_SEED, e);
     }
 
     @Override
-    public Integer visitArray(ArrayType t, Set<Element> visiting) {
+    public Integer visitArray(ArrayType t, List<Element> visiting) {
       int result = hashKind(HASH_SEED, t);
       result *= HASH_MULTIPLIER;
       result += t.getComponentType().accept(this, visiting);
@@ -375,25 +384,25 @@ public final class MoreTypes {
     }
 
     @Override
-    public Integer visitDeclared(DeclaredType t, Set<Element> visiting) {
+    public Integer visitDeclared(DeclaredType t, List<Element> visiting) {
       Element element = t.asElement();
       if (visiting.contains(element)) {
         return 0;
       }
-      Set<Element> newVisiting = new HashSet<Element>(visiting);
-      newVisiting.add(element);
+      visiting.add(element);
       int result = hashKind(HASH_SEED, t);
       result *= HASH_MULTIPLIER;
       result += t.asElement().hashCode();
       result *= HASH_MULTIPLIER;
-      result += t.getEnclosingType().accept(this, newVisiting);
+      result += t.getEnclosingType().accept(this, visiting);
       result *= HASH_MULTIPLIER;
-      result += hashList(t.getTypeArguments(), newVisiting);
+      result += hashList(t.getTypeArguments(), visiting);
+      visiting.remove(visiting.size() - 1);
       return result;
     }
 
     @Override
-    public Integer visitExecutable(ExecutableType t, Set<Element> visiting) {
+    public Integer visitExecutable(ExecutableType t, List<Element> visiting) {
       int result = hashKind(HASH_SEED, t);
       result *= HASH_MULTIPLIER;
       result += hashList(t.getParameterTypes(), visiting);
@@ -407,7 +416,7 @@ public final class MoreTypes {
     }
 
     @Override
-    public Integer visitTypeVariable(TypeVariable t, Set<Element> visiting) {
+    public Integer visitTypeVariable(TypeVariable t, List<Element> visiting) {
       int result = hashKind(HASH_SEED, t);
       result *= HASH_MULTIPLIER;
       result += t.getLowerBound().accept(this, visiting);
@@ -420,7 +429,7 @@ public final class MoreTypes {
     }
 
     @Override
-    public Integer visitWildcard(WildcardType t, Set<Element> visiting) {
+    public Integer visitWildcard(WildcardType t, List<Element> visiting) {
       int result = hashKind(HASH_SEED, t);
       result *= HASH_MULTIPLIER;
       result += (t.getExtendsBound() == null) ? 0 : t.getExtendsBound().accept(this, visiting);
@@ -430,12 +439,12 @@ public final class MoreTypes {
     }
 
     @Override
-    public Integer visitUnknown(TypeMirror t, Set<Element> visiting) {
+    public Integer visitUnknown(TypeMirror t, List<Element> visiting) {
       throw new UnsupportedOperationException();
     }
   };
 
-  private static int hashList(List<? extends TypeMirror> mirrors, Set<Element> visiting) {
+  private static int hashList(List<? extends TypeMirror> mirrors, List<Element> visiting) {
     int result = HASH_SEED;
     for (TypeMirror mirror : mirrors) {
       result *= HASH_MULTIPLIER;
@@ -444,7 +453,7 @@ public final class MoreTypes {
     return result;
   }
 
-  private static int hash(TypeMirror mirror, Set<Element> visiting) {
+  private static int hash(TypeMirror mirror, List<Element> visiting) {
     return mirror == null ? 0 : mirror.accept(HashVisitor.INSTANCE, visiting);
   }
 
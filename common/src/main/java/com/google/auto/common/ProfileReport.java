@@ -0,0 +1,204 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.common;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic;
+
+/**
+ * A report of where a processor spends its time, written if the {@code -Aauto.profile=<path>}
+ * option is given. At the end of each round, the processor appends one JSON object per line to the
+ * file at that path: one for each type it generated, if it records those, then one summarizing the
+ * round. {@link BasicAnnotationProcessor} records only the summary, for example:
+ *
+ * <pre>
+ * {"processor":"MyProcessor","round":2,"types":0,"deferred":2,"retriesSkipped":1,
+ *     "nanos":9800000,"phases":{"validate":410000},"steps":{"com.example.MyStep":5100000}}
+ * </pre>
+ *
+ * (Each object is on a single line in the actual file.) Several processors can share the same
+ * file, since each one appends to it. If the option is not given, every method returns
+ * immediately.
+ *
+ * <p>AutoFactory, AutoService and AutoValue depend on a released version of this library, so each
+ * has its own copy of the parts of this class that it uses. Changes to the format should be made
+ * in all of them.
+ */
+final class ProfileReport {
+  static final String PROFILE_OPTION = "auto.profile";
+
+  private final ProcessingEnvironment processingEnv;
+  private final String processorName;
+  private final Path path; // null if there is no report
+  private final List<String> lines = new ArrayList<>();
+  private final Map<String, Map<String, Long>> roundNanos = new LinkedHashMap<>();
+  private final Map<String, Long> roundCounts = new LinkedHashMap<>();
+  private int round;
+  private int typesInRound;
+  private long roundStart;
+
+  private ProfileReport(ProcessingEnvironment processingEnv, String processorName, Path path) {
+    this.processingEnv = processingEnv;
+    this.processorName = processorName;
+    this.path = path;
+  }
+
+  static ProfileReport create(ProcessingEnvironment processingEnv, String processorName) {
+    String pathString = processingEnv.getOptions().get(PROFILE_OPTION);
+    Path path = (pathString == null || pathString.isEmpty()) ? null : Paths.get(pathString);
+    return new ProfileReport(processingEnv, processorName, path);
+  }
+
+  boolean enabled() {
+    return path != null;
+  }
+
+  /** Returns the current time, for a later call to {@link #add} or {@link #addType}. */
+  long now() {
+    return enabled() ? System.nanoTime() : 0;
+  }
+
+  void startRound() {
+    if (enabled()) {
+      round++;
+      typesInRound = 0;
+      roundNanos.clear();
+      roundCounts.clear();
+      roundStart = System.nanoTime();
+    }
+  }
+
+  /**
+   * Adds the time since {@code start}, from {@link #now}, to the total for {@code name} in the
+   * given category of the round summary. For example, {@code add("phases", "validate", start)}.
+   */
+  void add(String category, String name, long start) {
+    if (enabled()) {
+      roundNanos
+          .computeIfAbsent(category, k -> new LinkedHashMap<>())
+          .merge(name, System.nanoTime() - start, Long::sum);
+    }
+  }
+
+  /**
+   * Adds {@code count} to the total for {@code name} in the round summary, where it appears after
+   * the number of deferred elements. For example, {@code count("retriesSkipped", 1)}.
+   */
+  void count(String name, long count) {
+    if (enabled()) {
+      roundCounts.merge(name, count, Long::sum);
+    }
+  }
+
+  /**
+   * Records a line for the given type, with the time since {@code start}, from {@link #now}, spent
+   * in the given phase.
+   *
+   * @param outcome {@code "generated"} or {@code "error"}.
+   */
+  void addType(String typeName, String outcome, String phase, long start) {
+    if (enabled()) {
+      typesInRound++;
+      Map<String, Long> nanos = new LinkedHashMap<>();
+      nanos.put(phase, System.nanoTime() - start);
+      StringBuilder line = startLine();
+      field(line, "type", typeName);
+      field(line, "outcome", outcome);
+      field(line, "nanos", nanos);
+      lines.add(line.append('}').toString());
+    }
+  }
+
+  /**
+   * Writes the lines for the current round, followed by a summary line.
+   *
+   * @param deferred the number of elements that will be retried in the next round.
+   */
+  void endRound(int deferred) {
+    if (enabled()) {
+      StringBuilder line = startLine();
+      field(line, "types", typesInRound);
+      field(line, "deferred", deferred);
+      roundCounts.forEach((name, count) -> field(line, name, count));
+      field(line, "nanos", System.nanoTime() - roundStart);
+      for (Map.Entry<String, Map<String, Long>> entry : roundNanos.entrySet()) {
+        field(line, entry.getKey(), entry.getValue());
+      }
+      lines.add(line.append('}').toString());
+      try {
+        Files.write(path, lines, UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+      } catch (IOException e) {
+        processingEnv
+            .getMessager()
+            .printMessage(
+                Diagnostic.Kind.WARNING, "Could not write profile report to " + path + ": " + e);
+      }
+      lines.clear();
+    }
+  }
+
+  private StringBuilder startLine() {
+    StringBuilder line = new StringBuilder("{");
+    field(line, "processor", processorName);
+    field(line, "round", round);
+    return line;
+  }
+
+  private static void field(StringBuilder line, String name, Object value) {
+    if (line.length() > 1) {
+      line.append(',');
+    }
+    appendString(line, name);
+    line.append(':');
+    if (value instanceof String) {
+      appendString(line, (String) value);
+    } else if (value instanceof Map<?, ?>) {
+      StringBuilder map = new StringBuilder("{");
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        field(map, (String) entry.getKey(), entry.getValue());
+      }
+      line.append(map).append('}');
+    } else {
+      line.append(value);
+    }
+  }
+
+  private static void appendString(StringBuilder line, String s) {
+    line.append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        line.append('\\').append(c);
+      } else if (c < ' ') {
+        line.append(String.format("\\u%04x", (int) c));
+      } else {
+        line.append(c);
+      }
+    }
+    line.append('"');
+  }
+}
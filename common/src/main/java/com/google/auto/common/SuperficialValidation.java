@@ -15,8 +15,11 @@
  */
 package com.google.auto.common;
 
+import com.google.common.collect.ImmutableSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.AnnotationValueVisitor;
@@ -47,61 +50,251 @@ import javax.lang.model.util.SimpleTypeVisitor8;
  */
 public final class SuperficialValidation {
   public static boolean validateElements(Iterable<? extends Element> elements) {
+    return validateElements(elements, null);
+  }
+
+  private static boolean validateElements(
+      Iterable<? extends Element> elements, ValidationCache cache) {
     for (Element element : elements) {
-      if (!validateElement(element)) {
+      if (!validateElement(element, cache)) {
         return false;
       }
     }
     return true;
   }
 
-  private static final ElementVisitor<Boolean, Void> ELEMENT_VALIDATING_VISITOR =
-      new AbstractElementVisitor8<Boolean, Void>() {
-        @Override public Boolean visitPackage(PackageElement e, Void p) {
+  /**
+   * Validates elements. The parameter is a {@link ValidationCache} to consult for each type that
+   * is reached, or null if there is none.
+   */
+  private static final ElementVisitor<Boolean, ValidationCache> ELEMENT_VALIDATING_VISITOR =
+      new AbstractElementVisitor8<Boolean, ValidationCache>() {
+        @Override public Boolean visitPackage(PackageElement e, ValidationCache cache) {
           // don't validate enclosed elements because it will return types in the package
           return validateAnnotations(e.getAnnotationMirrors());
         }
 
-        @Override public Boolean visitType(TypeElement e, Void p) {
-          return isValidBaseElement(e)
-              && validateElements(e.getTypeParameters())
-              && validateTypes(e.getInterfaces())
-              && validateType(e.getSuperclass());
+        @Override public Boolean visitType(TypeElement e, ValidationCache cache) {
+          return (cache == null) ? validateTypeElement(e, null) : cache.validateType(e);
         }
 
-        @Override public Boolean visitVariable(VariableElement e, Void p) {
-          return isValidBaseElement(e);
+        @Override public Boolean visitVariable(VariableElement e, ValidationCache cache) {
+          return isValidBaseElement(e, cache);
         }
 
-        @Override public Boolean visitExecutable(ExecutableElement e, Void p) {
+        @Override public Boolean visitExecutable(ExecutableElement e, ValidationCache cache) {
           AnnotationValue defaultValue = e.getDefaultValue();
-          return isValidBaseElement(e)
+          return isValidBaseElement(e, cache)
               && (defaultValue == null || validateAnnotationValue(defaultValue, e.getReturnType()))
               && validateType(e.getReturnType())
               && validateTypes(e.getThrownTypes())
-              && validateElements(e.getTypeParameters())
-              && validateElements(e.getParameters());
+              && validateElements(e.getTypeParameters(), cache)
+              && validateElements(e.getParameters(), cache);
         }
 
-        @Override public Boolean visitTypeParameter(TypeParameterElement e, Void p) {
-          return isValidBaseElement(e)
+        @Override public Boolean visitTypeParameter(TypeParameterElement e, ValidationCache cache) {
+          return isValidBaseElement(e, cache)
               && validateTypes(e.getBounds());
         }
 
-        @Override public Boolean visitUnknown(Element e, Void p) {
+        @Override public Boolean visitUnknown(Element e, ValidationCache cache) {
           // just assume that unknown elements are OK
           return true;
         }
       };
 
   public static boolean validateElement(Element element) {
-    return element.accept(ELEMENT_VALIDATING_VISITOR, null);
+    return validateElement(element, null);
+  }
+
+  /**
+   * Like {@link #validateElement(Element)}, but uses {@code cache}, if it is not null, for the
+   * given element and for every type nested within it.
+   */
+  static boolean validateElement(Element element, ValidationCache cache) {
+    return element.accept(ELEMENT_VALIDATING_VISITOR, cache);
+  }
+
+  /**
+   * Validates the given type without consulting {@code cache} for the type itself, though it is
+   * still consulted for the types nested within it.
+   */
+  static boolean validateTypeElement(TypeElement e, ValidationCache cache) {
+    return isValidBaseElement(e, cache)
+        && validateElements(e.getTypeParameters(), cache)
+        && validateTypes(e.getInterfaces())
+        && validateType(e.getSuperclass());
+  }
+
+  /**
+   * Returns the names of the types that make {@code element} invalid because they cannot be
+   * resolved, as they were written in the source, for example {@code "Missing"} or {@code
+   * "com.example.Missing"}. Whereas {@link #validateElement(Element)} stops at the first problem,
+   * this looks at everything that it would have looked at, so that the result includes every name
+   * that would need to be resolved for the element to become valid.
+   *
+   * <p>The result is empty if the element is valid, and also if it is invalid for some reason other
+   * than an unresolved type, such as an annotation value of the wrong type. In that case, nothing
+   * can be said about what would make the element valid.
+   */
+  public static ImmutableSet<String> missingTypeNames(Element element) {
+    MissingTypeNames missing = new MissingTypeNames();
+    missing.addElement(element);
+    return missing.unexplained ? ImmutableSet.of() : ImmutableSet.copyOf(missing.names);
+  }
+
+  /** Collects the names of error types, following the same paths as the validating visitors. */
+  private static final class MissingTypeNames {
+    final Set<String> names = new LinkedHashSet<>();
+    boolean unexplained;
+    private int errorTypes;
+
+    private final TypeVisitor<Void, Void> typeVisitor =
+        new SimpleTypeVisitor8<Void, Void>() {
+          @Override
+          public Void visitArray(ArrayType t, Void p) {
+            addType(t.getComponentType());
+            return null;
+          }
+
+          @Override
+          public Void visitDeclared(DeclaredType t, Void p) {
+            addTypes(t.getTypeArguments());
+            return null;
+          }
+
+          @Override
+          public Void visitError(ErrorType t, Void p) {
+            errorTypes++;
+            String name = t.toString();
+            int typeArguments = name.indexOf('<');
+            names.add(typeArguments < 0 ? name : name.substring(0, typeArguments));
+            addTypes(t.getTypeArguments());
+            return null;
+          }
+
+          @Override
+          public Void visitWildcard(WildcardType t, Void p) {
+            addType(t.getExtendsBound());
+            addType(t.getSuperBound());
+            return null;
+          }
+
+          @Override
+          public Void visitExecutable(ExecutableType t, Void p) {
+            addTypes(t.getParameterTypes());
+            addType(t.getReturnType());
+            addTypes(t.getThrownTypes());
+            addTypes(t.getTypeVariables());
+            return null;
+          }
+        };
+
+    private final AnnotationValueVisitor<Void, Void> valueVisitor =
+        new SimpleAnnotationValueVisitor8<Void, Void>() {
+          @Override
+          public Void visitAnnotation(AnnotationMirror a, Void p) {
+            addAnnotation(a);
+            return null;
+          }
+
+          @Override
+          public Void visitArray(List<? extends AnnotationValue> values, Void p) {
+            for (AnnotationValue value : values) {
+              value.accept(this, null);
+            }
+            return null;
+          }
+
+          @Override
+          public Void visitEnumConstant(VariableElement enumConstant, Void p) {
+            addElement(enumConstant);
+            return null;
+          }
+
+          @Override
+          public Void visitType(TypeMirror type, Void p) {
+            addType(type);
+            return null;
+          }
+        };
+
+    void addElement(Element e) {
+      addAnnotations(e.getAnnotationMirrors());
+      if (e instanceof PackageElement) {
+        return;
+      }
+      addType(e.asType());
+      for (Element enclosed : e.getEnclosedElements()) {
+        addElement(enclosed);
+      }
+      if (e instanceof TypeElement) {
+        TypeElement type = (TypeElement) e;
+        addElements(type.getTypeParameters());
+        addTypes(type.getInterfaces());
+        addType(type.getSuperclass());
+      } else if (e instanceof ExecutableElement) {
+        ExecutableElement method = (ExecutableElement) e;
+        AnnotationValue defaultValue = method.getDefaultValue();
+        if (defaultValue != null) {
+          addAnnotationValue(defaultValue, method.getReturnType());
+        }
+        addType(method.getReturnType());
+        addTypes(method.getThrownTypes());
+        addElements(method.getTypeParameters());
+        addElements(method.getParameters());
+      } else if (e instanceof TypeParameterElement) {
+        addTypes(((TypeParameterElement) e).getBounds());
+      }
+    }
+
+    private void addElements(Iterable<? extends Element> elements) {
+      for (Element element : elements) {
+        addElement(element);
+      }
+    }
+
+    private void addType(TypeMirror type) {
+      if (type != null) {
+        type.accept(typeVisitor, null);
+      }
+    }
+
+    private void addTypes(Iterable<? extends TypeMirror> types) {
+      for (TypeMirror type : types) {
+        addType(type);
+      }
+    }
+
+    private void addAnnotations(Iterable<? extends AnnotationMirror> annotationMirrors) {
+      for (AnnotationMirror annotationMirror : annotationMirrors) {
+        addAnnotation(annotationMirror);
+      }
+    }
+
+    private void addAnnotation(AnnotationMirror annotationMirror) {
+      addType(annotationMirror.getAnnotationType());
+      for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> valueEntry :
+          annotationMirror.getElementValues().entrySet()) {
+        addAnnotationValue(valueEntry.getValue(), valueEntry.getKey().getReturnType());
+      }
+    }
+
+    private void addAnnotationValue(AnnotationValue value, TypeMirror expectedType) {
+      int before = errorTypes;
+      value.accept(valueVisitor, null);
+      // An invalid value that doesn't mention a missing type might not become valid when any
+      // particular type is generated.
+      if (errorTypes == before && !validateAnnotationValue(value, expectedType)) {
+        unexplained = true;
+      }
+    }
   }
 
-  private static boolean isValidBaseElement(Element e) {
+  private static boolean isValidBaseElement(Element e, ValidationCache cache) {
     return validateType(e.asType())
         && validateAnnotations(e.getAnnotationMirrors())
-        && validateElements(e.getEnclosedElements());
+        && validateElements(e.getEnclosedElements(), cache);
   }
 
   private static boolean validateTypes(Iterable<? extends TypeMirror> types) {
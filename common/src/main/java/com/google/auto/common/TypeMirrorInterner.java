@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.common;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Equivalence;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Maps each {@link TypeMirror} to a canonical {@link Key}, such that two types have the same key
+ * if and only if they are equal according to {@link MoreTypes#equivalence()}. The structure of a
+ * given {@code TypeMirror} instance is only examined the first time it is {@linkplain #intern
+ * interned}; after that its key is found by identity, and keys themselves are compared by identity.
+ * This makes {@link #equivalence()} much cheaper than {@link MoreTypes#equivalence()} when the same
+ * types are hashed or compared many times, for example in a set of types that is consulted for
+ * every property of every class a processor generates.
+ *
+ * <p>An interner holds on to every {@code TypeMirror} it has seen. Since types obtained in one
+ * round of annotation processing are not guaranteed to be meaningful in the next, an interner
+ * should be used within a single round, and then {@linkplain #clear cleared} or discarded.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class TypeMirrorInterner {
+  /**
+   * The canonical key for a set of equal types. Two keys from the same interner are equal if and
+   * only if they are the same object. The hash code of a key is the same as the hash code given by
+   * {@link MoreTypes#equivalence()} for its types.
+   */
+  public static final class Key {
+    private final TypeMirror type;
+    private final int hash;
+
+    private Key(TypeMirror type, int hash) {
+      this.type = type;
+      this.hash = hash;
+    }
+
+    /** The first type that was interned with this key. */
+    public TypeMirror type() {
+      return type;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public String toString() {
+      return type.toString();
+    }
+  }
+
+  private final Map<TypeMirror, Key> keysByType = new IdentityHashMap<>();
+  private final Map<Integer, List<Key>> keysByHash = new HashMap<>();
+  private final Equivalence<TypeMirror> equivalence =
+      new Equivalence<TypeMirror>() {
+        @Override
+        protected boolean doEquivalent(TypeMirror a, TypeMirror b) {
+          return intern(a) == intern(b);
+        }
+
+        @Override
+        protected int doHash(TypeMirror t) {
+          return intern(t).hashCode();
+        }
+      };
+
+  /** Returns the canonical key for {@code type}. */
+  public Key intern(TypeMirror type) {
+    checkNotNull(type);
+    Key key = keysByType.get(type);
+    if (key == null) {
+      key = canonicalKey(type);
+      keysByType.put(type, key);
+    }
+    return key;
+  }
+
+  private Key canonicalKey(TypeMirror type) {
+    Equivalence<TypeMirror> structural = MoreTypes.equivalence();
+    int hash = structural.hash(type);
+    List<Key> candidates = keysByHash.computeIfAbsent(hash, h -> new ArrayList<>(1));
+    for (Key candidate : candidates) {
+      if (structural.equivalent(candidate.type, type)) {
+        return candidate;
+      }
+    }
+    Key key = new Key(type, hash);
+    candidates.add(key);
+    return key;
+  }
+
+  /**
+   * Returns an {@link Equivalence} that gives the same results as {@link MoreTypes#equivalence()},
+   * using the keys from this interner.
+   */
+  public Equivalence<TypeMirror> equivalence() {
+    return equivalence;
+  }
+
+  /** Forgets all the types that have been interned. */
+  public void clear() {
+    keysByType.clear();
+    keysByHash.clear();
+  }
+}
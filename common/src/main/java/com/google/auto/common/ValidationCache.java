@@ -0,0 +1,71 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.common;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+
+/**
+ * Remembers the results of {@link SuperficialValidation}, so that a type is walked at most once
+ * per round however many annotated elements it encloses, and however many of them are retried
+ * after being deferred. Types nested within the type being validated are remembered too, so
+ * validating an outer type also answers for its nested types, and vice versa.
+ *
+ * <p>Within a round, results are keyed by {@link Element}. Elements are not guaranteed to be
+ * usable from one round to the next, so {@link #startRound} forgets them. The qualified names of
+ * the types that were found to be valid are kept, though: generating more code can make an invalid
+ * type valid, but cannot make a valid type invalid, so those types never need to be walked again.
+ */
+final class ValidationCache {
+  private final Map<Element, Boolean> results = new HashMap<>();
+  private final Set<String> validTypeNames = new HashSet<>();
+
+  /** Forgets the elements from the previous round. This must be called at the start of a round. */
+  void startRound() {
+    results.clear();
+  }
+
+  /** Returns the same as {@link SuperficialValidation#validateElement(Element)}. */
+  boolean validate(Element element) {
+    Boolean valid = results.get(element);
+    if (valid == null) {
+      valid = SuperficialValidation.validateElement(element, this);
+      results.put(element, valid);
+    }
+    return valid;
+  }
+
+  /** Validates a type reached by {@link SuperficialValidation}, remembering the result. */
+  boolean validateType(TypeElement type) {
+    String name = type.getQualifiedName().toString();
+    if (validTypeNames.contains(name)) {
+      return true;
+    }
+    Boolean valid = results.get(type);
+    if (valid == null) {
+      valid = SuperficialValidation.validateTypeElement(type, this);
+      results.put(type, valid);
+      if (valid && !name.isEmpty()) {
+        validTypeNames.add(name);
+      }
+    }
+    return valid;
+  }
+}
@@ -20,6 +20,8 @@ import static com.google.common.truth.Truth.assertAbout;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.testing.compile.JavaSourceSubjectFactory.javaSource;
 import static com.google.testing.compile.JavaSourcesSubjectFactory.javaSources;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
 import static javax.tools.Diagnostic.Kind.ERROR;
 import static javax.tools.StandardLocation.SOURCE_OUTPUT;
 
@@ -34,18 +36,24 @@ import java.io.PrintWriter;
 import java.lang.annotation.Annotation;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Set;
 import javax.annotation.processing.Filer;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
 import javax.tools.JavaFileObject;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 @RunWith(JUnit4.class)
 public class BasicAnnotationProcessorTest {
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
 
   @Retention(RetentionPolicy.SOURCE)
   public @interface RequiresGeneratedCode {}
@@ -378,6 +386,70 @@ public class BasicAnnotationProcessorTest {
         .withErrorContaining("purposeful");
   }
 
+  @Test
+  public void profileReport() throws IOException {
+    Path report = temporaryFolder.getRoot().toPath().resolve("profile.json");
+    JavaFileObject classAFileObject = JavaFileObjects.forSourceLines("test.ClassA",
+        "package test;",
+        "",
+        "@" + RequiresGeneratedCode.class.getCanonicalName(),
+        "public class ClassA {",
+        "  SomeGeneratedClass bar;",
+        "}");
+    assertAbout(javaSources())
+        .that(ImmutableList.of(classAFileObject))
+        .withCompilerOptions("-Aauto.profile=" + report)
+        .processedWith(new RequiresGeneratedCodeProcessor())
+        .failsToCompile();
+    List<String> lines = Files.readAllLines(report, UTF_8);
+    assertThat(lines).hasSize(2);
+    assertThat(lines.get(0))
+        .startsWith(
+            "{\"processor\":\"RequiresGeneratedCodeProcessor\",\"round\":1,\"types\":0,"
+                + "\"deferred\":1,");
+    assertThat(lines.get(0)).contains("\"phases\":{\"validate\":");
+    assertThat(lines.get(1))
+        .startsWith(
+            "{\"processor\":\"RequiresGeneratedCodeProcessor\",\"round\":2,\"types\":0,"
+                + "\"deferred\":0,");
+  }
+
+  @Test
+  public void skipsRetriesUntilMissingTypeIsGenerated() throws IOException {
+    Path report = temporaryFolder.getRoot().toPath().resolve("profile.json");
+    JavaFileObject classAFileObject = JavaFileObjects.forSourceLines("test.ClassA",
+        "package test;",
+        "",
+        "@" + RequiresGeneratedCode.class.getCanonicalName(),
+        "public class ClassA {",
+        "  NeverGenerated bar;",
+        "}");
+    JavaFileObject fooFileObject = JavaFileObjects.forSourceLines("test.Foo",
+        "package test;",
+        "",
+        "@" + AnAnnotation.class.getCanonicalName(),
+        "public class Foo {}");
+    RequiresGeneratedCodeProcessor requiresGeneratedCodeProcessor =
+        new RequiresGeneratedCodeProcessor();
+    assertAbout(javaSources())
+        .that(ImmutableList.of(classAFileObject, fooFileObject))
+        .withCompilerOptions("-Aauto.profile=" + report)
+        .processedWith(requiresGeneratedCodeProcessor, new AnAnnotationProcessor())
+        .failsToCompile()
+        .withErrorContaining(RequiresGeneratedCodeProcessor.class.getCanonicalName())
+        .in(classAFileObject).onLine(4);
+    List<String> lines =
+        Files.readAllLines(report, UTF_8).stream()
+            .filter(line -> line.contains("\"RequiresGeneratedCodeProcessor\""))
+            .collect(toList());
+    // In round 2, the only new type is FooXYZ, so ClassA is not validated again.
+    assertThat(lines).hasSize(3);
+    assertThat(lines.get(0))
+        .contains("\"round\":1,\"types\":0,\"deferred\":1,\"retriesSkipped\":0,");
+    assertThat(lines.get(1))
+        .contains("\"round\":2,\"types\":0,\"deferred\":1,\"retriesSkipped\":1,");
+  }
+
   private static void generateClass(Filer filer, String generatedClassName) {
     PrintWriter writer = null;
     try {
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.common;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.testing.compile.CompilationRule;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class MethodCacheTest {
+  @Rule public final CompilationRule compilationRule = new CompilationRule();
+
+  private Elements elements;
+  private Types types;
+
+  @Before
+  public void setUp() {
+    elements = compilationRule.getElements();
+    types = compilationRule.getTypes();
+  }
+
+  interface Top {
+    String top();
+
+    void overloaded(int x);
+  }
+
+  interface Left extends Top {
+    @Override
+    String top();
+
+    void overloaded(String s);
+  }
+
+  interface Right extends Top {
+    void overloaded(int x, int y);
+  }
+
+  interface Bottom extends Left, Right {
+    @Override
+    void overloaded(int x);
+  }
+
+  abstract static class BottomClass extends AbstractList<String> implements Bottom, Right {
+    @Override
+    public String top() {
+      return "";
+    }
+  }
+
+  private static final ImmutableList<Class<?>> CLASSES =
+      ImmutableList.of(
+          Top.class,
+          Left.class,
+          Right.class,
+          Bottom.class,
+          BottomClass.class,
+          ArrayList.class,
+          LinkedHashMap.class,
+          EnumMap.class,
+          ConcurrentSkipListMap.class);
+
+  @Test
+  public void sameAsMoreElements() {
+    MethodCache cache = new MethodCache(types);
+    // Ask about the most derived types first, so their ancestors are found by merging.
+    for (Class<?> c : CLASSES.reverse()) {
+      TypeElement type = elements.getTypeElement(c.getCanonicalName());
+      assertWithMessage(c.getName())
+          .that(cache.getAllMethods(type))
+          .containsExactlyElementsIn(MoreElements.getAllMethods(type, types, elements))
+          .inOrder();
+      assertWithMessage(c.getName())
+          .that(cache.getLocalAndInheritedMethods(type))
+          .containsExactlyElementsIn(
+              MoreElements.getLocalAndInheritedMethods(type, types, elements))
+          .inOrder();
+    }
+  }
+
+  @Test
+  public void diamond() {
+    MethodCache cache = new MethodCache(types);
+    TypeElement bottom = elements.getTypeElement(Bottom.class.getCanonicalName());
+    ImmutableSet<String> methods =
+        cache.getAllMethods(bottom).stream()
+            .map(m -> m.getEnclosingElement().getSimpleName() + "." + m)
+            .collect(ImmutableSet.toImmutableSet());
+    assertThat(methods)
+        .containsExactly(
+            "Left.top()",
+            "Left.overloaded(java.lang.String)",
+            "Right.overloaded(int,int)",
+            "Bottom.overloaded(int)")
+        .inOrder();
+  }
+
+  @Test
+  public void remembersAndClears() {
+    MethodCache cache = new MethodCache(types);
+    TypeElement type = elements.getTypeElement(BottomClass.class.getCanonicalName());
+    ImmutableSet<ExecutableElement> methods = cache.getLocalAndInheritedMethods(type);
+    assertThat(cache.getLocalAndInheritedMethods(type)).isSameInstanceAs(methods);
+    cache.clear();
+    ImmutableSet<ExecutableElement> newMethods = cache.getLocalAndInheritedMethods(type);
+    assertThat(newMethods).isNotSameInstanceAs(methods);
+    assertThat(newMethods).containsExactlyElementsIn(methods).inOrder();
+  }
+}
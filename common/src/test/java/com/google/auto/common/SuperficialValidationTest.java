@@ -276,6 +276,83 @@ public class SuperficialValidationTest {
         .failsToCompile();
   }
 
+  @Test
+  public void missingTypeNames() {
+    JavaFileObject javaFileObject = JavaFileObjects.forSourceLines(
+        "test.TestClass",
+        "package test;",
+        "",
+        "import java.util.List;",
+        "",
+        "abstract class TestClass extends MissingSuperclass {",
+        "  abstract MissingType blah();",
+        "  abstract List<? extends other.MissingType> list();",
+        "  abstract void take(MissingType[] missing, String present);",
+        "}");
+    assertAbout(javaSource())
+        .that(javaFileObject)
+        .processedWith(new AssertingProcessor() {
+          @Override void runAssertions() {
+            TypeElement testClassElement =
+                processingEnv.getElementUtils().getTypeElement("test.TestClass");
+            assertThat(SuperficialValidation.missingTypeNames(testClassElement))
+                .containsExactly("MissingType", "other.MissingType", "MissingSuperclass");
+          }
+        })
+        .failsToCompile();
+  }
+
+  @Test
+  public void missingTypeNames_validElement() {
+    JavaFileObject javaFileObject = JavaFileObjects.forSourceLines(
+        "test.TestClass",
+        "package test;",
+        "",
+        "abstract class TestClass {",
+        "  abstract String blah();",
+        "}");
+    assertAbout(javaSource())
+        .that(javaFileObject)
+        .processedWith(new AssertingProcessor() {
+          @Override void runAssertions() {
+            TypeElement testClassElement =
+                processingEnv.getElementUtils().getTypeElement("test.TestClass");
+            assertThat(SuperficialValidation.missingTypeNames(testClassElement)).isEmpty();
+          }
+        })
+        .compilesWithoutError();
+  }
+
+  @Test
+  public void missingTypeNames_invalidAnnotationValue() {
+    JavaFileObject javaFileObject = JavaFileObjects.forSourceLines("test.Outer",
+        "package test;",
+        "",
+        "final class Outer {",
+        "  @interface TestAnnotation {",
+        "    Class[] classes();",
+        "  }",
+        "",
+        "  @TestAnnotation(classes = Foo)",
+        "  static class TestClass {",
+        "    MissingType missing;",
+        "  }",
+        "}");
+    assertAbout(javaSource())
+        .that(javaFileObject)
+        .processedWith(
+            new AssertingProcessor() {
+              @Override
+              void runAssertions() {
+                TypeElement testClassElement =
+                    processingEnv.getElementUtils().getTypeElement("test.Outer.TestClass");
+                // Generating MissingType would not be enough to make the element valid.
+                assertThat(SuperficialValidation.missingTypeNames(testClassElement)).isEmpty();
+              }
+            })
+        .failsToCompile();
+  }
+
   private abstract static class AssertingProcessor extends AbstractProcessor {
     @Override
     public Set<String> getSupportedAnnotationTypes() {
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.common;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.testing.EquivalenceTester;
+import com.google.testing.compile.CompilationRule;
+import java.util.List;
+import java.util.Map;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TypeMirrorInternerTest {
+  @Rule public final CompilationRule compilationRule = new CompilationRule();
+
+  private Types types;
+  private TypeMirror objectType;
+  private TypeMirror stringType;
+  private TypeElement mapElement;
+  private TypeElement listElement;
+
+  @Before
+  public void setUp() {
+    types = compilationRule.getTypes();
+    Elements elements = compilationRule.getElements();
+    objectType = elements.getTypeElement(Object.class.getCanonicalName()).asType();
+    stringType = elements.getTypeElement(String.class.getCanonicalName()).asType();
+    mapElement = elements.getTypeElement(Map.class.getCanonicalName());
+    listElement = elements.getTypeElement(List.class.getCanonicalName());
+  }
+
+  @Test
+  public void equivalence() {
+    TypeMirrorInterner interner = new TypeMirrorInterner();
+    EquivalenceTester.<TypeMirror>of(interner.equivalence())
+        .addEquivalenceGroup(objectType)
+        .addEquivalenceGroup(stringType)
+        .addEquivalenceGroup(
+            types.getDeclaredType(listElement, stringType),
+            types.getDeclaredType(listElement, stringType))
+        .addEquivalenceGroup(types.getDeclaredType(listElement, objectType))
+        .addEquivalenceGroup(mapElement.asType())
+        .addEquivalenceGroup(
+            types.erasure(mapElement.asType()),
+            types.erasure(types.getDeclaredType(mapElement, stringType, objectType)))
+        .addEquivalenceGroup(
+            types.getDeclaredType(
+                mapElement, stringType, types.getDeclaredType(listElement, stringType)),
+            types.getDeclaredType(
+                mapElement, stringType, types.getDeclaredType(listElement, stringType)))
+        .addEquivalenceGroup(types.getWildcardType(null, null))
+        .addEquivalenceGroup(types.getWildcardType(stringType, null))
+        .addEquivalenceGroup(
+            types.getPrimitiveType(TypeKind.INT),
+            types.unboxedType(types.boxedClass(types.getPrimitiveType(TypeKind.INT)).asType()))
+        .test();
+  }
+
+  @Test
+  public void keys() {
+    TypeMirrorInterner interner = new TypeMirrorInterner();
+    DeclaredType listOfString1 = types.getDeclaredType(listElement, stringType);
+    DeclaredType listOfString2 = types.getDeclaredType(listElement, stringType);
+    DeclaredType listOfObject = types.getDeclaredType(listElement, objectType);
+
+    TypeMirrorInterner.Key key = interner.intern(listOfString1);
+    assertThat(interner.intern(listOfString1)).isSameInstanceAs(key);
+    assertThat(interner.intern(listOfString2)).isSameInstanceAs(key);
+    assertThat(interner.intern(listOfObject)).isNotSameInstanceAs(key);
+    assertThat(key.type()).isSameInstanceAs(listOfString1);
+    assertThat(key.hashCode()).isEqualTo(MoreTypes.equivalence().hash(listOfString2));
+
+    interner.clear();
+    TypeMirrorInterner.Key newKey = interner.intern(listOfString2);
+    assertThat(newKey).isNotSameInstanceAs(key);
+    assertThat(newKey.type()).isSameInstanceAs(listOfString2);
+  }
+}
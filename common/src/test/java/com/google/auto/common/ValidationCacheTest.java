@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.common;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static com.google.testing.compile.Compiler.javac;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.JavaFileObjects;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.tools.JavaFileObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ValidationCacheTest {
+  private static final JavaFileObject OUTER =
+      JavaFileObjects.forSourceLines(
+          "test.Outer",
+          "package test;",
+          "",
+          "class Outer {",
+          "  static class Valid {",
+          "    String s;",
+          "  }",
+          "",
+          "  static class Invalid {",
+          "    MissingType m;",
+          "  }",
+          "}");
+
+  private static final ImmutableList<String> TYPE_NAMES =
+      ImmutableList.of("test.Outer", "test.Outer.Valid", "test.Outer.Invalid");
+
+  @Test
+  public void outerTypeFirst() {
+    checkCacheAgreesWithSuperficialValidation(TYPE_NAMES);
+  }
+
+  @Test
+  public void nestedTypesFirst() {
+    checkCacheAgreesWithSuperficialValidation(TYPE_NAMES.reverse());
+  }
+
+  private static void checkCacheAgreesWithSuperficialValidation(ImmutableList<String> typeNames) {
+    ValidationCache cache = new ValidationCache();
+    AbstractProcessor processor =
+        new AbstractProcessor() {
+          @Override
+          public Set<String> getSupportedAnnotationTypes() {
+            return ImmutableSet.of("*");
+          }
+
+          @Override
+          public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+          }
+
+          @Override
+          public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
+            cache.startRound();
+            Elements elements = processingEnv.getElementUtils();
+            for (String typeName : typeNames) {
+              TypeElement type = elements.getTypeElement(typeName);
+              boolean expected = SuperficialValidation.validateElement(type);
+              assertWithMessage(typeName).that(cache.validate(type)).isEqualTo(expected);
+              assertWithMessage(typeName).that(cache.validate(type)).isEqualTo(expected);
+            }
+            return false;
+          }
+        };
+    Compilation compilation = javac().withProcessors(processor).compile(OUTER);
+    assertThat(compilation).failed();
+  }
+}
@@ -37,6 +37,7 @@ import javax.annotation.processing.Messager;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.Processor;
 import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedOptions;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
@@ -58,6 +59,7 @@ import net.ltgt.gradle.incap.IncrementalAnnotationProcessorType;
  */
 @IncrementalAnnotationProcessor(IncrementalAnnotationProcessorType.ISOLATING)
 @AutoService(Processor.class)
+@SupportedOptions(ProfileReport.PROFILE_OPTION)
 public final class AutoFactoryProcessor extends AbstractProcessor {
   private FactoryDescriptorGenerator factoryDescriptorGenerator;
   private AutoFactoryDeclaration.Factory declarationFactory;
@@ -65,6 +67,7 @@ public final class AutoFactoryProcessor extends AbstractProcessor {
   private Messager messager;
   private Elements elements;
   private Types types;
+  private ProfileReport profileReport;
 
   @Override
   public synchronized void init(ProcessingEnvironment processingEnv) {
@@ -76,23 +79,28 @@ public final class AutoFactoryProcessor extends AbstractProcessor {
     declarationFactory = new AutoFactoryDeclaration.Factory(elements, messager);
     factoryDescriptorGenerator =
         new FactoryDescriptorGenerator(messager, types, declarationFactory);
+    profileReport = ProfileReport.create(processingEnv, getClass().getSimpleName());
   }
 
   @Override
   public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    profileReport.startRound();
     try {
       doProcess(roundEnv);
     } catch (Throwable e) {
       messager.printMessage(Kind.ERROR, "Failed to process @AutoFactory annotations:\n"
           + Throwables.getStackTraceAsString(e));
     }
+    profileReport.endRound(0);
     return false;
   }
 
   private void doProcess(RoundEnvironment roundEnv) {
+    long start = profileReport.now();
     for (Element element : roundEnv.getElementsAnnotatedWith(Provided.class)) {
       providedChecker.checkProvidedParameter(element);
     }
+    profileReport.add("phases", "validate", start);
 
     ImmutableListMultimap.Builder<PackageAndClass, FactoryMethodDescriptor> indexedMethodsBuilder =
         ImmutableListMultimap.builder();
@@ -100,7 +108,10 @@ public final class AutoFactoryProcessor extends AbstractProcessor {
         implementationMethodDescriptorsBuilder = ImmutableSetMultimap.builder();
     // Iterate over the classes and methods that are annotated with @AutoFactory.
     for (Element element : roundEnv.getElementsAnnotatedWith(AutoFactory.class)) {
+      start = profileReport.now();
       Optional<AutoFactoryDeclaration> declaration = declarationFactory.createIfValid(element);
+      profileReport.add("phases", "validate", start);
+      start = profileReport.now();
       if (declaration.isPresent()) {
         PackageAndClass factoryName = declaration.get().getFactoryName();
         TypeElement extendingType = declaration.get().extendingType();
@@ -117,6 +128,7 @@ public final class AutoFactoryProcessor extends AbstractProcessor {
       for (FactoryMethodDescriptor descriptor : descriptors) {
         indexedMethodsBuilder.put(descriptor.factoryName(), descriptor);
       }
+      profileReport.add("phases", "classify", start);
     }
 
     ImmutableSetMultimap<PackageAndClass, ImplementationMethodDescriptor>
@@ -155,6 +167,8 @@ public final class AutoFactoryProcessor extends AbstractProcessor {
             }
           }
           if (!skipCreation) {
+            long writeStart = profileReport.now();
+            String outcome = "generated";
             try {
               factoryWriter.writeFactory(
                   FactoryDescriptor.create(
@@ -167,7 +181,13 @@ public final class AutoFactoryProcessor extends AbstractProcessor {
                       allowSubclasses));
             } catch (IOException e) {
               messager.printMessage(Kind.ERROR, "failed: " + e);
+              outcome = "error";
             }
+            String factoryClass =
+                factoryName.packageName().isEmpty()
+                    ? factoryName.className()
+                    : factoryName.packageName() + "." + factoryName.className();
+            profileReport.addType(factoryClass, outcome, "write", writeStart);
           }
         });
   }
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.factory.processor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic;
+
+/**
+ * A report of where {@link AutoFactoryProcessor} spends its time, written if the {@code
+ * -Aauto.profile=<path>} option is given. This is a trimmed copy of {@code
+ * com.google.auto.common.ProfileReport}, which describes the format of the report. It is copied
+ * because this module depends on a released version of auto-common that does not have that class,
+ * so changes to the format should be made in both places.
+ */
+final class ProfileReport {
+  static final String PROFILE_OPTION = "auto.profile";
+
+  private final ProcessingEnvironment processingEnv;
+  private final String processorName;
+  private final Path path; // null if there is no report
+  private final List<String> lines = new ArrayList<>();
+  private final Map<String, Map<String, Long>> roundNanos = new LinkedHashMap<>();
+  private int round;
+  private int typesInRound;
+  private long roundStart;
+
+  private ProfileReport(ProcessingEnvironment processingEnv, String processorName, Path path) {
+    this.processingEnv = processingEnv;
+    this.processorName = processorName;
+    this.path = path;
+  }
+
+  static ProfileReport create(ProcessingEnvironment processingEnv, String processorName) {
+    String pathString = processingEnv.getOptions().get(PROFILE_OPTION);
+    Path path = (pathString == null || pathString.isEmpty()) ? null : Paths.get(pathString);
+    return new ProfileReport(processingEnv, processorName, path);
+  }
+
+  /** Returns the current time, for a later call to {@link #add} or {@link #addType}. */
+  long now() {
+    return (path == null) ? 0 : System.nanoTime();
+  }
+
+  void startRound() {
+    if (path != null) {
+      round++;
+      typesInRound = 0;
+      roundNanos.clear();
+      roundStart = System.nanoTime();
+    }
+  }
+
+  /**
+   * Adds the time since {@code start}, from {@link #now}, to the total for {@code name} in the
+   * given category of the round summary. For example, {@code add("phases", "validate", start)}.
+   */
+  void add(String category, String name, long start) {
+    if (path != null) {
+      roundNanos
+          .computeIfAbsent(category, k -> new LinkedHashMap<>())
+          .merge(name, System.nanoTime() - start, Long::sum);
+    }
+  }
+
+  /**
+   * Records a line for the given type, with the time since {@code start}, from {@link #now}, spent
+   * in the given phase.
+   *
+   * @param outcome {@code "generated"} or {@code "error"}.
+   */
+  void addType(String typeName, String outcome, String phase, long start) {
+    if (path != null) {
+      typesInRound++;
+      lines.add(
+          startLine()
+              .append(",\"type\":\"").append(typeName)
+              .append("\",\"outcome\":\"").append(outcome)
+              .append("\",\"nanos\":{\"").append(phase).append("\":")
+              .append(System.nanoTime() - start)
+              .append("}}")
+              .toString());
+    }
+  }
+
+  /**
+   * Writes the lines for the current round, followed by a summary line.
+   *
+   * @param deferred the number of elements that will be retried in the next round.
+   */
+  void endRound(int deferred) {
+    if (path == null) {
+      return;
+    }
+    StringBuilder line =
+        startLine()
+            .append(",\"types\":").append(typesInRound)
+            .append(",\"deferred\":").append(deferred)
+            .append(",\"nanos\":").append(System.nanoTime() - roundStart);
+    // Category, phase and type names are Java identifiers, so they need no JSON escaping.
+    roundNanos.forEach(
+        (category, nanos) -> {
+          line.append(",\"").append(category).append("\":{");
+          String separator = "\"";
+          for (Map.Entry<String, Long> entry : nanos.entrySet()) {
+            line.append(separator).append(entry.getKey()).append("\":").append(entry.getValue());
+            separator = ",\"";
+          }
+          line.append('}');
+        });
+    lines.add(line.append('}').toString());
+    try {
+      Files.write(path, lines, UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      processingEnv
+          .getMessager()
+          .printMessage(
+              Diagnostic.Kind.WARNING, "Could not write profile report to " + path + ": " + e);
+    }
+    lines.clear();
+  }
+
+  private StringBuilder startLine() {
+    return new StringBuilder("{\"processor\":\"")
+        .append(processorName)
+        .append("\",\"round\":")
+        .append(round);
+  }
+}
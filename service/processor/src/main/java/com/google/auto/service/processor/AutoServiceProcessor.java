@@ -16,6 +16,7 @@
 package com.google.auto.service.processor;
 
 import static com.google.auto.common.AnnotationMirrors.getAnnotationValue;
+import static com.google.auto.common.GeneratedAnnotations.generatedAnnotation;
 import static com.google.auto.common.MoreElements.getAnnotationMirror;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 
@@ -26,16 +27,24 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
+import com.google.common.collect.SortedSetMultimap;
+import com.google.common.collect.TreeMultimap;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.SortedSet;
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.Filer;
+import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedOptions;
 import javax.lang.model.SourceVersion;
@@ -50,6 +59,7 @@ import javax.lang.model.util.SimpleAnnotationValueVisitor8;
 import javax.lang.model.util.Types;
 import javax.tools.Diagnostic.Kind;
 import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
 import javax.tools.StandardLocation;
 
 /**
@@ -58,9 +68,15 @@ import javax.tools.StandardLocation;
  * <p>
  * Processor Options:<ul>
  *   <li>debug - turns on debug statements</li>
+ *   <li>verify - checks that each provider implements its service interface</li>
+ *   <li>registry - also generates, for each service interface, a registry class whose static
+ *       {@code providers()} method returns an instance of each provider without using
+ *       {@link java.util.ServiceLoader}. See {@link ServiceRegistries}.</li>
+ *   <li>auto.profile - appends a report of the time spent in each round to the given file. See
+ *       {@link ProfileReport}.</li>
  * </ul>
  */
-@SupportedOptions({ "debug", "verify" })
+@SupportedOptions({ "debug", "verify", "registry", ProfileReport.PROFILE_OPTION })
 public class AutoServiceProcessor extends AbstractProcessor {
 
   @VisibleForTesting
@@ -76,6 +92,41 @@ public class AutoServiceProcessor extends AbstractProcessor {
    */
   private Multimap<String, String> providers = HashMultimap.create();
 
+  /**
+   * When the {@code registry} option is set, maps the canonical names of service provider
+   * interfaces found in the current round to the canonical names of the concrete classes which
+   * implement them, in the order the registry class returns them.
+   */
+  private SortedSetMultimap<String, String> registryProviders = TreeMultimap.create();
+
+  /**
+   * When the {@code registry} option is set, maps the canonical names of service provider
+   * interfaces found in the current round to the names of their registry classes. A registry class
+   * is in the package of the provider whose canonical name comes first, so that its name does not
+   * depend on the order in which javac reports the providers.
+   */
+  private Map<String, String> registryNames = new LinkedHashMap<>();
+
+  /**
+   * The canonical names of the service provider interfaces whose registry classes have already
+   * been written, in an earlier round.
+   */
+  private Set<String> writtenRegistries = new HashSet<>();
+
+  /**
+   * Maps the names of the registry classes that have been written to the canonical names of their
+   * service provider interfaces.
+   */
+  private Map<String, String> writtenRegistryNames = new HashMap<>();
+
+  private ProfileReport profileReport;
+
+  @Override
+  public synchronized void init(ProcessingEnvironment processingEnv) {
+    super.init(processingEnv);
+    profileReport = ProfileReport.create(processingEnv, getClass().getSimpleName());
+  }
+
   @Override
   public ImmutableSet<String> getSupportedAnnotationTypes() {
     return ImmutableSet.of(AutoService.class.getName());
@@ -115,11 +166,18 @@ public class AutoServiceProcessor extends AbstractProcessor {
   }
 
   private boolean processImpl(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    profileReport.startRound();
     if (roundEnv.processingOver()) {
+      long start = profileReport.now();
       generateConfigFiles();
+      profileReport.add("phases", "configFiles", start);
     } else {
       processAnnotations(annotations, roundEnv);
+      long start = profileReport.now();
+      generateRegistries();
+      profileReport.add("phases", "registries", start);
     }
+    profileReport.endRound(0);
 
     return true;
   }
@@ -133,14 +191,18 @@ public class AutoServiceProcessor extends AbstractProcessor {
     log(elements.toString());
 
     for (Element e : elements) {
+      long start = profileReport.now();
       // TODO(gak): check for error trees?
       TypeElement providerImplementer = (TypeElement) e;
       AnnotationMirror annotationMirror = getAnnotationMirror(e, AutoService.class).get();
       Set<DeclaredType> providerInterfaces = getValueFieldOfClasses(annotationMirror);
       if (providerInterfaces.isEmpty()) {
         error(MISSING_SERVICES_ERROR, e, annotationMirror);
+        profileReport.addType(
+            providerImplementer.getQualifiedName().toString(), "error", "classify", start);
         continue;
       }
+      String outcome = "generated";
       for (DeclaredType providerInterface : providerInterfaces) {
         TypeElement providerType = MoreTypes.asTypeElement(providerInterface);
 
@@ -149,13 +211,35 @@ public class AutoServiceProcessor extends AbstractProcessor {
 
         if (checkImplementer(providerImplementer, providerType)) {
           providers.put(getBinaryName(providerType), getBinaryName(providerImplementer));
+          if (generatesRegistries()) {
+            String serviceName = providerType.getQualifiedName().toString();
+            if (writtenRegistries.contains(serviceName)) {
+              error(
+                  "The registry class for " + serviceName + " was written in an earlier round,"
+                      + " so it cannot include " + providerImplementer.getQualifiedName(),
+                  e,
+                  annotationMirror);
+              outcome = "error";
+            } else {
+              String providerName = providerImplementer.getQualifiedName().toString();
+              registryProviders.put(serviceName, providerName);
+              if (registryProviders.get(serviceName).first().equals(providerName)) {
+                registryNames.put(
+                    serviceName,
+                    ServiceRegistries.getRegistryName(providerType, providerImplementer));
+              }
+            }
+          }
         } else {
           String message = "ServiceProviders must implement their service provider interface. "
               + providerImplementer.getQualifiedName() + " does not implement "
               + providerType.getQualifiedName();
           error(message, e, annotationMirror);
+          outcome = "error";
         }
       }
+      profileReport.addType(
+          providerImplementer.getQualifiedName().toString(), outcome, "classify", start);
     }
   }
 
@@ -208,6 +292,63 @@ public class AutoServiceProcessor extends AbstractProcessor {
     }
   }
 
+  /**
+   * Writes a registry class for each service provider interface found in the current round. The
+   * registry lists the providers seen in this compilation, whereas the {@code META-INF/services}
+   * file may also list providers from earlier incremental compilations, since a class from those
+   * might no longer exist.
+   *
+   * <p>Unlike the {@code META-INF/services} files, these classes are written in the round where
+   * their providers are found, rather than in the final round, where javac would warn that they
+   * are not subject to annotation processing. So all the providers of a service must be found in
+   * the same round.
+   */
+  private void generateRegistries() {
+    Filer filer = processingEnv.getFiler();
+    Optional<String> generatedAnnotation =
+        generatedAnnotation(processingEnv.getElementUtils(), processingEnv.getSourceVersion())
+            .map(annotation -> annotation.getQualifiedName().toString());
+
+    for (Map.Entry<String, String> entry : registryNames.entrySet()) {
+      String serviceName = entry.getKey();
+      String registryName = entry.getValue();
+      log("Working on registry class: " + registryName);
+      String otherServiceName = writtenRegistryNames.putIfAbsent(registryName, serviceName);
+      if (otherServiceName != null) {
+        processingEnv
+            .getMessager()
+            .printMessage(
+                Kind.ERROR,
+                "The registry class " + registryName + " for " + serviceName
+                    + " would have the same name as the one for " + otherServiceName,
+                processingEnv.getElementUtils().getTypeElement(serviceName));
+        continue;
+      }
+      try {
+        JavaFileObject sourceFile = filer.createSourceFile(registryName);
+        try (Writer writer = sourceFile.openWriter()) {
+          ServiceRegistries.writeRegistry(
+              registryName,
+              serviceName,
+              registryProviders.get(serviceName),
+              generatedAnnotation,
+              writer);
+        }
+        log("Wrote to: " + sourceFile.toUri());
+      } catch (IOException e) {
+        fatalError("Unable to create " + registryName + ", " + e);
+        return;
+      }
+      writtenRegistries.add(serviceName);
+    }
+    registryNames.clear();
+    registryProviders.clear();
+  }
+
+  private boolean generatesRegistries() {
+    return Boolean.parseBoolean(processingEnv.getOptions().get("registry"));
+  }
+
   /**
    * Verifies {@link ServiceProvider} constraints on the concrete provider class.
    * Note that these constraints are enforced at runtime via the ServiceLoader,
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.service.processor;
+
+import static com.google.auto.common.MoreElements.getPackage;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Optional;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+
+/**
+ * A helper class for writing registry classes. A registry class lists the providers of one service
+ * and instantiates them directly, so that they can be found without the classpath scan and
+ * reflection that {@link java.util.ServiceLoader} needs.
+ */
+final class ServiceRegistries {
+  static final String REGISTRY_PREFIX = "AutoService_";
+
+  private ServiceRegistries() { }
+
+  /**
+   * Returns the fully-qualified name of the registry class for the given service. The class is in
+   * the same package as the given provider, and its simple name is the service's canonical name,
+   * with dots replaced by underscores and a prefix of {@value #REGISTRY_PREFIX}. Including the
+   * service's package means that services with the same simple name in different packages get
+   * different registries. For example, the registry for {@code com.example.Outer.Service} with a
+   * provider in {@code com.example.impl} is {@code
+   * com.example.impl.AutoService_com_example_Outer_Service}.
+   */
+  static String getRegistryName(TypeElement service, TypeElement provider) {
+    String serviceName = service.getQualifiedName().toString();
+    String simpleName = REGISTRY_PREFIX + serviceName.replace('.', '_');
+    PackageElement providerPackage = getPackage(provider);
+    return providerPackage.isUnnamed()
+        ? simpleName
+        : providerPackage.getQualifiedName() + "." + simpleName;
+  }
+
+  /**
+   * Writes the source code of a registry class.
+   *
+   * @param registryName the fully-qualified name of the registry class
+   * @param serviceName the canonical name of the service
+   * @param providerNames the canonical names of the providers, in the order they should be
+   *     returned
+   * @param generatedAnnotation the canonical name of the {@code @Generated} annotation to put on
+   *     the class, if there is one
+   * @param output not {@code null}. Not closed after use.
+   * @throws IOException
+   */
+  static void writeRegistry(
+      String registryName,
+      String serviceName,
+      Collection<String> providerNames,
+      Optional<String> generatedAnnotation,
+      Writer output)
+      throws IOException {
+    int lastDot = registryName.lastIndexOf('.');
+    String simpleName = registryName.substring(lastDot + 1);
+    String listType = "java.util.List<" + serviceName + ">";
+    StringBuilder source = new StringBuilder();
+    if (lastDot >= 0) {
+      source.append("package ").append(registryName, 0, lastDot).append(";\n\n");
+    }
+    if (generatedAnnotation.isPresent()) {
+      source.append("@").append(generatedAnnotation.get())
+          .append("(\"").append(AutoServiceProcessor.class.getName()).append("\")\n");
+    }
+    source
+        .append("public final class ").append(simpleName).append(" {\n")
+        .append("  private ").append(simpleName).append("() {}\n")
+        .append("\n")
+        .append("  /**\n")
+        .append("   * Returns an instance of each provider of {@link ").append(serviceName)
+        .append("}.\n")
+        .append("   * The instances are created the first time this method is called,\n")
+        .append("   * and the same instances are returned every time.\n")
+        .append("   */\n")
+        .append("  public static ").append(listType).append(" providers() {\n")
+        .append("    return Holder.PROVIDERS;\n")
+        .append("  }\n")
+        .append("\n")
+        .append("  private static final class Holder {\n")
+        .append("    static final ").append(listType).append(" PROVIDERS =\n")
+        .append("        java.util.Collections.unmodifiableList(\n")
+        .append("            java.util.Arrays.<").append(serviceName).append(">asList(");
+    for (Iterator<String> it = providerNames.iterator(); it.hasNext(); ) {
+      source.append("\n                new ").append(it.next()).append("()");
+      if (it.hasNext()) {
+        source.append(",");
+      }
+    }
+    source
+        .append("));\n")
+        .append("  }\n")
+        .append("}\n");
+    output.write(source.toString());
+    output.flush();
+  }
+}
@@ -16,9 +16,15 @@
 package com.google.auto.service.processor;
 
 import static com.google.auto.service.processor.AutoServiceProcessor.MISSING_SERVICES_ERROR;
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static com.google.testing.compile.Compiler.javac;
 import static com.google.testing.compile.JavaSourcesSubject.assertThat;
 
+import com.google.common.collect.ImmutableList;
+import com.google.testing.compile.Compilation;
 import com.google.testing.compile.JavaFileObjects;
+import javax.lang.model.SourceVersion;
+import javax.tools.JavaFileObject;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -57,6 +63,122 @@ public class AutoServiceProcessorTest {
             JavaFileObjects.forResource("META-INF/services/test.AnotherServiceMulti"));
   }
 
+  @Test
+  public void registry() {
+    String generatedAnnotation =
+        SourceVersion.latestSupported().compareTo(SourceVersion.RELEASE_8) > 0
+            ? "javax.annotation.processing.Generated"
+            : "javax.annotation.Generated";
+    assertThat(
+            JavaFileObjects.forResource("test/SomeService.java"),
+            JavaFileObjects.forResource("test/SomeServiceProvider1.java"),
+            JavaFileObjects.forResource("test/SomeServiceProvider2.java"),
+            JavaFileObjects.forResource("test/Enclosing.java"))
+        .withCompilerOptions("-Aregistry=true")
+        .processedWith(new AutoServiceProcessor())
+        .compilesWithoutWarnings()
+        .and()
+        .generatesSources(
+            JavaFileObjects.forSourceLines(
+                "test.AutoService_test_SomeService",
+                "package test;",
+                "",
+                "@" + generatedAnnotation + "(\"" + AutoServiceProcessor.class.getName() + "\")",
+                "public final class AutoService_test_SomeService {",
+                "  private AutoService_test_SomeService() {}",
+                "",
+                "  public static java.util.List<test.SomeService> providers() {",
+                "    return Holder.PROVIDERS;",
+                "  }",
+                "",
+                "  private static final class Holder {",
+                "    static final java.util.List<test.SomeService> PROVIDERS =",
+                "        java.util.Collections.unmodifiableList(",
+                "            java.util.Arrays.<test.SomeService>asList(",
+                "                new test.Enclosing.NestedSomeServiceProvider(),",
+                "                new test.SomeServiceProvider1(),",
+                "                new test.SomeServiceProvider2()));",
+                "  }",
+                "}"))
+        .and()
+        .generatesFiles(JavaFileObjects.forResource("META-INF/services/test.SomeService"));
+  }
+
+  @Test
+  public void registryPackageDoesNotDependOnSourceOrder() {
+    JavaFileObject service =
+        JavaFileObjects.forSourceLines(
+            "test.service.Service", "package test.service;", "", "public interface Service {}");
+    JavaFileObject providerA =
+        JavaFileObjects.forSourceLines(
+            "test.a.ProviderA",
+            "package test.a;",
+            "",
+            "import com.google.auto.service.AutoService;",
+            "import test.service.Service;",
+            "",
+            "@AutoService(Service.class)",
+            "public class ProviderA implements Service {}");
+    JavaFileObject providerB =
+        JavaFileObjects.forSourceLines(
+            "test.b.ProviderB",
+            "package test.b;",
+            "",
+            "import com.google.auto.service.AutoService;",
+            "import test.service.Service;",
+            "",
+            "@AutoService(Service.class)",
+            "public class ProviderB implements Service {}");
+    for (ImmutableList<JavaFileObject> sources :
+        ImmutableList.of(
+            ImmutableList.of(service, providerA, providerB),
+            ImmutableList.of(service, providerB, providerA))) {
+      Compilation compilation =
+          javac()
+              .withProcessors(new AutoServiceProcessor())
+              .withOptions("-Aregistry=true")
+              .compile(sources);
+      assertThat(compilation).succeededWithoutWarnings();
+      assertThat(compilation).generatedSourceFile("test.a.AutoService_test_service_Service");
+    }
+  }
+
+  @Test
+  public void registriesForServicesWithSameSimpleName() {
+    JavaFileObject serviceA =
+        JavaFileObjects.forSourceLines(
+            "test.a.Foo", "package test.a;", "", "public interface Foo {}");
+    JavaFileObject serviceB =
+        JavaFileObjects.forSourceLines(
+            "test.b.Foo", "package test.b;", "", "public interface Foo {}");
+    JavaFileObject providerA =
+        JavaFileObjects.forSourceLines(
+            "test.p.FooA",
+            "package test.p;",
+            "",
+            "import com.google.auto.service.AutoService;",
+            "",
+            "@AutoService(test.a.Foo.class)",
+            "public class FooA implements test.a.Foo {}");
+    JavaFileObject providerB =
+        JavaFileObjects.forSourceLines(
+            "test.p.FooB",
+            "package test.p;",
+            "",
+            "import com.google.auto.service.AutoService;",
+            "",
+            "@AutoService(test.b.Foo.class)",
+            "public class FooB implements test.b.Foo {}");
+    Compilation compilation =
+        javac()
+            .withProcessors(new AutoServiceProcessor())
+            .withOptions("-Aregistry=true")
+            .compile(serviceA, serviceB, providerA, providerB);
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThat(compilation).generatedSourceFile("test.p.AutoService_test_a_Foo");
+    assertThat(compilation).generatedSourceFile("test.p.AutoService_test_b_Foo");
+  }
+
   @Test
   public void badMultiService() {
     assertThat(JavaFileObjects.forResource("test/NoServices.java"))
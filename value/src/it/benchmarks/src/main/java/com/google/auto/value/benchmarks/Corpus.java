@@ -0,0 +1,255 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.value.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import java.net.URI;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+
+/**
+ * Synthetic source files for the benchmarks to compile. The classes cycle through the {@link Kind}
+ * values, so every corpus of a given size is the same, and any corpus of at least a few classes
+ * exercises every processor. Each package holds at most {@value #CLASSES_PER_PACKAGE} classes.
+ */
+final class Corpus {
+  static final int CLASSES_PER_PACKAGE = 100;
+
+  /** The kinds of class in the corpus. */
+  enum Kind {
+    /** An {@code @AutoValue} class with a static factory method. */
+    AUTO_VALUE,
+    /** An {@code @AutoValue} class with a builder, including a collection property builder. */
+    AUTO_VALUE_BUILDER,
+    /** A generic {@code @AutoValue} class with a builder. */
+    AUTO_VALUE_GENERIC,
+    /** An {@code @AutoValue} class with {@code @Memoized} methods, so an extension runs. */
+    AUTO_VALUE_MEMOIZED,
+    /** An {@code @AutoOneOf} class. */
+    AUTO_ONE_OF,
+    /** An annotation interface and an {@code @AutoAnnotation} method that creates instances. */
+    AUTO_ANNOTATION,
+    /** An {@code @AutoFactory} class with a {@code @Provided} constructor parameter. */
+    AUTO_FACTORY,
+  }
+
+  private Corpus() {}
+
+  /** Returns the sources of a corpus of {@code size} classes. */
+  static ImmutableList<JavaFileObject> generate(int size) {
+    ImmutableList.Builder<JavaFileObject> sources = ImmutableList.builder();
+    Kind[] kinds = Kind.values();
+    for (int i = 0; i < size; i++) {
+      String pkg = "corpus.p" + (i / CLASSES_PER_PACKAGE);
+      String name = "C" + i;
+      sources.add(new Source(pkg, name, source(kinds[i % kinds.length], pkg, name)));
+    }
+    return sources.build();
+  }
+
+  private static String source(Kind kind, String pkg, String name) {
+    switch (kind) {
+      case AUTO_VALUE:
+        return lines(
+            "package " + pkg + ";",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "import java.util.Optional;",
+            "",
+            "@AutoValue",
+            "public abstract class " + name + " {",
+            "  public abstract long id();",
+            "  public abstract String name();",
+            "  public abstract boolean enabled();",
+            "  public abstract double weight();",
+            "  public abstract Optional<String> description();",
+            "",
+            "  public static " + name + " create(",
+            "      long id, String name, boolean enabled, double weight,"
+                + " Optional<String> description) {",
+            "    return new AutoValue_" + name + "(id, name, enabled, weight, description);",
+            "  }",
+            "}");
+      case AUTO_VALUE_BUILDER:
+        return lines(
+            "package " + pkg + ";",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "import com.google.common.collect.ImmutableList;",
+            "import com.google.common.collect.ImmutableMap;",
+            "",
+            "@AutoValue",
+            "public abstract class " + name + " {",
+            "  public abstract String getHost();",
+            "  public abstract int getPort();",
+            "  public abstract ImmutableList<String> getPaths();",
+            "  public abstract ImmutableMap<String, Integer> getLimits();",
+            "",
+            "  public static Builder builder() {",
+            "    return new AutoValue_" + name + ".Builder().setPort(80);",
+            "  }",
+            "",
+            "  public abstract Builder toBuilder();",
+            "",
+            "  @AutoValue.Builder",
+            "  public abstract static class Builder {",
+            "    public abstract Builder setHost(String host);",
+            "    public abstract Builder setPort(int port);",
+            "    public abstract ImmutableList.Builder<String> pathsBuilder();",
+            "    public abstract Builder setLimits(ImmutableMap<String, Integer> limits);",
+            "    public abstract " + name + " build();",
+            "  }",
+            "}");
+      case AUTO_VALUE_GENERIC:
+        return lines(
+            "package " + pkg + ";",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "import java.util.List;",
+            "import java.util.Map;",
+            "",
+            "@AutoValue",
+            "public abstract class " + name + "<K extends Comparable<K>, V> {",
+            "  public abstract K key();",
+            "  public abstract List<V> values();",
+            "  public abstract Map<K, ? extends V> index();",
+            "",
+            "  public static <K extends Comparable<K>, V> Builder<K, V> builder() {",
+            "    return new AutoValue_" + name + ".Builder<>();",
+            "  }",
+            "",
+            "  @AutoValue.Builder",
+            "  public abstract static class Builder<K extends Comparable<K>, V> {",
+            "    public abstract Builder<K, V> key(K key);",
+            "    public abstract Builder<K, V> values(List<V> values);",
+            "    public abstract Builder<K, V> index(Map<K, ? extends V> index);",
+            "    public abstract " + name + "<K, V> build();",
+            "  }",
+            "}");
+      case AUTO_VALUE_MEMOIZED:
+        return lines(
+            "package " + pkg + ";",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "import com.google.auto.value.extension.memoized.Memoized;",
+            "",
+            "@AutoValue",
+            "public abstract class " + name + " {",
+            "  public abstract String first();",
+            "  public abstract String last();",
+            "",
+            "  @Memoized",
+            "  public String fullName() {",
+            "    return first() + \" \" + last();",
+            "  }",
+            "",
+            "  @Memoized",
+            "  @Override",
+            "  public abstract int hashCode();",
+            "",
+            "  public static " + name + " create(String first, String last) {",
+            "    return new AutoValue_" + name + "(first, last);",
+            "  }",
+            "}");
+      case AUTO_ONE_OF:
+        return lines(
+            "package " + pkg + ";",
+            "",
+            "import com.google.auto.value.AutoOneOf;",
+            "",
+            "@AutoOneOf(" + name + ".Kind.class)",
+            "public abstract class " + name + " {",
+            "  public enum Kind {NUMBER, TEXT, FLAG}",
+            "",
+            "  public abstract Kind getKind();",
+            "  public abstract long number();",
+            "  public abstract String text();",
+            "  public abstract void flag();",
+            "",
+            "  public static " + name + " number(long number) {",
+            "    return AutoOneOf_" + name + ".number(number);",
+            "  }",
+            "",
+            "  public static " + name + " text(String text) {",
+            "    return AutoOneOf_" + name + ".text(text);",
+            "  }",
+            "",
+            "  public static " + name + " flag() {",
+            "    return AutoOneOf_" + name + ".flag();",
+            "  }",
+            "}");
+      case AUTO_ANNOTATION:
+        return lines(
+            "package " + pkg + ";",
+            "",
+            "import com.google.auto.value.AutoAnnotation;",
+            "",
+            "public final class " + name + " {",
+            "  public @interface Tag {",
+            "    String value();",
+            "    int priority() default 0;",
+            "    String[] aliases() default {};",
+            "  }",
+            "",
+            "  @AutoAnnotation",
+            "  public static Tag tag(String value, int priority, String[] aliases) {",
+            "    return new AutoAnnotation_" + name + "_tag(value, priority, aliases);",
+            "  }",
+            "",
+            "  private " + name + "() {}",
+            "}");
+      case AUTO_FACTORY:
+        return lines(
+            "package " + pkg + ";",
+            "",
+            "import com.google.auto.factory.AutoFactory;",
+            "import com.google.auto.factory.Provided;",
+            "",
+            "@AutoFactory",
+            "public final class " + name + " {",
+            "  private final String dependency;",
+            "  private final int size;",
+            "",
+            "  " + name + "(@Provided String dependency, int size) {",
+            "    this.dependency = dependency;",
+            "    this.size = size;",
+            "  }",
+            "}");
+    }
+    throw new AssertionError(kind);
+  }
+
+  private static String lines(String... lines) {
+    return String.join("\n", lines) + "\n";
+  }
+
+  /** A source file held in memory. */
+  private static final class Source extends SimpleJavaFileObject {
+    private final String text;
+
+    Source(String pkg, String name, String text) {
+      super(
+          URI.create("string:///" + pkg.replace('.', '/') + "/" + name + Kind.SOURCE.extension),
+          Kind.SOURCE);
+      this.text = text;
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return text;
+    }
+  }
+}
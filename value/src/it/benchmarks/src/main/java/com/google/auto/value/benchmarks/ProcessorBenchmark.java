@@ -0,0 +1,180 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.value.benchmarks;
+
+import com.google.auto.factory.processor.AutoFactoryProcessor;
+import com.google.auto.value.processor.AutoAnnotationProcessor;
+import com.google.auto.value.processor.AutoOneOfProcessor;
+import com.google.auto.value.processor.AutoValueProcessor;
+import com.google.auto.value.processor.PhaseTimer;
+import com.google.auto.value.processor.PhaseTimer.Phase;
+import com.google.auto.value.processor.SymbolCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long it takes to run AutoValue, AutoOneOf, AutoAnnotation, and AutoFactory over a
+ * synthetic {@link Corpus} of {@link #size} classes. Each invocation is a complete in-process
+ * compilation with {@code -proc:only}, so the time is dominated by the processors rather than by
+ * compiling the generated code.
+ *
+ * <p>As well as the total time, each invocation reports the time that the AutoValue and AutoOneOf
+ * processors spent in each {@linkplain PhaseTimer.Phase phase}, as the secondary results
+ * {@code validateMs}, {@code classifyMs}, and so on. Those make it possible to see which part of
+ * the pipeline a change has affected. The secondary results {@code symbolCacheHits} and {@code
+ * symbolCacheMisses} show how often those processors looked up a class by name, and how often the
+ * lookup was answered by their {@link SymbolCache}.
+ *
+ * <p>To run the benchmarks, from the {@code value} directory:
+ *
+ * <pre>
+ * mvn -P benchmarks install
+ * java -jar src/it/benchmarks/target/benchmarks.jar
+ * </pre>
+ *
+ * The usual JMH options apply, for example {@code -p size=1000} to run only that size, or
+ * {@code -prof gc} to see allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ProcessorBenchmark {
+  @Param({"100", "1000", "10000"})
+  public int size;
+
+  private ImmutableList<JavaFileObject> sources;
+  private Path outputDirectory;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    sources = Corpus.generate(size);
+    outputDirectory = Files.createTempDirectory("autobenchmark");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    MoreFiles.deleteRecursively(outputDirectory, RecursiveDeleteOption.ALLOW_INSECURE);
+  }
+
+  /**
+   * The time spent in each phase by the AutoValue and AutoOneOf processors during one invocation,
+   * in milliseconds, and their symbol cache counters. JMH reports each public field as a secondary
+   * result.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class PhaseTimes {
+    public double validateMs;
+    public double classifyMs;
+    public double extensionsMs;
+    public double toTextMs;
+    public double decodeMs;
+    public double formatMs;
+    public double writeMs;
+    public long symbolCacheHits;
+    public long symbolCacheMisses;
+
+    @Setup(Level.Invocation)
+    public void reset() {
+      validateMs = 0;
+      classifyMs = 0;
+      extensionsMs = 0;
+      toTextMs = 0;
+      decodeMs = 0;
+      formatMs = 0;
+      writeMs = 0;
+      symbolCacheHits = 0;
+      symbolCacheMisses = 0;
+    }
+
+    void add(PhaseTimer timer, SymbolCache symbolCache) {
+      validateMs += millis(timer, Phase.VALIDATE);
+      classifyMs += millis(timer, Phase.CLASSIFY);
+      extensionsMs += millis(timer, Phase.EXTENSIONS);
+      toTextMs += millis(timer, Phase.TO_TEXT);
+      decodeMs += millis(timer, Phase.DECODE);
+      formatMs += millis(timer, Phase.FORMAT);
+      writeMs += millis(timer, Phase.WRITE);
+      symbolCacheHits += symbolCache.hits();
+      symbolCacheMisses += symbolCache.misses();
+    }
+
+    private static double millis(PhaseTimer timer, Phase phase) {
+      return timer.nanos(phase) / 1e6;
+    }
+  }
+
+  @Benchmark
+  public int process(PhaseTimes phaseTimes) throws IOException {
+    AutoValueProcessor autoValueProcessor = new AutoValueProcessor();
+    AutoOneOfProcessor autoOneOfProcessor = new AutoOneOfProcessor();
+    autoValueProcessor.phaseTimer().enable();
+    autoOneOfProcessor.phaseTimer().enable();
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    try (StandardJavaFileManager fileManager =
+        compiler.getStandardFileManager(diagnostics, null, null)) {
+      fileManager.setLocation(
+          StandardLocation.SOURCE_OUTPUT, ImmutableList.of(outputDirectory.toFile()));
+      fileManager.setLocation(
+          StandardLocation.CLASS_OUTPUT, ImmutableList.of(outputDirectory.toFile()));
+      ImmutableList<String> options =
+          ImmutableList.of("-proc:only", "-classpath", System.getProperty("java.class.path"));
+      JavaCompiler.CompilationTask task =
+          compiler.getTask(null, fileManager, diagnostics, options, null, sources);
+      task.setProcessors(
+          ImmutableList.of(
+              autoValueProcessor,
+              autoOneOfProcessor,
+              new AutoAnnotationProcessor(),
+              new AutoFactoryProcessor()));
+      if (!task.call()) {
+        throw new IllegalStateException("Compilation failed: " + diagnostics.getDiagnostics());
+      }
+    }
+    phaseTimes.add(autoValueProcessor.phaseTimer(), autoValueProcessor.symbolCache());
+    phaseTimes.add(autoOneOfProcessor.phaseTimer(), autoOneOfProcessor.symbolCache());
+    return diagnostics.getDiagnostics().size();
+  }
+}
@@ -16,6 +16,9 @@
 package com.google.auto.value;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 import com.google.auto.value.annotations.Empty;
 import com.google.auto.value.annotations.GwtArrays;
@@ -611,4 +614,143 @@ public class AutoAnnotationTest {
         AnnotatedWithEverythingWithDefaults.class.getAnnotation(EverythingWithDefaults.class);
     new EqualsTester().addEqualityGroup(generated, fromReflect).testEquals();
   }
+
+  @AutoAnnotation
+  @AutoAnnotation.Cached
+  private static StringValues newCachedStringValues(String[] value) {
+    return AutoAnnotation_AutoAnnotationTest_newCachedStringValues.cached(value);
+  }
+
+  @AutoAnnotation
+  @AutoAnnotation.Cached
+  private static Empty newCachedEmpty() {
+    return AutoAnnotation_AutoAnnotationTest_newCachedEmpty.cached();
+  }
+
+  @AutoAnnotation
+  @AutoAnnotation.Cached
+  static Everything newCachedEverythingCollections(
+      byte aByte,
+      short aShort,
+      int anInt,
+      long aLong,
+      float aFloat,
+      double aDouble,
+      char aChar,
+      boolean aBoolean,
+      String aString,
+      RetentionPolicy anEnum,
+      StringValues anAnnotation,
+      Collection<Byte> bytes,
+      List<Short> shorts,
+      ArrayList<Integer> ints,
+      Set<Long> longs,
+      SortedSet<Float> floats,
+      TreeSet<Double> doubles,
+      LinkedHashSet<Character> chars,
+      ImmutableCollection<Boolean> booleans,
+      ImmutableList<String> strings,
+      ImmutableSet<RetentionPolicy> enums,
+      Set<StringValues> annotations) {
+    return AutoAnnotation_AutoAnnotationTest_newCachedEverythingCollections.cached(
+        aByte,
+        aShort,
+        anInt,
+        aLong,
+        aFloat,
+        aDouble,
+        aChar,
+        aBoolean,
+        aString,
+        anEnum,
+        anAnnotation,
+        bytes,
+        shorts,
+        ints,
+        longs,
+        floats,
+        doubles,
+        chars,
+        booleans,
+        strings,
+        enums,
+        annotations);
+  }
+
+  private static Everything newCachedEverything(String aString, float aFloat) {
+    return newCachedEverythingCollections(
+        (byte) 1,
+        (short) 2,
+        3,
+        -4,
+        aFloat,
+        Double.NaN,
+        '#',
+        true,
+        aString,
+        RetentionPolicy.RUNTIME,
+        newStringValues(new String[] {"whatever"}),
+        Arrays.asList((byte) 5, (byte) 6),
+        Collections.<Short>emptyList(),
+        new ArrayList<Integer>(Collections.singleton(7)),
+        ImmutableSet.of(8L, 9L),
+        ImmutableSortedSet.of(10f, 11f),
+        new TreeSet<Double>(
+            ImmutableList.of(Double.NEGATIVE_INFINITY, -12.0, Double.POSITIVE_INFINITY)),
+        new LinkedHashSet<Character>(ImmutableList.of('?', '!', '\n')),
+        ImmutableList.of(false, true, false),
+        ImmutableList.of("ver", "vers", "vert", "verre", "vair"),
+        ImmutableSet.of(RetentionPolicy.CLASS, RetentionPolicy.RUNTIME),
+        ImmutableSet.of(
+            newStringValues(new String[] {}), newStringValues(new String[] {"foo", "bar"})));
+  }
+
+  @Test
+  public void testCachedEqualsAndHashCode() {
+    new EqualsTester()
+        .addEqualityGroup(
+            EVERYTHING_FROM_REFLECTION,
+            EVERYTHING_FROM_AUTO,
+            newCachedEverything("maybe\nmaybe not\n", Float.NaN))
+        .addEqualityGroup(newCachedEverything("maybe", Float.NaN))
+        .addEqualityGroup(newCachedEverything("maybe", 0f))
+        .addEqualityGroup(newCachedEverything("maybe", -0f))
+        .addEqualityGroup(
+            AnnotatedClass.class.getAnnotation(StringValues.class),
+            newCachedStringValues(new String[] {"oops"}))
+        .addEqualityGroup(AnnotatedClass.class.getAnnotation(Empty.class), newCachedEmpty())
+        .testEquals();
+  }
+
+  @Test
+  public void testCachedReturnsSameInstance() {
+    Everything everything = newCachedEverything("maybe", Float.NaN);
+    assertSame(everything, newCachedEverything("maybe", Float.NaN));
+    assertNotSame(everything, newCachedEverything("maybe not", Float.NaN));
+    assertSame(
+        newCachedStringValues(new String[] {"oops"}), newCachedStringValues(new String[] {"oops"}));
+    assertSame(newCachedEmpty(), newCachedEmpty());
+  }
+
+  @Test
+  public void testCachedArraysAreCloned() {
+    String[] array = {"Jekyll"};
+    StringValues stringValues = newCachedStringValues(array);
+    array[0] = "Hyde";
+    assertEquals("Jekyll", stringValues.value()[0]);
+    stringValues.value()[0] = "Hyde";
+    assertEquals("Jekyll", stringValues.value()[0]);
+    assertEquals("Hyde", newCachedStringValues(array).value()[0]);
+    assertSame(stringValues, newCachedStringValues(new String[] {"Jekyll"}));
+  }
+
+  @Test
+  public void testCachedNull() {
+    try {
+      newCachedStringValues(null);
+      fail();
+    } catch (NullPointerException expected) {
+      assertEquals("Null value", expected.getMessage());
+    }
+  }
 }
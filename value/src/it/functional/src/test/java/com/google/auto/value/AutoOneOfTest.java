@@ -301,6 +301,60 @@ public class AutoOneOfTest {
     assertThat(primitive.toString()).isEqualTo("Primitive{anInt=17}");
   }
 
+  @Test
+  public void matchPrimitive() {
+    AutoOneOf_AutoOneOfTest_Primitive.Cases<String> describe =
+        new AutoOneOf_AutoOneOfTest_Primitive.Cases<String>() {
+          @Override
+          public String aByte(byte aByte) {
+            return "byte " + aByte;
+          }
+
+          @Override
+          public String aShort(short aShort) {
+            return "short " + aShort;
+          }
+
+          @Override
+          public String anInt(int anInt) {
+            return "int " + anInt;
+          }
+
+          @Override
+          public String aLong(long aLong) {
+            return "long " + aLong;
+          }
+
+          @Override
+          public String aFloat(float aFloat) {
+            return "float " + aFloat;
+          }
+
+          @Override
+          public String aDouble(double aDouble) {
+            return "double " + aDouble;
+          }
+
+          @Override
+          public String aChar(char aChar) {
+            return "char " + aChar;
+          }
+
+          @Override
+          public String aBoolean(boolean aBoolean) {
+            return "boolean " + aBoolean;
+          }
+        };
+    assertThat(AutoOneOf_AutoOneOfTest_Primitive.match(Primitive.of(17), describe))
+        .isEqualTo("int 17");
+    assertThat(AutoOneOf_AutoOneOfTest_Primitive.match(Primitive.of(17L), describe))
+        .isEqualTo("long 17");
+    assertThat(AutoOneOf_AutoOneOfTest_Primitive.match(Primitive.of('x'), describe))
+        .isEqualTo("char x");
+    assertThat(AutoOneOf_AutoOneOfTest_Primitive.match(Primitive.of(true), describe))
+        .isEqualTo("boolean true");
+  }
+
   @AutoOneOf(OneOfOne.Kind.class)
   public abstract static class OneOfOne {
     public enum Kind {
@@ -387,6 +441,71 @@ public class AutoOneOfTest {
     }
   }
 
+  @Test
+  public void matchGeneric() {
+    AutoOneOf_AutoOneOfTest_TaskResult.Cases<String, Integer> length =
+        new AutoOneOf_AutoOneOfTest_TaskResult.Cases<String, Integer>() {
+          @Override
+          public Integer value(String value) {
+            return value.length();
+          }
+
+          @Override
+          public Integer exception(Throwable exception) {
+            return -1;
+          }
+        };
+    TaskResult<String> value = TaskResult.value("foo");
+    @SuppressWarnings("unchecked")
+    TaskResult<String> exception =
+        (TaskResult<String>) TaskResult.exception(new IllegalArgumentException());
+    assertThat(AutoOneOf_AutoOneOfTest_TaskResult.match(value, length)).isEqualTo(3);
+    assertThat(AutoOneOf_AutoOneOfTest_TaskResult.match(exception, length)).isEqualTo(-1);
+  }
+
+  // The result type variable of the generated Cases interface can't be called R here.
+  @AutoOneOf(Either.Kind.class)
+  public abstract static class Either<L, R> {
+    public enum Kind {
+      LEFT,
+      RIGHT
+    }
+
+    public abstract Kind getKind();
+
+    public abstract L left();
+
+    public abstract R right();
+
+    static <L, R> Either<L, R> left(L left) {
+      return AutoOneOf_AutoOneOfTest_Either.left(left);
+    }
+
+    static <L, R> Either<L, R> right(R right) {
+      return AutoOneOf_AutoOneOfTest_Either.right(right);
+    }
+  }
+
+  @Test
+  public void matchWithTypeParameterCalledR() {
+    AutoOneOf_AutoOneOfTest_Either.Cases<String, Integer, String> describe =
+        new AutoOneOf_AutoOneOfTest_Either.Cases<String, Integer, String>() {
+          @Override
+          public String left(String left) {
+            return "left " + left;
+          }
+
+          @Override
+          public String right(Integer right) {
+            return "right " + right;
+          }
+        };
+    Either<String, Integer> left = Either.left("foo");
+    Either<String, Integer> right = Either.right(23);
+    assertThat(AutoOneOf_AutoOneOfTest_Either.match(left, describe)).isEqualTo("left foo");
+    assertThat(AutoOneOf_AutoOneOfTest_Either.match(right, describe)).isEqualTo("right 23");
+  }
+
   @AutoOneOf(CustomToString.Kind.class)
   public abstract static class CustomToString {
     public enum Kind {
@@ -626,6 +745,26 @@ public class AutoOneOfTest {
     assertThat(notEmpty).isNotEqualTo(empty);
   }
 
+  @Test
+  public void matchVoidProperty() {
+    AutoOneOf_AutoOneOfTest_MaybeEmpty.Cases<String> describe =
+        new AutoOneOf_AutoOneOfTest_MaybeEmpty.Cases<String>() {
+          @Override
+          public String empty() {
+            return "empty";
+          }
+
+          @Override
+          public String string(String string) {
+            return "string " + string;
+          }
+        };
+    assertThat(AutoOneOf_AutoOneOfTest_MaybeEmpty.match(MaybeEmpty.ofEmpty(), describe))
+        .isEqualTo("empty");
+    assertThat(AutoOneOf_AutoOneOfTest_MaybeEmpty.match(MaybeEmpty.ofString("foo"), describe))
+        .isEqualTo("string foo");
+  }
+
   @Test
   public void voidPropertyWrongType() {
     MaybeEmpty notEmpty = MaybeEmpty.ofString("foo");
@@ -658,4 +797,252 @@ public class AutoOneOfTest {
     OneOfArray oneOfArray = OneOfArray.ofInts(new int[] {1, 2});
     assertThat(oneOfArray.toString()).isEqualTo("OneOfArray{ints=[1, 2]}");
   }
+
+  @AutoOneOf(Compact.Kind.class)
+  @AutoOneOf.Compact
+  public abstract static class Compact<T> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Kind {
+      A_BYTE,
+      A_SHORT,
+      AN_INT,
+      A_LONG,
+      A_FLOAT,
+      A_DOUBLE,
+      A_CHAR,
+      A_BOOLEAN,
+      STRING,
+      GENERIC,
+      INTS,
+      DOG,
+      EMPTY
+    }
+
+    public abstract Kind getKind();
+
+    public abstract byte aByte();
+
+    public abstract short aShort();
+
+    public abstract int anInt();
+
+    public abstract long aLong();
+
+    public abstract float aFloat();
+
+    public abstract double aDouble();
+
+    public abstract char aChar();
+
+    public abstract boolean aBoolean();
+
+    public abstract String string();
+
+    public abstract T generic();
+
+    @SuppressWarnings("mutable")
+    public abstract int[] ints();
+
+    public abstract Dog dog();
+
+    public abstract void empty();
+  }
+
+  @Test
+  public void compactProperties() {
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.aByte((byte) -3).aByte()).isEqualTo(-3);
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.aShort((short) -300).aShort()).isEqualTo(-300);
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.anInt(Integer.MIN_VALUE).anInt())
+        .isEqualTo(Integer.MIN_VALUE);
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.aLong(Long.MAX_VALUE).aLong())
+        .isEqualTo(Long.MAX_VALUE);
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.aFloat(-1.5f).aFloat()).isEqualTo(-1.5f);
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.aDouble(Double.NaN).aDouble()).isNaN();
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.aChar('\uffff').aChar()).isEqualTo('\uffff');
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.aBoolean(true).aBoolean()).isTrue();
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.aBoolean(false).aBoolean()).isFalse();
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.string("foo").string()).isEqualTo("foo");
+    Compact<Integer> generic = AutoOneOf_AutoOneOfTest_Compact.generic(23);
+    assertThat(generic.generic()).isEqualTo(23);
+    assertThat(generic.getKind()).isEqualTo(Compact.Kind.GENERIC);
+    try {
+      generic.string();
+      fail();
+    } catch (UnsupportedOperationException e) {
+      assertThat(e).hasMessageThat().isEqualTo("GENERIC");
+    }
+    try {
+      generic.empty();
+      fail();
+    } catch (UnsupportedOperationException e) {
+      assertThat(e).hasMessageThat().isEqualTo("GENERIC");
+    }
+  }
+
+  @Test
+  public void compactIsOneClass() {
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.anInt(1).getClass())
+        .isSameInstanceAs(AutoOneOf_AutoOneOfTest_Compact.string("foo").getClass());
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.empty().getClass())
+        .isSameInstanceAs(AutoOneOf_AutoOneOfTest_Compact.string("foo").getClass());
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.class.getDeclaredClasses()).hasLength(2);
+  }
+
+  @Test
+  public void compactEqualsAndHashCode() {
+    new EqualsTester()
+        .addEqualityGroup(
+            AutoOneOf_AutoOneOfTest_Compact.anInt(1), AutoOneOf_AutoOneOfTest_Compact.anInt(1))
+        .addEqualityGroup(AutoOneOf_AutoOneOfTest_Compact.aLong(1))
+        .addEqualityGroup(
+            AutoOneOf_AutoOneOfTest_Compact.aDouble(Double.NaN),
+            AutoOneOf_AutoOneOfTest_Compact.aDouble(Double.NaN))
+        .addEqualityGroup(AutoOneOf_AutoOneOfTest_Compact.aDouble(0.0))
+        .addEqualityGroup(AutoOneOf_AutoOneOfTest_Compact.aDouble(-0.0))
+        .addEqualityGroup(
+            AutoOneOf_AutoOneOfTest_Compact.string("1"),
+            AutoOneOf_AutoOneOfTest_Compact.string("1"))
+        .addEqualityGroup(AutoOneOf_AutoOneOfTest_Compact.generic("1"))
+        .addEqualityGroup(
+            AutoOneOf_AutoOneOfTest_Compact.ints(new int[] {1}),
+            AutoOneOf_AutoOneOfTest_Compact.ints(new int[] {1}))
+        .addEqualityGroup(AutoOneOf_AutoOneOfTest_Compact.empty())
+        .testEquals();
+    // The hash codes are the same as in the non-compact representation.
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.string("foo").hashCode())
+        .isEqualTo("foo".hashCode());
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.aLong(1L << 40).hashCode())
+        .isEqualTo(Long.valueOf(1L << 40).hashCode());
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.aBoolean(true).hashCode())
+        .isEqualTo(Boolean.TRUE.hashCode());
+  }
+
+  @Test
+  public void compactToString() {
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.aChar('x').toString())
+        .isEqualTo("Compact{aChar=x}");
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.aFloat(1.5f).toString())
+        .isEqualTo("Compact{aFloat=1.5}");
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.ints(new int[] {1, 2}).toString())
+        .isEqualTo("Compact{ints=[1, 2]}");
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.dog(Dog.create("Marvin")).toString())
+        .isEqualTo("Compact{dog=Dog{name=Marvin}}");
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.empty().toString()).isEqualTo("Compact{empty}");
+  }
+
+  // The generated appendTo(StringBuilder sb) must not declare a local variable called sb.
+  @AutoOneOf(CompactWithSb.Kind.class)
+  @AutoOneOf.Compact
+  public abstract static class CompactWithSb {
+    public enum Kind {
+      SB,
+      NUMBER
+    }
+
+    public abstract Kind getKind();
+
+    public abstract String sb();
+
+    public abstract int number();
+  }
+
+  @Test
+  public void compactPropertyCalledSb() {
+    assertThat(AutoOneOf_AutoOneOfTest_CompactWithSb.sb("foo").toString())
+        .isEqualTo("CompactWithSb{sb=foo}");
+    assertThat(AutoOneOf_AutoOneOfTest_CompactWithSb.number(23).toString())
+        .isEqualTo("CompactWithSb{number=23}");
+  }
+
+  @Test
+  public void compactVoidPropertyRemainsSingletonWhenDeserialized() throws Exception {
+    Compact<?> empty1 = AutoOneOf_AutoOneOfTest_Compact.empty();
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.empty()).isSameInstanceAs(empty1);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ObjectOutputStream dos = new ObjectOutputStream(baos);
+    dos.writeObject(empty1);
+    dos.writeObject(AutoOneOf_AutoOneOfTest_Compact.aDouble(2.5));
+    dos.close();
+    ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+    assertThat(ois.readObject()).isSameInstanceAs(empty1);
+    assertThat(ois.readObject()).isEqualTo(AutoOneOf_AutoOneOfTest_Compact.aDouble(2.5));
+  }
+
+  @Test
+  public void compactMatch() {
+    AutoOneOf_AutoOneOfTest_Compact.Cases<String, String> describe =
+        new AutoOneOf_AutoOneOfTest_Compact.Cases<String, String>() {
+          @Override
+          public String aByte(byte aByte) {
+            return "byte " + aByte;
+          }
+
+          @Override
+          public String aShort(short aShort) {
+            return "short " + aShort;
+          }
+
+          @Override
+          public String anInt(int anInt) {
+            return "int " + anInt;
+          }
+
+          @Override
+          public String aLong(long aLong) {
+            return "long " + aLong;
+          }
+
+          @Override
+          public String aFloat(float aFloat) {
+            return "float " + aFloat;
+          }
+
+          @Override
+          public String aDouble(double aDouble) {
+            return "double " + aDouble;
+          }
+
+          @Override
+          public String aChar(char aChar) {
+            return "char " + aChar;
+          }
+
+          @Override
+          public String aBoolean(boolean aBoolean) {
+            return "boolean " + aBoolean;
+          }
+
+          @Override
+          public String string(String string) {
+            return "string " + string;
+          }
+
+          @Override
+          public String generic(String generic) {
+            return "generic " + generic;
+          }
+
+          @Override
+          public String ints(int[] ints) {
+            return "ints " + ints.length;
+          }
+
+          @Override
+          public String dog(Dog dog) {
+            return "dog " + dog.name();
+          }
+
+          @Override
+          public String empty() {
+            return "empty";
+          }
+        };
+    Compact<String> aShort = AutoOneOf_AutoOneOfTest_Compact.aShort((short) 5);
+    Compact<String> generic = AutoOneOf_AutoOneOfTest_Compact.generic("foo");
+    Compact<String> empty = AutoOneOf_AutoOneOfTest_Compact.empty();
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.match(aShort, describe)).isEqualTo("short 5");
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.match(generic, describe)).isEqualTo("generic foo");
+    assertThat(AutoOneOf_AutoOneOfTest_Compact.match(empty, describe)).isEqualTo("empty");
+  }
 }
@@ -472,6 +472,302 @@ public class AutoValueTest {
         .testEquals();
   }
 
+  @AutoValue
+  @AutoValue.CacheHashCode
+  abstract static class CachedHashCode {
+    abstract String name();
+
+    abstract int id();
+
+    abstract ImmutableList<String> aliases();
+
+    static CachedHashCode create(String name, int id, ImmutableList<String> aliases) {
+      return new AutoValue_AutoValueTest_CachedHashCode(name, id, aliases);
+    }
+  }
+
+  @AutoValue
+  abstract static class UncachedHashCode {
+    abstract String name();
+
+    abstract int id();
+
+    abstract ImmutableList<String> aliases();
+
+    static UncachedHashCode create(String name, int id, ImmutableList<String> aliases) {
+      return new AutoValue_AutoValueTest_UncachedHashCode(name, id, aliases);
+    }
+  }
+
+  @Test
+  public void testCachedHashCode() {
+    CachedHashCode instance1a = CachedHashCode.create("foo", 23, ImmutableList.of("bar"));
+    CachedHashCode instance1b = CachedHashCode.create("foo", 23, ImmutableList.of("bar"));
+    CachedHashCode instance2 = CachedHashCode.create("foo", 17, ImmutableList.of("bar"));
+    CachedHashCode instance3 = CachedHashCode.create("foo", 23, ImmutableList.<String>of());
+    new EqualsTester()
+        .addEqualityGroup(instance1a, instance1b)
+        .addEqualityGroup(instance2)
+        .addEqualityGroup(instance3)
+        .testEquals();
+    // The cached hash code must be the same as the one that would have been computed on demand.
+    assertEquals(
+        UncachedHashCode.create("foo", 23, ImmutableList.of("bar")).hashCode(),
+        instance1a.hashCode());
+  }
+
+  enum Visibility {
+    PRIVATE,
+    PACKAGE,
+    PUBLIC
+  }
+
+  @AutoValue
+  @AutoValue.Packed
+  abstract static class PackedPermissions {
+    abstract boolean readable();
+
+    abstract boolean writable();
+
+    abstract Visibility visibility();
+
+    abstract String owner();
+
+    abstract boolean executable();
+
+    @Nullable
+    abstract Visibility inherited();
+
+    static PackedPermissions create(
+        boolean readable,
+        boolean writable,
+        Visibility visibility,
+        String owner,
+        boolean executable,
+        @Nullable Visibility inherited) {
+      return new AutoValue_AutoValueTest_PackedPermissions(
+          readable, writable, visibility, owner, executable, inherited);
+    }
+  }
+
+  @Test
+  public void testPacked() throws Exception {
+    for (Visibility visibility : Visibility.values()) {
+      for (int flags = 0; flags < 8; flags++) {
+        boolean readable = (flags & 1) != 0;
+        boolean writable = (flags & 2) != 0;
+        boolean executable = (flags & 4) != 0;
+        PackedPermissions permissions =
+            PackedPermissions.create(readable, writable, visibility, "me", executable, null);
+        assertThat(permissions.readable()).isEqualTo(readable);
+        assertThat(permissions.writable()).isEqualTo(writable);
+        assertThat(permissions.visibility()).isEqualTo(visibility);
+        assertThat(permissions.owner()).isEqualTo("me");
+        assertThat(permissions.executable()).isEqualTo(executable);
+        assertThat(permissions.inherited()).isNull();
+      }
+    }
+    PackedPermissions instance1a =
+        PackedPermissions.create(true, false, Visibility.PUBLIC, "me", true, null);
+    PackedPermissions instance1b =
+        PackedPermissions.create(true, false, Visibility.PUBLIC, "me", true, null);
+    new EqualsTester()
+        .addEqualityGroup(instance1a, instance1b)
+        .addEqualityGroup(
+            PackedPermissions.create(true, false, Visibility.PACKAGE, "me", true, null))
+        .addEqualityGroup(
+            PackedPermissions.create(true, true, Visibility.PUBLIC, "me", true, null))
+        .addEqualityGroup(
+            PackedPermissions.create(true, false, Visibility.PUBLIC, "you", true, null))
+        .addEqualityGroup(
+            PackedPermissions.create(true, false, Visibility.PUBLIC, "me", true, Visibility.PUBLIC))
+        .testEquals();
+    String expectedString =
+        omitIdentifiers
+            ? "{true, false, PUBLIC, me, true, null}"
+            : "PackedPermissions{readable=true, writable=false, visibility=PUBLIC, owner=me, "
+                + "executable=true, inherited=null}";
+    assertThat(instance1a.toString()).isEqualTo(expectedString);
+    // The four packed properties share one byte field, while the @Nullable enum is not packed.
+    Class<?> generated = instance1a.getClass();
+    assertThat(generated.getDeclaredField("bits$0").getType()).isEqualTo(byte.class);
+    assertThat(generated.getDeclaredField("inherited").getType()).isEqualTo(Visibility.class);
+    try {
+      generated.getDeclaredField("readable");
+      fail("Expected readable property to be packed");
+    } catch (NoSuchFieldException expected) {
+    }
+  }
+
+  @AutoValue
+  @AutoValue.Interned
+  abstract static class InternedKey {
+    abstract String host();
+
+    abstract int port();
+
+    static InternedKey create(String host, int port) {
+      return AutoValue_AutoValueTest_InternedKey.interned(host, port);
+    }
+  }
+
+  @AutoValue
+  @AutoValue.Interned
+  abstract static class InternedKeyWithBuilder {
+    abstract String host();
+
+    abstract int port();
+
+    static Builder builder() {
+      return new AutoValue_AutoValueTest_InternedKeyWithBuilder.Builder();
+    }
+
+    @AutoValue.Builder
+    abstract static class Builder {
+      abstract Builder host(String x);
+
+      abstract Builder port(int x);
+
+      abstract InternedKeyWithBuilder build();
+    }
+  }
+
+  @Test
+  public void testInterned() {
+    long requests = AutoValue_AutoValueTest_InternedKey.internRequestCount();
+    long hits = AutoValue_AutoValueTest_InternedKey.internHitCount();
+    long instances = AutoValue_AutoValueTest_InternedKey.internedInstanceCount();
+    InternedKey key1 = InternedKey.create("example.com", 443);
+    InternedKey key2 = InternedKey.create(new String("example.com"), 443);
+    InternedKey key3 = InternedKey.create("example.com", 443);
+    InternedKey other = InternedKey.create("example.com", 80);
+    assertThat(key2).isSameInstanceAs(key1);
+    assertThat(key3).isSameInstanceAs(key1);
+    assertThat(other).isNotSameInstanceAs(key1);
+    assertThat(other).isNotEqualTo(key1);
+    // An instance constructed directly is equal to the canonical one, but is not itself canonical.
+    InternedKey direct = new AutoValue_AutoValueTest_InternedKey("example.com", 443);
+    assertThat(direct).isEqualTo(key1);
+    assertThat(direct).isNotSameInstanceAs(key1);
+    assertThat(AutoValue_AutoValueTest_InternedKey.internRequestCount() - requests).isEqualTo(4);
+    assertThat(AutoValue_AutoValueTest_InternedKey.internHitCount() - hits).isEqualTo(2);
+    assertThat(AutoValue_AutoValueTest_InternedKey.internedInstanceCount() - instances)
+        .isEqualTo(2);
+  }
+
+  @Test
+  public void testInternedWithBuilder() {
+    InternedKeyWithBuilder key1 =
+        InternedKeyWithBuilder.builder().host("example.com").port(443).build();
+    InternedKeyWithBuilder key2 =
+        InternedKeyWithBuilder.builder().host(new String("example.com")).port(443).build();
+    assertThat(key2).isSameInstanceAs(key1);
+    assertThat(InternedKeyWithBuilder.builder().host("example.com").port(80).build())
+        .isNotEqualTo(key1);
+  }
+
+  @AutoValue
+  abstract static class Withers {
+    abstract String name();
+
+    abstract double weight();
+
+    @Nullable
+    abstract String note();
+
+    abstract Withers withName(String name);
+
+    abstract Withers withWeight(double weight);
+
+    abstract Withers withNote(@Nullable String note);
+
+    static Builder builder() {
+      return new AutoValue_AutoValueTest_Withers.Builder();
+    }
+
+    @AutoValue.Builder
+    abstract static class Builder {
+      abstract Builder name(String x);
+
+      abstract Builder weight(double x);
+
+      abstract Builder note(String x);
+
+      abstract Withers build();
+    }
+  }
+
+  @Test
+  public void testWithers() {
+    Withers withers = Withers.builder().name("foo").weight(0.0).build();
+    assertThat(withers.withName(withers.name())).isSameInstanceAs(withers);
+    assertThat(withers.withWeight(0.0)).isSameInstanceAs(withers);
+    assertThat(withers.withNote(null)).isSameInstanceAs(withers);
+
+    Withers renamed = withers.withName("bar");
+    assertThat(renamed).isEqualTo(Withers.builder().name("bar").weight(0.0).build());
+    assertThat(withers.name()).isEqualTo("foo");
+    assertThat(withers.withNote("baz").note()).isEqualTo("baz");
+    Withers negativeZero = withers.withWeight(-0.0);
+    assertThat(negativeZero).isNotSameInstanceAs(withers);
+    assertThat(negativeZero.weight()).isEqualTo(-0.0);
+    try {
+      withers.withName(null);
+      fail();
+    } catch (NullPointerException expected) {
+    }
+  }
+
+  @AutoValue
+  abstract static class AppendedInner {
+    @SuppressWarnings("mutable")
+    abstract int[] ints();
+
+    @Nullable
+    abstract String name();
+
+    static AppendedInner create(int[] ints, @Nullable String name) {
+      return new AutoValue_AutoValueTest_AppendedInner(ints, name);
+    }
+  }
+
+  @AutoValue
+  abstract static class AppendedOuter {
+    abstract AppendedInner inner();
+
+    abstract ImmutableList<AppendedInner> inners();
+
+    static AppendedOuter create(AppendedInner inner, ImmutableList<AppendedInner> inners) {
+      return new AutoValue_AutoValueTest_AppendedOuter(inner, inners);
+    }
+  }
+
+  @Test
+  public void testAppendTo() {
+    AppendedInner inner1 = AppendedInner.create(new int[] {1, 2}, "one");
+    AppendedInner inner2 = AppendedInner.create(new int[0], null);
+    AppendedOuter outer = AppendedOuter.create(inner1, ImmutableList.of(inner1, inner2));
+    String expectedInner1 =
+        omitIdentifiers ? "{[1, 2], one}" : "AppendedInner{ints=[1, 2], name=one}";
+    String expectedInner2 = omitIdentifiers ? "{[], null}" : "AppendedInner{ints=[], name=null}";
+    assertThat(inner1.toString()).isEqualTo(expectedInner1);
+    assertThat(inner2.toString()).isEqualTo(expectedInner2);
+    String expectedOuter =
+        omitIdentifiers
+            ? "{" + expectedInner1 + ", [" + expectedInner1 + ", " + expectedInner2 + "]}"
+            : "AppendedOuter{inner="
+                + expectedInner1
+                + ", inners=["
+                + expectedInner1
+                + ", "
+                + expectedInner2
+                + "]}";
+    assertThat(outer.toString()).isEqualTo(expectedOuter);
+    StringBuilder sb = new StringBuilder("outer: ");
+    assertThat(((AutoValue_AutoValueTest_AppendedOuter) outer).appendTo(sb)).isSameInstanceAs(sb);
+    assertThat(sb.toString()).isEqualTo("outer: " + expectedOuter);
+  }
+
   private static int singlePropertyHash(Object property) {
     return 1000003 ^ property.hashCode();
   }
@@ -1575,6 +1871,222 @@ public class AutoValueTest {
     }
   }
 
+  // More than 32 primitive properties, so the builder needs more than one int to record which
+  // of them have been set.
+  @AutoValue
+  public abstract static class ManyPrimitives {
+    public abstract int p0();
+
+    public abstract long p1();
+
+    public abstract boolean p2();
+
+    public abstract double p3();
+
+    public abstract byte p4();
+
+    public abstract short p5();
+
+    public abstract char p6();
+
+    public abstract float p7();
+
+    public abstract int p8();
+
+    public abstract long p9();
+
+    public abstract boolean p10();
+
+    public abstract double p11();
+
+    public abstract byte p12();
+
+    public abstract short p13();
+
+    public abstract char p14();
+
+    public abstract float p15();
+
+    public abstract int p16();
+
+    public abstract long p17();
+
+    public abstract boolean p18();
+
+    public abstract double p19();
+
+    public abstract byte p20();
+
+    public abstract short p21();
+
+    public abstract char p22();
+
+    public abstract float p23();
+
+    public abstract int p24();
+
+    public abstract long p25();
+
+    public abstract boolean p26();
+
+    public abstract double p27();
+
+    public abstract byte p28();
+
+    public abstract short p29();
+
+    public abstract char p30();
+
+    public abstract float p31();
+
+    public abstract int p32();
+
+    public abstract long p33();
+
+    public abstract Builder toBuilder();
+
+    public static Builder builder() {
+      return new AutoValue_AutoValueTest_ManyPrimitives.Builder();
+    }
+
+    @AutoValue.Builder
+    public interface Builder {
+      Builder p0(int x);
+
+      Builder p1(long x);
+
+      Builder p2(boolean x);
+
+      Builder p3(double x);
+
+      Builder p4(byte x);
+
+      Builder p5(short x);
+
+      Builder p6(char x);
+
+      Builder p7(float x);
+
+      Builder p8(int x);
+
+      Builder p9(long x);
+
+      Builder p10(boolean x);
+
+      Builder p11(double x);
+
+      Builder p12(byte x);
+
+      Builder p13(short x);
+
+      Builder p14(char x);
+
+      Builder p15(float x);
+
+      Builder p16(int x);
+
+      Builder p17(long x);
+
+      Builder p18(boolean x);
+
+      Builder p19(double x);
+
+      Builder p20(byte x);
+
+      Builder p21(short x);
+
+      Builder p22(char x);
+
+      Builder p23(float x);
+
+      Builder p24(int x);
+
+      Builder p25(long x);
+
+      Builder p26(boolean x);
+
+      Builder p27(double x);
+
+      Builder p28(byte x);
+
+      Builder p29(short x);
+
+      Builder p30(char x);
+
+      Builder p31(float x);
+
+      Builder p32(int x);
+
+      Builder p33(long x);
+
+      int p32();
+
+      ManyPrimitives build();
+    }
+  }
+
+  @Test
+  public void testManyPrimitives() {
+    ManyPrimitives.Builder builder = ManyPrimitives.builder();
+    builder.p1(1L);
+    builder.p2(true);
+    builder.p3(3.0);
+    builder.p4((byte) 4);
+    builder.p5((short) 5);
+    builder.p6('g');
+    builder.p7(7.0f);
+    builder.p8(8);
+    builder.p9(9L);
+    builder.p10(true);
+    builder.p11(11.0);
+    builder.p12((byte) 12);
+    builder.p13((short) 13);
+    builder.p14('o');
+    builder.p15(15.0f);
+    builder.p16(16);
+    builder.p17(17L);
+    builder.p18(true);
+    builder.p19(19.0);
+    builder.p20((byte) 20);
+    builder.p21((short) 21);
+    builder.p22('w');
+    builder.p23(23.0f);
+    builder.p24(24);
+    builder.p25(25L);
+    builder.p26(true);
+    builder.p27(27.0);
+    builder.p28((byte) 28);
+    builder.p29((short) 29);
+    builder.p30('e');
+    builder.p31(31.0f);
+    builder.p32(32);
+    assertThat(builder.p32()).isEqualTo(32);
+    try {
+      builder.build();
+      fail("Expected IllegalStateException for unset primitive properties");
+    } catch (IllegalStateException e) {
+      if (omitIdentifiers) {
+        assertThat(e).hasMessageThat().isNull();
+      } else {
+        assertThat(e).hasMessageThat().isEqualTo("Missing required properties: p0 p33");
+      }
+    }
+    builder.p0(0).p33(33L);
+    ManyPrimitives instance = builder.build();
+    assertThat(instance.p0()).isEqualTo(0);
+    assertThat(instance.p33()).isEqualTo(33L);
+    assertThat(instance.toBuilder().build()).isEqualTo(instance);
+
+    try {
+      ManyPrimitives.builder().p32();
+      fail("Expected IllegalStateException for unset primitive property");
+    } catch (IllegalStateException e) {
+      if (!omitIdentifiers) {
+        assertThat(e).hasMessageThat().contains("p32");
+      }
+    }
+  }
+
   @AutoValue
   public abstract static class PrimitiveAndBoxed {
     public abstract int anInt();
@@ -75,4 +75,33 @@ import java.lang.reflect.AnnotatedElement;
  */
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.SOURCE)
-public @interface AutoAnnotation {}
+public @interface AutoAnnotation {
+  /**
+   * Specifies that the generated class for an {@code @AutoAnnotation} method should remember
+   * instances it has made, so that calls with equal arguments can share one instance instead of
+   * each making a new one and copying its array arguments.
+   *
+   * <pre>
+   *
+   * public class Names {
+   *   &#64;AutoAnnotation &#64;AutoAnnotation.Cached
+   *   public static Named named(String value) {
+   *     return AutoAnnotation_Names_named.cached(value);
+   *   }
+   * }</pre>
+   *
+   * <p>The generated class has a static method {@code cached} with the same parameters as its
+   * constructor, which returns an instance equal to the one that the constructor would have made.
+   * If an equal instance was returned recently, it is returned again. Otherwise a new instance is
+   * made and remembered in its place. The cache is a fixed-size table indexed by hash code, so it
+   * never holds more than a small number of instances, and it does no locking. It is most useful
+   * when a program asks for the same few annotation values over and over, for example as
+   * dependency-injection keys.
+   *
+   * <p>Instances of the generated class also compute their hash code once, when they are
+   * constructed, rather than each time {@code hashCode()} is called.
+   */
+  @Target(ElementType.METHOD)
+  @Retention(RetentionPolicy.SOURCE)
+  public @interface Cached {}
+}
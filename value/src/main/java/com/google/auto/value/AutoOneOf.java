@@ -66,4 +66,37 @@ import java.lang.annotation.Target;
 public @interface AutoOneOf {
   /** Specifies an enum that has one entry per variant in the one-of. */
   Class<? extends Enum<?>> value();
+
+  /**
+   * Specifies that the generated implementation of an {@code @AutoOneOf} class should be a single
+   * class, whatever the number of variants. Ordinarily there is one generated subclass per variant,
+   * which means that a one-of with many variants loads many classes, and that calls to its methods
+   * from code that sees several variants cannot easily be inlined.
+   *
+   * <pre>
+   *
+   *   {@code @}AutoOneOf(Event.Kind.class)
+   *   {@code @}AutoOneOf.Compact
+   *   abstract class Event {
+   *     enum Kind {KEY, CLICK, SCROLL, CLOSE}
+   *     abstract Kind getKind();
+   *
+   *     abstract KeyEvent key();
+   *     abstract Point click();
+   *     abstract int scroll();
+   *     abstract void close();
+   *   }</pre>
+   *
+   * <p>Here, the generated class has a field for the kind, a field for the value of an object
+   * property like {@code key} or {@code click}, and a {@code long} field that encodes the value of
+   * a primitive property like {@code scroll}. Each property method checks the kind before
+   * returning the value, and the generated {@code equals}, {@code hashCode}, and {@code toString}
+   * methods switch on the kind. Their results are the same as without this annotation.
+   *
+   * <p>Each instance has all of these fields, so an instance can be bigger than it would be
+   * without this annotation.
+   */
+  @Retention(RetentionPolicy.CLASS)
+  @Target(ElementType.TYPE)
+  public @interface Compact {}
 }
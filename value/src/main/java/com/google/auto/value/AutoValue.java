@@ -160,4 +160,107 @@ public @interface AutoValue {
   public @interface CopyAnnotations {
     Class<? extends Annotation>[] exclude() default {};
   }
+
+  /**
+   * Specifies that the generated implementation of an {@code @AutoValue} class should compute its
+   * {@code hashCode()} once, in its constructor, and store it in a final field. This is useful for
+   * classes that are used as keys in large hash-based maps or caches, where the same instance may
+   * be hashed many times. The generated {@code equals(Object)} method also uses the stored hash
+   * code to reject unequal instances without comparing their properties.
+   *
+   * <pre>
+   *
+   *   {@code @}AutoValue
+   *   {@code @}AutoValue.CacheHashCode
+   *   abstract class RouteKey {
+   *     abstract String host();
+   *     abstract int port();
+   *     abstract ImmutableList&lt;String&gt; path();
+   *   }</pre>
+   *
+   * <p>Since the hash code is computed eagerly, it is computed even for instances that are never
+   * hashed. It is also computed from the property values as they are at construction time, so it
+   * should only be used if those values are immutable. This annotation has no effect if the
+   * {@code @AutoValue} class defines its own {@code hashCode()}, and it cannot be used on a
+   * {@link java.io.Serializable} class, because the hash codes of some property values, such as
+   * enums, are not the same from one JVM to the next.
+   */
+  @Retention(RetentionPolicy.CLASS)
+  @Target(ElementType.TYPE)
+  public @interface CacheHashCode {}
+
+  /**
+   * Specifies that the generated implementation of an {@code @AutoValue} class should pack its
+   * {@code boolean} properties, and its properties of small enum types, into a few shared integer
+   * fields instead of storing each one in a field of its own. This reduces the memory used by each
+   * instance of a class that has several such properties.
+   *
+   * <pre>
+   *
+   *   {@code @}AutoValue
+   *   {@code @}AutoValue.Packed
+   *   abstract class Permissions {
+   *     abstract boolean readable();
+   *     abstract boolean writable();
+   *     abstract boolean executable();
+   *     abstract Visibility visibility(); // an enum with 3 constants
+   *     abstract String owner();
+   *   }</pre>
+   *
+   * <p>Here, the three {@code boolean} properties and the {@code visibility} property together
+   * occupy 5 bits of a single {@code byte} field, while {@code owner} is stored as usual. The
+   * property methods decode their values from that field, and the generated {@code equals} and
+   * {@code hashCode} methods use the packed fields directly.
+   *
+   * <p>An enum property is packed if it is not {@code @Nullable} and its enum type has at most 256
+   * constants. It is stored as its {@link Enum#ordinal() ordinal}, so if the enum later gains
+   * enough constants that an ordinal no longer fits, the generated constructor throws {@link
+   * IllegalArgumentException} until the {@code @AutoValue} class is recompiled. For the same
+   * reason, enum properties are not packed in a {@link java.io.Serializable} class.
+   */
+  @Retention(RetentionPolicy.CLASS)
+  @Target(ElementType.TYPE)
+  public @interface Packed {}
+
+  /**
+   * Specifies that the generated implementation of an {@code @AutoValue} class should canonicalize
+   * its instances, so that equal instances obtained through the generated factory are the same
+   * object. This saves memory when a program creates many equal instances, and lets {@code
+   * equals} return as soon as it sees that two instances are identical.
+   *
+   * <pre>
+   *
+   *   {@code @}AutoValue
+   *   {@code @}AutoValue.Interned
+   *   abstract class RouteKey {
+   *     static RouteKey create(String host, int port) {
+   *       return AutoValue_RouteKey.interned(host, port);
+   *     }
+   *
+   *     abstract String host();
+   *     abstract int port();
+   *   }</pre>
+   *
+   * <p>The generated class has a static method {@code interned} with the same parameters as its
+   * constructor, which returns the canonical instance equal to the one that the constructor would
+   * have made. If there is an {@code @AutoValue.Builder}, there is no such method, and instead the
+   * builder's {@code build()} method returns the canonical instance. Canonical instances are held
+   * in a weak interner from Guava's {@code Interners}, so they can be garbage-collected once
+   * nothing else refers to them. Instances that are constructed directly, or deserialized, are not
+   * canonical.
+   *
+   * <p>The generated class also has static methods to help decide whether interning is worthwhile:
+   * {@code internRequestCount()} is the number of instances passed to the interner, {@code
+   * internHitCount()} is the number of those for which an equal canonical instance already
+   * existed, and {@code internedInstanceCount()} is the number of canonical instances that have
+   * been created. The interner may hold fewer than that many, since some may have been
+   * garbage-collected.
+   *
+   * <p>Since interning calls {@code hashCode()} on every new instance, it combines well with
+   * {@link CacheHashCode}. This annotation requires Guava, and it cannot be used on a generic class
+   * or on a class that is {@code @GwtCompatible}.
+   */
+  @Retention(RetentionPolicy.CLASS)
+  @Target(ElementType.TYPE)
+  public @interface Interned {}
 }
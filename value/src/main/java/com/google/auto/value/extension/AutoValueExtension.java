@@ -370,6 +370,33 @@ public abstract class AutoValueExtension {
     return false;
   }
 
+  /**
+   * Returns the fully-qualified names of annotations that indicate this Extension might apply to a
+   * class. If this method or {@link #triggerPropertyTypes} returns a non-empty set, then {@link
+   * #applicable} is only called for classes where one of the triggers is present, and the
+   * Extension is considered not to apply to any other class. An annotation is present if it is on
+   * the {@code @AutoValue} class itself, on a method that the class declares, or on one of its
+   * property methods, including inherited ones.
+   *
+   * <p>Declaring triggers allows the processor to skip an Extension quickly for the many classes
+   * it is not interested in. By default, this method returns an empty set, meaning that the
+   * Extension does not declare any trigger annotations.
+   */
+  public Set<String> triggerAnnotations() {
+    return ImmutableSet.of();
+  }
+
+  /**
+   * Returns the fully-qualified names of classes whose presence as a property type indicates that
+   * this Extension might apply to a class. For example, an Extension that is only interested in
+   * properties of type {@code Optional<T>} could return {@code "java.util.Optional"}. A property
+   * type matches if its erasure is one of these classes. See {@link #triggerAnnotations} for how
+   * triggers are used. By default, this method returns an empty set.
+   */
+  public Set<String> triggerPropertyTypes() {
+    return ImmutableSet.of();
+  }
+
   /**
    * Denotes that the class generated by this Extension must be the final class in the inheritance
    * hierarchy. Only one Extension may be the final class, so this should be used sparingly.
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.value.extension.columnar;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotates {@link com.google.auto.value.AutoValue @AutoValue} classes for which a columnar
+ * companion collection should be generated. For {@code @AutoValue @Columnar abstract class Foo},
+ * the class {@code FooColumns} stores a sequence of {@code Foo} values with each property in its
+ * own array, of a primitive type where the property has one. Values are appended with {@code
+ * add(Foo)}, and can be read back either as {@code Foo} instances, which are created on demand,
+ * or one property at a time, including directly from the arrays.
+ *
+ * <p>The {@code @AutoValue} class cannot be generic.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface Columnar {}
@@ -0,0 +1,398 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.value.extension.columnar.processor;
+
+import static com.google.auto.value.extension.columnar.processor.ClassNames.COLUMNAR_NAME;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.stream.Collectors.joining;
+
+import com.google.auto.common.GeneratedAnnotationSpecs;
+import com.google.auto.common.MoreTypes;
+import com.google.auto.service.AutoService;
+import com.google.auto.value.extension.AutoValueExtension;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Optional;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * An extension that generates a columnar companion collection for {@code @AutoValue} classes that
+ * have the {@link com.google.auto.value.extension.columnar.Columnar @Columnar} annotation.
+ *
+ * <p>For a class {@code Foo}, the companion {@code FooColumns} has one array per property. An
+ * array has a primitive element type if its property has a primitive type, so a large number of
+ * values costs neither an object per value nor boxing. The companion creates {@code Foo} instances
+ * by calling the constructor of the final {@code AutoValue_Foo} class. So that this constructor is
+ * accessible, and still checks for null, this extension always generates a subclass in the
+ * hierarchy, even though that subclass adds nothing.
+ */
+@AutoService(AutoValueExtension.class)
+public final class ColumnarExtension extends AutoValueExtension {
+  /**
+   * Names of methods in the companion class that would clash with the method that reads one value
+   * of a property whose method has the same name.
+   */
+  private static final ImmutableSet<String> RESERVED_METHOD_NAMES =
+      ImmutableSet.of("get", "ensureCapacity");
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  @Override
+  public boolean applicable(Context context) {
+    return context.autoValueClass().getAnnotationMirrors().stream()
+        .map(AnnotationMirror::getAnnotationType)
+        .map(MoreTypes::asTypeElement)
+        .map(TypeElement::getQualifiedName)
+        .anyMatch(name -> name.contentEquals(COLUMNAR_NAME));
+  }
+
+  @Override
+  public ImmutableSet<String> triggerAnnotations() {
+    return ImmutableSet.of(COLUMNAR_NAME);
+  }
+
+  @Override
+  public IncrementalExtensionType incrementalType(ProcessingEnvironment processingEnvironment) {
+    return IncrementalExtensionType.ISOLATING;
+  }
+
+  @Override
+  public String generateClass(
+      Context context, String className, String classToExtend, boolean isFinal) {
+    if (!validate(context)) {
+      return null;
+    }
+    Generator generator = new Generator(context);
+    Optional<AnnotationSpec> generatedAnnotationSpec =
+        GeneratedAnnotationSpecs.generatedAnnotationSpec(
+            context.processingEnvironment().getElementUtils(),
+            context.processingEnvironment().getSourceVersion(),
+            ColumnarExtension.class);
+    try {
+      generator
+          .columns(generatedAnnotationSpec)
+          .writeTo(context.processingEnvironment().getFiler());
+    } catch (IOException e) {
+      error(
+          context,
+          context.autoValueClass(),
+          "Could not write " + generator.columnsClass + ": " + e);
+      return null;
+    }
+    return generator.subclass(className, classToExtend, isFinal, generatedAnnotationSpec);
+  }
+
+  private static boolean validate(Context context) {
+    boolean valid = true;
+    TypeElement type = context.autoValueClass();
+    if (!type.getTypeParameters().isEmpty()) {
+      error(context, type, "@Columnar cannot be used on a generic class");
+      valid = false;
+    }
+    for (ExecutableElement method : context.properties().values()) {
+      String name = method.getSimpleName().toString();
+      if (RESERVED_METHOD_NAMES.contains(name)) {
+        error(context, method, "A @Columnar class cannot have a property method called " + name);
+        valid = false;
+      }
+    }
+    return valid;
+  }
+
+  private static void error(Context context, Element element, String message) {
+    context
+        .processingEnvironment()
+        .getMessager()
+        .printMessage(Diagnostic.Kind.ERROR, message, element);
+  }
+
+  /** One property of the {@code @AutoValue} class, and the array that stores it. */
+  private static final class Column {
+    final String name;
+    final String method;
+    final TypeName type;
+    final ArrayTypeName arrayType;
+    final boolean needsCast;
+
+    Column(String name, ExecutableElement method, TypeMirror type, Types typeUtils) {
+      this.name = name;
+      this.method = method.getSimpleName().toString();
+      this.type = TypeName.get(type);
+      // We can't create an array of a parameterized type like List<String>, so we use the raw
+      // type and cast when reading a value.
+      TypeMirror erasure = typeUtils.erasure(type);
+      this.arrayType = ArrayTypeName.of(TypeName.get(erasure));
+      this.needsCast = !typeUtils.isSameType(erasure, type);
+    }
+
+    /**
+     * The code to read the value at {@code index} from this column. Like all references to a
+     * column, this uses {@code this.} in case a parameter has the same name as the property.
+     */
+    CodeBlock read() {
+      return needsCast
+          ? CodeBlock.of("($T) this.$N[index]", type, name)
+          : CodeBlock.of("this.$N[index]", name);
+    }
+
+    /**
+     * The code to create a column with room for {@code size} values. If the property is itself an
+     * array, like {@code int[]}, the size goes in the first dimension, as in {@code new
+     * int[size][]}.
+     */
+    CodeBlock newArray(String size) {
+      TypeName elementType = arrayType.componentType;
+      StringBuilder dimensions = new StringBuilder();
+      while (elementType instanceof ArrayTypeName) {
+        elementType = ((ArrayTypeName) elementType).componentType;
+        dimensions.append("[]");
+      }
+      return CodeBlock.of("new $T[$L]$L", elementType, size, dimensions);
+    }
+  }
+
+  private static final class Generator {
+    private final Context context;
+    private final ClassName valueClass;
+    private final ClassName finalClass;
+    private final ClassName columnsClass;
+    private final ImmutableList<Column> columns;
+
+    Generator(Context context) {
+      this.context = context;
+      this.valueClass = ClassName.get(context.autoValueClass());
+      String finalName = context.finalAutoValueClassName();
+      String finalSimpleName = finalName.substring(finalName.lastIndexOf('.') + 1);
+      this.finalClass = ClassName.get(context.packageName(), finalSimpleName);
+      // AutoValue_Foo_Bar becomes Foo_BarColumns.
+      String flatName = finalSimpleName.substring(finalSimpleName.indexOf('_') + 1);
+      this.columnsClass = ClassName.get(context.packageName(), flatName + "Columns");
+      Types typeUtils = context.processingEnvironment().getTypeUtils();
+      this.columns =
+          context.propertyTypes().entrySet().stream()
+              .map(
+                  entry ->
+                      new Column(
+                          entry.getKey(),
+                          context.properties().get(entry.getKey()),
+                          entry.getValue(),
+                          typeUtils))
+              .collect(toImmutableList());
+    }
+
+    /** Creates a subclass that has nothing but a constructor that calls super. */
+    String subclass(
+        String className,
+        String classToExtend,
+        boolean isFinal,
+        Optional<AnnotationSpec> generatedAnnotationSpec) {
+      MethodSpec.Builder constructor = MethodSpec.constructorBuilder();
+      for (Column column : columns) {
+        constructor.addParameter(column.type, column.name);
+      }
+      constructor.addStatement(
+          "super($L)", columns.stream().map(column -> column.name).collect(joining(", ")));
+      TypeSpec.Builder subclass =
+          TypeSpec.classBuilder(className)
+              .superclass(ClassName.get(context.packageName(), classToExtend))
+              .addModifiers(isFinal ? Modifier.FINAL : Modifier.ABSTRACT)
+              .addMethod(constructor.build());
+      generatedAnnotationSpec.ifPresent(subclass::addAnnotation);
+      return JavaFile.builder(context.packageName(), subclass.build()).build().toString();
+    }
+
+    /** Creates the companion class that stores values in columns. */
+    JavaFile columns(Optional<AnnotationSpec> generatedAnnotationSpec) {
+      TypeSpec.Builder columnsType =
+          TypeSpec.classBuilder(columnsClass)
+              .addOriginatingElement(context.autoValueClass())
+              .addModifiers(Modifier.FINAL)
+              .addJavadoc(
+                  "A sequence of {@link $T} values, where each property is stored in its own array."
+                      + "\n",
+                  valueClass)
+              .addField(int.class, "size$", Modifier.PRIVATE)
+              .addField(int.class, "capacity$", Modifier.PRIVATE);
+      if (context.autoValueClass().getModifiers().contains(Modifier.PUBLIC)) {
+        columnsType.addModifiers(Modifier.PUBLIC);
+      }
+      generatedAnnotationSpec.ifPresent(columnsType::addAnnotation);
+      for (Column column : columns) {
+        columnsType.addField(
+            FieldSpec.builder(column.arrayType, column.name, Modifier.PRIVATE).build());
+      }
+      columnsType
+          .addMethod(
+              MethodSpec.constructorBuilder()
+                  .addModifiers(Modifier.PUBLIC)
+                  .addStatement("this($L)", DEFAULT_CAPACITY)
+                  .build())
+          .addMethod(constructorWithCapacity())
+          .addMethod(
+              MethodSpec.methodBuilder("size")
+                  .addModifiers(Modifier.PUBLIC)
+                  .returns(int.class)
+                  .addStatement("return size$$")
+                  .build())
+          .addMethod(add())
+          .addMethod(get());
+      for (Column column : columns) {
+        columnsType.addMethod(readOne(column)).addMethod(readColumn(column));
+      }
+      columnsType.addMethod(ensureCapacity()).addMethod(checkIndex());
+      return JavaFile.builder(context.packageName(), columnsType.build()).build();
+    }
+
+    private MethodSpec constructorWithCapacity() {
+      MethodSpec.Builder constructor =
+          MethodSpec.constructorBuilder()
+              .addModifiers(Modifier.PUBLIC)
+              .addParameter(int.class, "initialCapacity")
+              .beginControlFlow("if (initialCapacity < 0)")
+              .addStatement(
+                  "throw new $T($S + initialCapacity)",
+                  IllegalArgumentException.class,
+                  "Illegal capacity: ")
+              .endControlFlow()
+              .addStatement("this.capacity$$ = initialCapacity");
+      for (Column column : columns) {
+        constructor.addStatement("this.$N = $L", column.name, column.newArray("initialCapacity"));
+      }
+      return constructor.build();
+    }
+
+    /** {@code add(Foo value)}, which appends the properties of the value to the columns. */
+    private MethodSpec add() {
+      MethodSpec.Builder add =
+          MethodSpec.methodBuilder("add")
+              .addModifiers(Modifier.PUBLIC)
+              .addParameter(valueClass, "value")
+              .addStatement("ensureCapacity(size$$ + 1)");
+      for (Column column : columns) {
+        add.addStatement("this.$N[size$$] = value.$N()", column.name, column.method);
+      }
+      return add.addStatement("size$$++").build();
+    }
+
+    /** {@code get(int index)}, which creates a new value from the properties at that index. */
+    private MethodSpec get() {
+      return addUncheckedIfNeeded(
+              MethodSpec.methodBuilder("get")
+                  .addJavadoc("Returns a new {@link $T} with the properties at {@code index}.\n",
+                      valueClass),
+              columns)
+          .addModifiers(Modifier.PUBLIC)
+          .returns(valueClass)
+          .addParameter(int.class, "index")
+          .addStatement("checkIndex$$(index)")
+          .addStatement(
+              "return new $T($L)",
+              finalClass,
+              CodeBlock.join(
+                  columns.stream().map(Column::read).collect(toImmutableList()), ", "))
+          .build();
+    }
+
+    /** For a property {@code long id()}, the method {@code long id(int index)}. */
+    private MethodSpec readOne(Column column) {
+      return addUncheckedIfNeeded(MethodSpec.methodBuilder(column.method), ImmutableList.of(column))
+          .addModifiers(Modifier.PUBLIC)
+          .returns(column.type)
+          .addParameter(int.class, "index")
+          .addStatement("checkIndex$$(index)")
+          .addStatement("return $L", column.read())
+          .build();
+    }
+
+    /** For a property {@code long id()}, the method {@code long[] idColumn()}. */
+    private MethodSpec readColumn(Column column) {
+      return MethodSpec.methodBuilder(column.name + "Column")
+          .addJavadoc(
+              "Returns the array that stores {@code $N}. Only the first {@link #size()}"
+                  + "\nelements are meaningful. The array is not a copy, and a later call to"
+                  + "\n{@link #add} may replace it with a bigger one.\n",
+              column.method)
+          .addModifiers(Modifier.PUBLIC)
+          .returns(column.arrayType)
+          .addStatement("return this.$N", column.name)
+          .build();
+    }
+
+    private MethodSpec ensureCapacity() {
+      MethodSpec.Builder ensureCapacity =
+          MethodSpec.methodBuilder("ensureCapacity")
+              .addJavadoc("Makes sure that the columns can hold {@code minCapacity} values.\n")
+              .addModifiers(Modifier.PUBLIC)
+              .addParameter(int.class, "minCapacity")
+              .beginControlFlow("if (minCapacity > capacity$$)")
+              .addStatement(
+                  "int newCapacity = $T.max(minCapacity, capacity$$ + (capacity$$ >> 1) + 1)",
+                  Math.class);
+      for (Column column : columns) {
+        ensureCapacity.addStatement(
+            "this.$N = $T.copyOf(this.$N, newCapacity)", column.name, Arrays.class, column.name);
+      }
+      return ensureCapacity
+          .addStatement("capacity$$ = newCapacity")
+          .endControlFlow()
+          .build();
+    }
+
+    private static MethodSpec checkIndex() {
+      return MethodSpec.methodBuilder("checkIndex$")
+          .addModifiers(Modifier.PRIVATE)
+          .addParameter(int.class, "index")
+          .beginControlFlow("if (index < 0 || index >= size$$)")
+          .addStatement(
+              "throw new $T($S + index + $S + size$$)",
+              IndexOutOfBoundsException.class,
+              "Index: ",
+              ", Size: ")
+          .endControlFlow()
+          .build();
+    }
+
+    private static MethodSpec.Builder addUncheckedIfNeeded(
+        MethodSpec.Builder method, ImmutableList<Column> columns) {
+      if (columns.stream().anyMatch(column -> column.needsCast)) {
+        method.addAnnotation(
+            AnnotationSpec.builder(SuppressWarnings.class)
+                .addMember("value", "$S", "unchecked")
+                .build());
+      }
+      return method;
+    }
+  }
+}
@@ -45,7 +45,9 @@ import java.lang.annotation.Target;
  *
  * <p>The overriding method uses <a
  * href="https://errorprone.info/bugpattern/DoubleCheckedLocking">double-checked locking</a> to
- * ensure that the annotated method is called at most once.
+ * ensure that the annotated method is called at most once. That locks on the {@code @AutoValue}
+ * instance itself. If the annotated method is idempotent, you can instead specify {@link
+ * #lockFree() lockFree = true}; see that element for details.
  *
  * <h3>Example</h3>
  *
@@ -82,4 +84,20 @@ import java.lang.annotation.Target;
 @Documented
 @Retention(CLASS)
 @Target(METHOD)
-public @interface Memoized {}
+public @interface Memoized {
+  /**
+   * If true, the overriding method does not lock. Instead, if several threads call the method
+   * concurrently before its value has been memoized, each of them may call the annotated method,
+   * and each of them may store its result. So the annotated method must be idempotent: every call
+   * must return an equivalent value, and calling it more than once must have no other effects.
+   * Once a result has been stored, later calls return that stored result.
+   *
+   * <p>A lock-free method that returns a non-null reference uses its memoized field to tell whether
+   * its value has been memoized, as usual. A lock-free method that returns a primitive or a
+   * {@code @Nullable} reference needs a separate flag to tell whether its value has been memoized.
+   * Rather than a {@code volatile boolean} field for each method, the flags for all such methods
+   * in the class are packed into {@code volatile int} fields, 32 flags to a field, which are
+   * updated with a compare-and-set.
+   */
+  boolean lockFree() default false;
+}
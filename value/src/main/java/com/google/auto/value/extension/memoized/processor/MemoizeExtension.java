@@ -70,6 +70,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import javax.annotation.processing.Messager;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.SourceVersion;
@@ -106,6 +107,12 @@ public final class MemoizeExtension extends AutoValueExtension {
   private static final AnnotationSpec SUPPRESS_WARNINGS =
       AnnotationSpec.builder(SuppressWarnings.class).addMember("value", "$S", "Immutable").build();
 
+  private static final AnnotationSpec SUPPRESS_RAWTYPES =
+      AnnotationSpec.builder(SuppressWarnings.class).addMember("value", "$S", "rawtypes").build();
+
+  /** The number of lock-free memoization flags that are packed into each {@code int} field. */
+  private static final int FLAGS_PER_FIELD = Integer.SIZE;
+
   @Override
   public IncrementalExtensionType incrementalType(ProcessingEnvironment processingEnvironment) {
     return IncrementalExtensionType.ISOLATING;
@@ -116,6 +123,11 @@ public final class MemoizeExtension extends AutoValueExtension {
     return !memoizedMethods(context).isEmpty();
   }
 
+  @Override
+  public ImmutableSet<String> triggerAnnotations() {
+    return ImmutableSet.of(MEMOIZED_NAME);
+  }
+
   @Override
   public String generateClass(
       Context context, String className, String classToExtend, boolean isFinal) {
@@ -142,6 +154,9 @@ public final class MemoizeExtension extends AutoValueExtension {
     private final SourceVersion sourceVersion;
     private final Messager messager;
     private final Optional<AnnotationSpec> lazyInitAnnotation;
+    private final List<FieldSpec> lockFreeFlagFields = new ArrayList<>();
+    private final List<FieldSpec> lockFreeFlagUpdaters = new ArrayList<>();
+    private int lockFreeFlagCount;
     private boolean hasErrors;
 
     Generator(Context context, String className, String classToExtend, boolean isFinal) {
@@ -171,6 +186,8 @@ public final class MemoizeExtension extends AutoValueExtension {
         generated.addFields(methodOverrider.fields());
         generated.addMethod(methodOverrider.method());
       }
+      generated.addFields(lockFreeFlagUpdaters);
+      generated.addFields(lockFreeFlagFields);
       if (isHashCodeMemoized() && !isEqualsFinal()) {
         generated.addMethod(equalsWithHashCodeCheck());
       }
@@ -210,6 +227,45 @@ public final class MemoizeExtension extends AutoValueExtension {
       return constructor.build();
     }
 
+    /**
+     * Allocates a flag for a lock-free {@code @Memoized} method that cannot use null to mean that
+     * its value has not been memoized. Returns the index of the flag. Flag {@code i} is bit {@code
+     * i % 32} of the field {@code memoizedFlags$(i / 32)}.
+     */
+    private int allocateLockFreeFlag() {
+      int flag = lockFreeFlagCount++;
+      if (flag % FLAGS_PER_FIELD == 0) {
+        int fieldIndex = flag / FLAGS_PER_FIELD;
+        String fieldName = "memoizedFlags$" + fieldIndex;
+        FieldSpec.Builder flagField =
+            FieldSpec.builder(TypeName.INT, fieldName, PRIVATE, TRANSIENT, VOLATILE);
+        lazyInitAnnotation.ifPresent(
+            lazyInit -> flagField.addAnnotation(lazyInit).addAnnotation(SUPPRESS_WARNINGS));
+        lockFreeFlagFields.add(flagField.build());
+        // The updater needs the raw Class object for the generated class, so if that class is
+        // generic the updater's type parameter must be the raw type too.
+        ClassName rawGeneratedClass = ClassName.get(context.packageName(), className);
+        FieldSpec.Builder updater =
+            FieldSpec.builder(
+                    ParameterizedTypeName.get(
+                        ClassName.get(AtomicIntegerFieldUpdater.class), rawGeneratedClass),
+                    "MEMOIZED_FLAGS$" + fieldIndex,
+                    PRIVATE,
+                    STATIC,
+                    FINAL)
+                .initializer(
+                    "$T.newUpdater($T.class, $S)",
+                    AtomicIntegerFieldUpdater.class,
+                    rawGeneratedClass,
+                    fieldName);
+        if (!typeVariableNames().isEmpty()) {
+          updater.addAnnotation(SUPPRESS_RAWTYPES);
+        }
+        lockFreeFlagUpdaters.add(updater.build());
+      }
+      return flag;
+    }
+
     private boolean isHashCodeMemoized() {
       return memoizedMethods(context).stream()
           .anyMatch(method -> method.getSimpleName().contentEquals("hashCode"));
@@ -419,16 +475,25 @@ public final class MemoizeExtension extends AutoValueExtension {
 
         InitializationStrategy checkStrategy = strategy();
         fields.addAll(checkStrategy.additionalFields());
-        override
-            .beginControlFlow("if ($L)", checkStrategy.checkMemoized())
-            .beginControlFlow("synchronized (this)")
-            .beginControlFlow("if ($L)", checkStrategy.checkMemoized())
-            .addStatement("$N = super.$L()", cacheField, method.getSimpleName())
-            .addCode(checkStrategy.setMemoized())
-            .endControlFlow()
-            .endControlFlow()
-            .endControlFlow()
-            .addStatement("return $N", cacheField);
+        if (isLockFree()) {
+          override
+              .beginControlFlow("if ($L)", checkStrategy.checkMemoized())
+              .addStatement("$N = super.$L()", cacheField, method.getSimpleName())
+              .addCode(checkStrategy.setMemoized())
+              .endControlFlow()
+              .addStatement("return $N", cacheField);
+        } else {
+          override
+              .beginControlFlow("if ($L)", checkStrategy.checkMemoized())
+              .beginControlFlow("synchronized (this)")
+              .beginControlFlow("if ($L)", checkStrategy.checkMemoized())
+              .addStatement("$N = super.$L()", cacheField, method.getSimpleName())
+              .addCode(checkStrategy.setMemoized())
+              .endControlFlow()
+              .endControlFlow()
+              .endControlFlow()
+              .addStatement("return $N", cacheField);
+        }
       }
 
       /** The fields that should be added to the subclass. */
@@ -507,13 +572,17 @@ public final class MemoizeExtension extends AutoValueExtension {
         return builder.build();
       }
 
+      /** True if this method is annotated {@code @Memoized(lockFree = true)}. */
+      private boolean isLockFree() {
+        AnnotationMirror memoized = getAnnotationMirror(method, MEMOIZED_NAME).get();
+        return (Boolean) getAnnotationValue(memoized, "lockFree").getValue();
+      }
+
       InitializationStrategy strategy() {
-        if (method.getReturnType().getKind().isPrimitive()) {
-          return new CheckBooleanField();
-        }
-        if (containsNullable(method.getAnnotationMirrors())
+        if (method.getReturnType().getKind().isPrimitive()
+            || containsNullable(method.getAnnotationMirrors())
             || containsNullable(method.getReturnType().getAnnotationMirrors())) {
-          return new CheckBooleanField();
+          return isLockFree() ? new CheckPackedFlag() : new CheckBooleanField();
         }
         return new NullMeansUninitialized();
       }
@@ -570,6 +639,46 @@ public final class MemoizeExtension extends AutoValueExtension {
           return CodeBlock.builder().addStatement("$N = true", field).build();
         }
       }
+
+      /**
+       * Records whether the value has been memoized as one bit of a {@code volatile int} field
+       * that is shared with other lock-free methods. Since those methods may set their bits
+       * concurrently, the bit is set with a compare-and-set loop.
+       */
+      private final class CheckPackedFlag extends InitializationStrategy {
+        private final FieldSpec flagField;
+        private final FieldSpec updater;
+        private final String mask;
+
+        CheckPackedFlag() {
+          int flag = allocateLockFreeFlag();
+          this.flagField = lockFreeFlagFields.get(flag / FLAGS_PER_FIELD);
+          this.updater = lockFreeFlagUpdaters.get(flag / FLAGS_PER_FIELD);
+          this.mask = "0x" + Integer.toHexString(1 << (flag % FLAGS_PER_FIELD));
+        }
+
+        @Override
+        Iterable<FieldSpec> additionalFields() {
+          // The flag fields are shared between methods, so Generator adds them.
+          return ImmutableList.of();
+        }
+
+        @Override
+        CodeBlock checkMemoized() {
+          return CodeBlock.of("($N & $L) == 0", flagField, mask);
+        }
+
+        @Override
+        CodeBlock setMemoized() {
+          return CodeBlock.builder()
+              .addStatement("int flags$$")
+              .beginControlFlow("do")
+              .addStatement("flags$$ = $N", flagField)
+              .endControlFlow(
+                  "while (!$N.compareAndSet(this, flags$$, flags$$ | $L))", updater, mask)
+              .build();
+        }
+      }
     }
   }
 
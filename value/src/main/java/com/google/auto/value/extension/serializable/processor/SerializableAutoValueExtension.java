@@ -30,6 +30,7 @@ import com.google.auto.value.extension.serializable.serializer.interfaces.Serial
 import com.google.common.base.Equivalence;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.squareup.javapoet.AnnotationSpec;
 import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.CodeBlock;
@@ -68,6 +69,11 @@ public final class SerializableAutoValueExtension extends AutoValueExtension {
     return hasSerializableInterface(context) && hasSerializableAutoValueAnnotation(context);
   }
 
+  @Override
+  public ImmutableSet<String> triggerAnnotations() {
+    return ImmutableSet.of(SERIALIZABLE_AUTO_VALUE_NAME);
+  }
+
   @Override
   public IncrementalExtensionType incrementalType(ProcessingEnvironment processingEnvironment) {
     return IncrementalExtensionType.ISOLATING;
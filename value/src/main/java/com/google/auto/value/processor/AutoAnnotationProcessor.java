@@ -16,11 +16,14 @@
 package com.google.auto.value.processor;
 
 import static com.google.auto.common.GeneratedAnnotations.generatedAnnotation;
+import static com.google.auto.value.processor.AutoValueOrOneOfProcessor.hasAnnotationMirror;
 import static com.google.auto.value.processor.ClassNames.AUTO_ANNOTATION_NAME;
+import static com.google.auto.value.processor.ClassNames.CACHED_NAME;
 
 import com.google.auto.common.MoreElements;
 import com.google.auto.common.SuperficialValidation;
 import com.google.auto.service.AutoService;
+import com.google.auto.value.processor.PhaseTimer.Phase;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
@@ -40,6 +43,7 @@ import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.Processor;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
@@ -71,6 +75,7 @@ import net.ltgt.gradle.incap.IncrementalAnnotationProcessorType;
 @AutoService(Processor.class)
 @IncrementalAnnotationProcessor(IncrementalAnnotationProcessorType.ISOLATING)
 @SupportedAnnotationTypes(AUTO_ANNOTATION_NAME)
+@SupportedOptions(ProfileReport.PROFILE_OPTION)
 public class AutoAnnotationProcessor extends AbstractProcessor {
   public AutoAnnotationProcessor() {}
 
@@ -101,11 +106,24 @@ public class AutoAnnotationProcessor extends AbstractProcessor {
 
   private Elements elementUtils;
   private Types typeUtils;
+  private SymbolCache symbolCache;
+  private ProfileReport profileReport;
+  private final PhaseTimer phaseTimer = new PhaseTimer();
+
+  @Override
+  public synchronized void init(ProcessingEnvironment processingEnv) {
+    super.init(processingEnv);
+    profileReport = ProfileReport.create(processingEnv, getClass().getSimpleName());
+    if (profileReport.enabled()) {
+      phaseTimer.enable();
+    }
+  }
 
   @Override
   public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
     elementUtils = processingEnv.getElementUtils();
     typeUtils = processingEnv.getTypeUtils();
+    symbolCache = new SymbolCache(elementUtils);
     boolean claimed =
         (annotations.size() == 1
             && annotations
@@ -122,24 +140,36 @@ public class AutoAnnotationProcessor extends AbstractProcessor {
   }
 
   private void process(RoundEnvironment roundEnv) {
-    TypeElement autoAnnotation = elementUtils.getTypeElement(AUTO_ANNOTATION_NAME);
+    profileReport.startRound();
+    TypeElement autoAnnotation = symbolCache.getTypeElement(AUTO_ANNOTATION_NAME);
     Collection<? extends Element> annotatedElements =
         roundEnv.getElementsAnnotatedWith(autoAnnotation);
     List<ExecutableElement> methods = ElementFilter.methodsIn(annotatedElements);
     if (!SuperficialValidation.validateElements(methods) || methodsAreOverloaded(methods)) {
+      profileReport.endRound(0);
       return;
     }
     for (ExecutableElement method : methods) {
+      String outcome = "generated";
+      phaseTimer.start();
+      profileReport.startType(phaseTimer);
       try {
         processMethod(method);
       } catch (AbortProcessingException e) {
         // We abandoned this type, but continue with the next.
+        outcome = "error";
       } catch (RuntimeException e) {
         String trace = Throwables.getStackTraceAsString(e);
         reportError(method, "@AutoAnnotation processor threw an exception: %s", trace);
         throw e;
       }
+      String methodName =
+          MoreElements.asType(method.getEnclosingElement()).getQualifiedName()
+              + "."
+              + method.getSimpleName();
+      profileReport.endType(methodName, outcome, phaseTimer);
     }
+    profileReport.endRound(0);
   }
 
   private void processMethod(ExecutableElement method) {
@@ -148,6 +178,7 @@ public class AutoAnnotationProcessor extends AbstractProcessor {
     }
 
     TypeElement annotationElement = getAnnotationReturnType(method);
+    phaseTimer.endPhase(Phase.VALIDATE);
 
     Set<Class<?>> wrapperTypesUsedInCollections = wrapperTypesUsedInCollections(method);
 
@@ -178,11 +209,17 @@ public class AutoAnnotationProcessor extends AbstractProcessor {
       vars.invariableHashSum += h;
     }
     vars.invariableHashes = invariableHashes.keySet();
+    vars.cached = cached(method, members, parameters);
+    vars.cacheSize = CACHE_SIZE;
+    phaseTimer.endPhase(Phase.CLASSIFY);
     String text = vars.toText();
-    text = TypeEncoder.decode(text, processingEnv, pkg, annotationElement.asType());
-    text = Reformatter.fixup(text);
+    phaseTimer.endPhase(Phase.TO_TEXT);
+    TypeEncoder.TypeRewriter rewriter =
+        TypeEncoder.rewriter(text, symbolCache, processingEnv, pkg, annotationElement.asType());
+    phaseTimer.endPhase(Phase.DECODE);
     String fullName = fullyQualifiedName(pkg, generatedClassName);
-    writeSourceFile(fullName, text, methodClass);
+    writeSourceFile(fullName, rewriter, methodClass);
+    phaseTimer.endPhase(Phase.WRITE);
   }
 
   private String getGeneratedTypeName() {
@@ -381,6 +418,36 @@ public class AutoAnnotationProcessor extends AbstractProcessor {
     }
   }
 
+  /**
+   * The number of instances remembered by the generated {@code cached} method of an {@code
+   * @AutoAnnotation.Cached} class. A power of 2, so an index into the cache can be computed by
+   * masking the hash code. The cache is small because it is meant for the handful of annotation
+   * values that a program asks for repeatedly.
+   */
+  private static final int CACHE_SIZE = 64;
+
+  /**
+   * Returns true if the generated class should have a {@code cached} factory method, as requested
+   * by {@code @AutoAnnotation.Cached}. Reports an error if that method would clash with a member of
+   * the annotation.
+   */
+  private boolean cached(
+      ExecutableElement method,
+      ImmutableMap<String, Member> members,
+      ImmutableMap<String, Parameter> parameters) {
+    if (!hasAnnotationMirror(method, CACHED_NAME)) {
+      return false;
+    }
+    if (parameters.isEmpty() && members.containsKey("cached")) {
+      // The static cached() method would have the same signature as the member method.
+      throw abortWithError(
+          method,
+          "@AutoAnnotation.Cached method must have parameters if the annotation has a member"
+              + " called cached");
+    }
+    return true;
+  }
+
   /**
    * Returns true if {@code parameterType} can be used to provide the value of an annotation member
    * of type {@code memberType}. They must either be the same type, or the member type must be an
@@ -404,8 +471,7 @@ public class AutoAnnotationProcessor extends AbstractProcessor {
         arrayElementType.getKind().isPrimitive()
             ? typeUtils.boxedClass((PrimitiveType) arrayElementType).asType()
             : arrayElementType;
-    TypeElement javaUtilCollection =
-        elementUtils.getTypeElement(Collection.class.getCanonicalName());
+    TypeElement javaUtilCollection = symbolCache.getTypeElement(Collection.class.getName());
     DeclaredType collectionOfElement =
         typeUtils.getDeclaredType(javaUtilCollection, wrappedArrayElementType);
     return typeUtils.isAssignable(parameterType, collectionOfElement);
@@ -417,7 +483,7 @@ public class AutoAnnotationProcessor extends AbstractProcessor {
    * type, for example to convert {@code Collection<Integer>} into {@code int[]}.
    */
   private Set<Class<?>> wrapperTypesUsedInCollections(ExecutableElement method) {
-    TypeElement javaUtilCollection = elementUtils.getTypeElement(Collection.class.getName());
+    TypeElement javaUtilCollection = symbolCache.getTypeElement(Collection.class.getName());
     ImmutableSet.Builder<Class<?>> usedInCollections = ImmutableSet.builder();
     for (Class<?> wrapper : Primitives.allWrapperTypes()) {
       DeclaredType collectionOfWrapper =
@@ -433,7 +499,7 @@ public class AutoAnnotationProcessor extends AbstractProcessor {
   }
 
   private TypeMirror getTypeMirror(Class<?> c) {
-    return elementUtils.getTypeElement(c.getName()).asType();
+    return symbolCache.getTypeMirror(c.getName());
   }
 
   private static boolean isGwtCompatible(TypeElement annotationElement) {
@@ -448,12 +514,23 @@ public class AutoAnnotationProcessor extends AbstractProcessor {
     return pkg.isEmpty() ? cls : pkg + "." + cls;
   }
 
-  private void writeSourceFile(String className, String text, TypeElement originatingType) {
+  private void writeSourceFile(
+      String className, TypeEncoder.TypeRewriter text, TypeElement originatingType) {
+    // As in AutoValueOrOneOfProcessor, the text is only built first if the formatting is timed.
+    String source = null;
+    if (phaseTimer.enabled()) {
+      source = text.rewriteReformatted();
+      phaseTimer.endPhase(Phase.FORMAT);
+    }
     try {
       JavaFileObject sourceFile =
           processingEnv.getFiler().createSourceFile(className, originatingType);
       try (Writer writer = sourceFile.openWriter()) {
-        writer.write(text);
+        if (source == null) {
+          text.rewriteReformatted(writer);
+        } else {
+          writer.write(source);
+        }
       }
     } catch (IOException e) {
       // This should really be an error, but we make it a warning in the hope of resisting Eclipse
@@ -74,6 +74,16 @@ class AutoAnnotationTemplateVars extends TemplateVars {
   /** The sum of the hash code contributions from the members in {@link #invariableHashes}. */
   Integer invariableHashSum;
 
+  /**
+   * True if the {@code @AutoAnnotation} method is also {@code @AutoAnnotation.Cached}. Then the
+   * generated class has a static {@code cached} factory method that can return an existing
+   * instance, and each instance computes its hash code once when it is constructed.
+   */
+  Boolean cached;
+
+  /** The number of entries in the cache used when {@link #cached} is true. A power of 2. */
+  Integer cacheSize;
+
   private static final Template TEMPLATE = parsedTemplateForResource("autoannotation.vm");
 
   @Override
@@ -17,6 +17,7 @@ package com.google.auto.value.processor;
 
 import static com.google.auto.common.MoreElements.getLocalAndInheritedMethods;
 import static com.google.auto.value.processor.ClassNames.AUTO_ONE_OF_NAME;
+import static com.google.auto.value.processor.ClassNames.COMPACT_NAME;
 import static java.util.stream.Collectors.toMap;
 import static java.util.stream.Collectors.toSet;
 
@@ -25,6 +26,8 @@ import com.google.auto.common.MoreElements;
 import com.google.auto.common.MoreTypes;
 import com.google.auto.service.AutoService;
 import com.google.auto.value.processor.MissingTypes.MissingTypeException;
+import com.google.auto.value.processor.PhaseTimer.Phase;
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableBiMap;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
@@ -35,8 +38,11 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import javax.annotation.processing.Processor;
 import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
@@ -44,6 +50,7 @@ import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import net.ltgt.gradle.incap.IncrementalAnnotationProcessor;
 import net.ltgt.gradle.incap.IncrementalAnnotationProcessorType;
@@ -57,6 +64,7 @@ import net.ltgt.gradle.incap.IncrementalAnnotationProcessorType;
  */
 @AutoService(Processor.class)
 @SupportedAnnotationTypes(AUTO_ONE_OF_NAME)
+@SupportedOptions(ProfileReport.PROFILE_OPTION)
 @IncrementalAnnotationProcessor(IncrementalAnnotationProcessorType.ISOLATING)
 public class AutoOneOfProcessor extends AutoValueOrOneOfProcessor {
   public AutoOneOfProcessor() {
@@ -76,6 +84,7 @@ public class AutoOneOfProcessor extends AutoValueOrOneOfProcessor {
     }
     checkModifiersIfNested(autoOneOfType);
     DeclaredType kindMirror = mirrorForKindType(autoOneOfType);
+    phaseTimer().endPhase(Phase.VALIDATE);
 
     // We are going to classify the methods of the @AutoOneOf class into several categories.
     // This covers the methods in the class itself and the ones it inherits from supertypes.
@@ -113,11 +122,17 @@ public class AutoOneOfProcessor extends AutoValueOrOneOfProcessor {
     vars.propertyToKind = propertyToKind;
     defineSharedVarsForType(autoOneOfType, methods, vars);
     defineVarsForType(autoOneOfType, vars, propertyMethodsAndTypes, kindGetter);
+    defineAppendToVars(autoOneOfType, methods, vars.props, toStringCapacity(vars), vars);
+    phaseTimer().endPhase(Phase.CLASSIFY);
 
     String text = vars.toText();
-    text = TypeEncoder.decode(text, processingEnv, vars.pkg, autoOneOfType.asType());
-    text = Reformatter.fixup(text);
-    writeSourceFile(subclass, text, autoOneOfType);
+    phaseTimer().endPhase(Phase.TO_TEXT);
+    TypeEncoder.TypeRewriter rewriter =
+        TypeEncoder.rewriter(
+            text, symbolCache(), processingEnv, vars.pkg, autoOneOfType.asType());
+    phaseTimer().endPhase(Phase.DECODE);
+    writeSourceFile(subclass, rewriter, autoOneOfType);
+    phaseTimer().endPhase(Phase.WRITE);
   }
 
   private DeclaredType mirrorForKindType(TypeElement autoOneOfType) {
@@ -269,12 +284,98 @@ public class AutoOneOfProcessor extends AutoValueOrOneOfProcessor {
         propertyMethodsAndTypes, ImmutableListMultimap.of(), ImmutableListMultimap.of());
     vars.kindGetter = kindGetter.getSimpleName().toString();
     vars.kindType = TypeEncoder.encode(kindGetter.getReturnType());
-    TypeElement javaIoSerializable = elementUtils().getTypeElement("java.io.Serializable");
+    defineCasesVars(type, vars);
+    defineCompactVars(type, vars);
+    TypeElement javaIoSerializable = symbolCache().getTypeElement("java.io.Serializable");
     vars.serializable =
         javaIoSerializable != null  // just in case
         && typeUtils().isAssignable(type.asType(), javaIoSerializable.asType());
   }
 
+  /**
+   * Defines the variables used to generate the {@code Cases} interface and the {@code match}
+   * method. These need a type variable for the result of {@code match}, in addition to any type
+   * variables of the {@code @AutoOneOf} class, so we choose a name that is not already used. The
+   * name must also differ from every name that appears in a class referenced within that scope,
+   * since the type variable would hide a class called {@code R} or an outer class {@code R} in
+   * {@code R.Foo}.
+   */
+  private static void defineCasesVars(TypeElement type, AutoOneOfTemplateVars vars) {
+    Set<String> usedNames =
+        type.getTypeParameters().stream().map(p -> p.getSimpleName().toString()).collect(toSet());
+    addNamesInClassNames(vars.origClass, usedNames);
+    addNamesInEncodedTypes(vars.formalTypes, usedNames);
+    addNamesInEncodedTypes(vars.kindType, usedNames);
+    for (Property p : vars.props) {
+      addNamesInEncodedTypes(p.getType(), usedNames);
+    }
+    String resultType = "R";
+    for (int i = 0; usedNames.contains(resultType); i++) {
+      resultType = "R" + i;
+    }
+    vars.resultType = resultType;
+    vars.casesFormalTypes = withTypeParameter(vars.formalTypes, resultType);
+    vars.casesActualTypes = withTypeParameter(vars.actualTypes, resultType);
+  }
+
+  private static final Pattern ENCODED_CLASS_NAME = Pattern.compile("`[«»]?([^`]+)`");
+
+  /**
+   * Adds every identifier in the class names of the given {@linkplain TypeEncoder encoded} text to
+   * {@code names}. For {@code `java.util.Map`<`foo.R.Bar`, K>} that is {@code java}, {@code util},
+   * {@code Map}, {@code foo}, {@code R}, and {@code Bar}.
+   */
+  private static void addNamesInEncodedTypes(String encoded, Set<String> names) {
+    Matcher matcher = ENCODED_CLASS_NAME.matcher(encoded);
+    while (matcher.find()) {
+      addNamesInClassNames(matcher.group(1), names);
+    }
+  }
+
+  private static void addNamesInClassNames(String className, Set<String> names) {
+    names.addAll(Splitter.on('.').splitToList(className));
+  }
+
+  /**
+   * Defines the variables for {@code @AutoOneOf.Compact}, which say what fields and constructors
+   * the single implementation class needs.
+   */
+  private static void defineCompactVars(TypeElement type, AutoOneOfTemplateVars vars) {
+    vars.compact = hasAnnotationMirror(type, COMPACT_NAME);
+    vars.compactValue = false;
+    vars.compactPrimitive = false;
+    boolean hasVoid = false;
+    for (Property p : vars.props) {
+      if (p.getKind() == TypeKind.VOID) {
+        hasVoid = true;
+      } else if (p.getKind().isPrimitive()) {
+        vars.compactPrimitive = true;
+      } else {
+        vars.compactValue = true;
+      }
+    }
+    // If there are no properties, the constructor is never called, but it must still exist to
+    // initialize the kind field.
+    vars.compactEmpty = hasVoid || vars.props.isEmpty();
+  }
+
+  /** Adds {@code name} at the end of a generic signature like {@code <K, V>}, or {@code ""}. */
+  private static String withTypeParameter(String typeParameters, String name) {
+    return typeParameters.isEmpty()
+        ? "<" + name + ">"
+        : typeParameters.substring(0, typeParameters.length() - 1) + ", " + name + ">";
+  }
+
+  /**
+   * Returns a guess at the length of the string returned by the generated {@code toString()}. Only
+   * one property appears in that string, so this allows for the one with the longest name.
+   */
+  private static int toStringCapacity(AutoOneOfTemplateVars vars) {
+    // Foo{a=...}
+    int longestName = vars.props.stream().mapToInt(p -> p.getName().length()).max().orElse(0);
+    return vars.simpleClassName.length() + 3 + longestName + TO_STRING_VALUE_LENGTH_GUESS;
+  }
+
   @Override
   Optional<String> nullableAnnotationForMethod(ExecutableElement propertyMethod) {
     if (nullableAnnotationFor(propertyMethod, propertyMethod.getReturnType()).isPresent()) {
@@ -44,6 +44,46 @@ class AutoOneOfTemplateVars extends AutoValueOrOneOfTemplateVars {
   /** Maps property names like {@code dog} to enum constants like {@code DOG}. */
   Map<String, String> propertyToKind;
 
+  /**
+   * The name of the type variable for the result of the generated {@code match} method. This is
+   * {@code R} unless the {@code @AutoOneOf} class already has a type parameter of that name.
+   */
+  String resultType;
+
+  /**
+   * The formal generic signature of the generated {@code Cases} interface, which is {@link
+   * #formalTypes} with {@link #resultType} added at the end, for example {@code <K, V extends K,
+   * R>}.
+   */
+  String casesFormalTypes;
+
+  /**
+   * The generic signature used to reference the generated {@code Cases} interface, which is {@link
+   * #actualTypes} with {@link #resultType} added at the end, for example {@code <K, V, R>}.
+   */
+  String casesActualTypes;
+
+  /**
+   * True if the class has the {@code @AutoOneOf.Compact} annotation, so that there is a single
+   * implementation class instead of one per property.
+   */
+  Boolean compact;
+
+  /**
+   * True if the compact implementation needs a field for the values of properties of object or
+   * array type.
+   */
+  Boolean compactValue;
+
+  /** True if the compact implementation needs a field for the values of primitive properties. */
+  Boolean compactPrimitive;
+
+  /**
+   * True if the compact implementation needs a constructor that sets only the kind, for the
+   * instances of {@code void} properties.
+   */
+  Boolean compactEmpty;
+
   /** True if this {@code @AutoOneOf} class is Serializable. */
   Boolean serializable;
 
@@ -17,12 +17,16 @@ package com.google.auto.value.processor;
 
 import static com.google.auto.common.AnnotationMirrors.getAnnotationValue;
 import static com.google.auto.common.GeneratedAnnotations.generatedAnnotation;
+import static com.google.auto.common.MoreElements.getLocalAndInheritedMethods;
 import static com.google.auto.common.MoreElements.getPackage;
 import static com.google.auto.common.MoreElements.isAnnotationPresent;
+import static com.google.auto.value.processor.ClassNames.AUTO_ONE_OF_NAME;
+import static com.google.auto.value.processor.ClassNames.AUTO_VALUE_NAME;
 import static com.google.auto.value.processor.ClassNames.AUTO_VALUE_PACKAGE_NAME;
 import static com.google.auto.value.processor.ClassNames.COPY_ANNOTATIONS_NAME;
 import static com.google.common.collect.Iterables.getOnlyElement;
 import static com.google.common.collect.Sets.union;
+import static java.util.Comparator.comparing;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.Collectors.toList;
@@ -32,6 +36,7 @@ import com.google.auto.common.MoreElements;
 import com.google.auto.common.MoreTypes;
 import com.google.auto.common.Visibility;
 import com.google.auto.value.processor.MissingTypes.MissingTypeException;
+import com.google.auto.value.processor.PhaseTimer.Phase;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableBiMap;
 import com.google.common.collect.ImmutableList;
@@ -108,10 +113,21 @@ abstract class AutoValueOrOneOfProcessor extends AbstractProcessor {
 
   private ErrorReporter errorReporter;
 
+  private final PhaseTimer phaseTimer = new PhaseTimer();
+
+  private SymbolCache symbolCache;
+
+  private ProfileReport profileReport;
+
   @Override
   public synchronized void init(ProcessingEnvironment processingEnv) {
     super.init(processingEnv);
     errorReporter = new ErrorReporter(processingEnv);
+    symbolCache = new SymbolCache(processingEnv.getElementUtils());
+    profileReport = ProfileReport.create(processingEnv, getClass().getSimpleName());
+    if (profileReport.enabled()) {
+      phaseTimer.enable();
+    }
   }
 
   final ErrorReporter errorReporter() {
@@ -146,12 +162,18 @@ abstract class AutoValueOrOneOfProcessor extends AbstractProcessor {
    * property. The public methods of this class define JavaBeans-style properties that are
    * accessible from templates. For example {@link #getType()} means we can write {@code $p.type}
    * for a Velocity variable {@code $p} that is a {@code Property}.
+   *
+   * <p>Everything a template can read is computed when the property is constructed, so that
+   * templates can be evaluated without calling into the compiler, possibly on another thread.
    */
   public static class Property {
     private final String name;
     private final String identifier;
     private final ExecutableElement method;
+    private final String getter;
     private final String type;
+    private final TypeKind kind;
+    private final String access;
     private final ImmutableList<String> fieldAnnotations;
     private final ImmutableList<String> methodAnnotations;
     private final Optional<String> nullableAnnotation;
@@ -168,7 +190,10 @@ abstract class AutoValueOrOneOfProcessor extends AbstractProcessor {
       this.name = name;
       this.identifier = identifier;
       this.method = method;
+      this.getter = method.getSimpleName().toString();
       this.type = type;
+      this.kind = method.getReturnType().getKind();
+      this.access = SimpleMethod.access(method);
       this.fieldAnnotations = fieldAnnotations;
       this.methodAnnotations = methodAnnotations;
       this.nullableAnnotation = nullableAnnotation;
@@ -202,7 +227,7 @@ abstract class AutoValueOrOneOfProcessor extends AbstractProcessor {
      * class. For property {@code foo}, this will be {@code foo} or {@code getFoo} or {@code isFoo}.
      */
     public String getGetter() {
-      return method.getSimpleName().toString();
+      return getter;
     }
 
     public TypeMirror getTypeMirror() {
@@ -214,7 +239,7 @@ abstract class AutoValueOrOneOfProcessor extends AbstractProcessor {
     }
 
     public TypeKind getKind() {
-      return method.getReturnType().getKind();
+      return kind;
     }
 
     /**
@@ -259,7 +284,7 @@ abstract class AutoValueOrOneOfProcessor extends AbstractProcessor {
     }
 
     public String getAccess() {
-      return SimpleMethod.access(method);
+      return access;
     }
 
     @Override
@@ -275,7 +300,8 @@ abstract class AutoValueOrOneOfProcessor extends AbstractProcessor {
 
   @Override
   public final boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
-    annotationType = elementUtils().getTypeElement(annotationClassName);
+    symbolCache.clear();
+    annotationType = symbolCache.getTypeElement(annotationClassName);
     if (annotationType == null) {
       // This should not happen. If the annotation type is not found, how did the processor get
       // triggered?
@@ -289,10 +315,11 @@ abstract class AutoValueOrOneOfProcessor extends AbstractProcessor {
       return false;
     }
     simpleAnnotationName = annotationType.getSimpleName().toString();
+    profileReport.startRound();
     List<TypeElement> deferredTypes =
         deferredTypeNames
             .stream()
-            .map(name -> elementUtils().getTypeElement(name))
+            .map(symbolCache::getTypeElement)
             .collect(toList());
     if (roundEnv.processingOver()) {
       // This means that the previous round didn't generate any new sources, so we can't have found
@@ -305,6 +332,7 @@ abstract class AutoValueOrOneOfProcessor extends AbstractProcessor {
             simpleAnnotationName,
             type.getQualifiedName());
       }
+      profileReport.endRound(0);
       return false;
     }
     Collection<? extends Element> annotatedElements =
@@ -316,10 +344,14 @@ abstract class AutoValueOrOneOfProcessor extends AbstractProcessor {
             .build();
     deferredTypeNames.clear();
     for (TypeElement type : types) {
+      String outcome = "generated";
+      phaseTimer.start();
+      profileReport.startType(phaseTimer);
       try {
         processType(type);
       } catch (AbortProcessingException e) {
         // We abandoned this type; continue with the next.
+        outcome = "error";
       } catch (MissingTypeException e) {
         // We abandoned this type, but only because we needed another type that it references and
         // that other type was missing. It is possible that the missing type will be generated by
@@ -328,13 +360,17 @@ abstract class AutoValueOrOneOfProcessor extends AbstractProcessor {
         // than its TypeElement because it is not guaranteed that it will be represented by
         // the same TypeElement on the next round.
         deferredTypeNames.add(type.getQualifiedName().toString());
+        outcome = "deferred";
       } catch (RuntimeException e) {
         String trace = Throwables.getStackTraceAsString(e);
         errorReporter.reportError(
             type, "@%s processor threw an exception: %s", simpleAnnotationName, trace);
         throw e;
       }
+      profileReport.endType(type.getQualifiedName().toString(), outcome, phaseTimer);
     }
+    endRound();
+    profileReport.endRound(deferredTypeNames.size());
     return false; // never claim annotation, because who knows what other processors want?
   }
 
@@ -346,6 +382,12 @@ abstract class AutoValueOrOneOfProcessor extends AbstractProcessor {
    */
   abstract void processType(TypeElement type);
 
+  /**
+   * Called after {@link #processType} has been called for every class in a round, so that a
+   * subclass can finish any work that it put off until then.
+   */
+  void endRound() {}
+
   /**
    * Returns the appropriate {@code @Nullable} annotation to put on the implementation of the given
    * property method, and indicates whether the property is in fact nullable. The annotation in
@@ -429,6 +471,91 @@ abstract class AutoValueOrOneOfProcessor extends AbstractProcessor {
     vars.equalsParameterType = equalsParameterType(methodsToGenerate);
   }
 
+  /**
+   * The number of characters that a property value is assumed to take up in the string returned by
+   * {@code toString()}, when choosing the initial capacity of the {@code StringBuilder} for it.
+   */
+  static final int TO_STRING_VALUE_LENGTH_GUESS = 16;
+
+  /**
+   * Defines the variables that control the generated {@code appendTo(StringBuilder)} method. This
+   * must be called after {@link #defineSharedVarsForType}.
+   *
+   * @param methods the methods of {@code type}, including inherited ones
+   * @param props the properties whose values {@code toString()} can include
+   * @param toStringCapacity the initial capacity of the {@code StringBuilder} used by {@code
+   *     toString()}
+   */
+  final void defineAppendToVars(
+      TypeElement type,
+      ImmutableSet<ExecutableElement> methods,
+      ImmutableSet<Property> props,
+      int toStringCapacity,
+      AutoValueOrOneOfTemplateVars vars) {
+    vars.appendTo = vars.toString && !hasAppendToMethod(methods, 1);
+    if (!vars.appendTo) {
+      return;
+    }
+    vars.toStringCapacity = toStringCapacity;
+    ImmutableMap.Builder<String, String> autoValues = ImmutableMap.builder();
+    ImmutableMap.Builder<String, String> autoOneOfs = ImmutableMap.builder();
+    for (Property p : props) {
+      if (p.getKind() != TypeKind.DECLARED) {
+        continue;
+      }
+      // Generated classes are package-private, so we can only call the appendTo method of one
+      // that is in the same package.
+      TypeElement propertyType = MoreTypes.asTypeElement(p.getTypeMirror());
+      if (!getPackage(propertyType).equals(getPackage(type))) {
+        continue;
+      }
+      if (hasAnnotationMirror(propertyType, AUTO_VALUE_NAME)) {
+        String generated = generatedClassName(propertyType, "AutoValue_");
+        if (generatesAppendTo(propertyType, generated, 1)) {
+          autoValues.put(
+              p.getName(),
+              TypeSimplifier.simpleNameOf(generated)
+                  + wildcardTypeParametersString(propertyType));
+        }
+      } else if (hasAnnotationMirror(propertyType, AUTO_ONE_OF_NAME)) {
+        String generated = generatedClassName(propertyType, "AutoOneOf_");
+        if (generatesAppendTo(propertyType, generated, 2)) {
+          autoOneOfs.put(p.getName(), TypeSimplifier.simpleNameOf(generated));
+        }
+      }
+    }
+    vars.appendToAutoValues = autoValues.build();
+    vars.appendToAutoOneOfs = autoOneOfs.build();
+  }
+
+  /**
+   * Returns true if {@code generatedName}, the class generated for the given {@code @AutoValue} or
+   * {@code @AutoOneOf} type, has or will have an {@code appendTo} method with the given number of
+   * parameters.
+   */
+  private boolean generatesAppendTo(TypeElement type, String generatedName, int parameterCount) {
+    TypeElement generated = symbolCache.getTypeElement(generatedName);
+    if (generated != null) {
+      // The class has already been generated, perhaps in an earlier compilation by a version of
+      // AutoValue that did not define appendTo. So look at what it actually has.
+      return hasAppendToMethod(
+          ElementFilter.methodsIn(elementUtils().getAllMembers(generated)), parameterCount);
+    }
+    ImmutableSet<ExecutableElement> methods =
+        getLocalAndInheritedMethods(type, typeUtils(), elementUtils());
+    return determineObjectMethodsToGenerate(methods).containsKey(ObjectMethod.TO_STRING)
+        && !hasAppendToMethod(methods, 1);
+  }
+
+  private static boolean hasAppendToMethod(
+      Collection<ExecutableElement> methods, int parameterCount) {
+    return methods.stream()
+        .anyMatch(
+            m ->
+                m.getSimpleName().contentEquals("appendTo")
+                    && m.getParameters().size() == parameterCount);
+  }
+
   /** Returns the spelling to be used in the generated code for the given list of annotations. */
   static ImmutableList<String> annotationStrings(List<? extends AnnotationMirror> annotations) {
     // TODO(b/68008628): use ImmutableList.toImmutableList() when that works.
@@ -460,6 +587,61 @@ abstract class AutoValueOrOneOfProcessor extends AbstractProcessor {
     return type.getSuperclass().getKind() == TypeKind.NONE && type.getKind() == ElementKind.CLASS;
   }
 
+  /**
+   * How expensive a comparison between two values of a property is likely to be in the generated
+   * {@code equals(Object)} method, from cheapest to most expensive.
+   */
+  enum EqualsCost {
+    /** A primitive, boxed primitive, or enum, which is compared with one or two instructions. */
+    PRIMITIVE_OR_ENUM,
+    /** A {@code String}, which is compared character by character but never recursively. */
+    STRING,
+    /** Anything else, such as an array, a collection, or another {@code @AutoValue} class. */
+    OTHER,
+  }
+
+  private static final ImmutableSet<String> BOXED_PRIMITIVE_NAMES =
+      ImmutableSet.of(
+          "java.lang.Boolean",
+          "java.lang.Byte",
+          "java.lang.Short",
+          "java.lang.Character",
+          "java.lang.Integer",
+          "java.lang.Long",
+          "java.lang.Float",
+          "java.lang.Double");
+
+  static EqualsCost equalsCost(TypeMirror type) {
+    if (type.getKind().isPrimitive()) {
+      return EqualsCost.PRIMITIVE_OR_ENUM;
+    }
+    if (type.getKind() != TypeKind.DECLARED) {
+      return EqualsCost.OTHER;
+    }
+    TypeElement typeElement = MoreTypes.asTypeElement(type);
+    String name = typeElement.getQualifiedName().toString();
+    if (typeElement.getKind() == ElementKind.ENUM || BOXED_PRIMITIVE_NAMES.contains(name)) {
+      return EqualsCost.PRIMITIVE_OR_ENUM;
+    } else if (name.equals("java.lang.String")) {
+      return EqualsCost.STRING;
+    } else {
+      return EqualsCost.OTHER;
+    }
+  }
+
+  /**
+   * Returns the given properties in the order that the generated {@code equals(Object)} method
+   * should compare them. Cheap comparisons come first, so that two unequal instances are usually
+   * told apart without the expensive ones. Properties of the same cost stay in their original
+   * order. Since the comparisons have no side effects, the order does not change the result.
+   */
+  static ImmutableList<Property> propertiesInEqualsOrder(Collection<Property> properties) {
+    return ImmutableList.copyOf(
+        properties.stream()
+            .sorted(comparing(p -> equalsCost(p.getTypeMirror())))
+            .collect(toList()));
+  }
+
   enum ObjectMethod {
     NONE,
     TO_STRING,
@@ -824,7 +1006,7 @@ abstract class AutoValueOrOneOfProcessor extends AbstractProcessor {
    * {@code serialVersionUID = 1234L}; otherwise {@code ""}.
    */
   final String getSerialVersionUID(TypeElement type) {
-    TypeMirror serializable = elementUtils().getTypeElement(Serializable.class.getName()).asType();
+    TypeMirror serializable = symbolCache.getTypeMirror(Serializable.class.getName());
     if (typeUtils().isAssignable(type.asType(), serializable)) {
       List<VariableElement> fields = ElementFilter.fieldsIn(type.getEnclosedElements());
       for (VariableElement field : fields) {
@@ -1087,12 +1269,60 @@ abstract class AutoValueOrOneOfProcessor extends AbstractProcessor {
     return getAnnotationMirror(element, annotationName).isPresent();
   }
 
+  /**
+   * The time this processor has spent in each phase of processing the classes it has seen. This is
+   * intended for benchmarks, which can construct the processor and read the times after compiling.
+   */
+  public final PhaseTimer phaseTimer() {
+    return phaseTimer;
+  }
+
+  /** The report of where this processor spends its time, if the user asked for one. */
+  final ProfileReport profileReport() {
+    return profileReport;
+  }
+
+  /**
+   * The cache through which this processor looks up classes by name. Its counters are intended for
+   * benchmarks, which can construct the processor and read them after compiling.
+   */
+  public final SymbolCache symbolCache() {
+    return symbolCache;
+  }
+
   final void writeSourceFile(String className, String text, TypeElement originatingType) {
+    writeSourceFile(className, originatingType, writer -> writer.write(text));
+  }
+
+  /**
+   * Writes the generated source file for the given class. The class names in its text are
+   * respelled, and the text is reformatted, as it is written, rather than first building the
+   * decoded and reformatted text as strings. When the {@link PhaseTimer} is enabled, the text is
+   * built first after all, so that the {@link Phase#FORMAT} time does not include writing.
+   */
+  final void writeSourceFile(
+      String className, TypeEncoder.TypeRewriter text, TypeElement originatingType) {
+    if (phaseTimer.enabled()) {
+      // Building the text first costs a copy, but lets us time the formatting separately.
+      String source = text.rewriteReformatted();
+      phaseTimer.endPhase(Phase.FORMAT);
+      writeSourceFile(className, source, originatingType);
+    } else {
+      writeSourceFile(className, originatingType, text::rewriteReformatted);
+    }
+  }
+
+  private interface SourceWriter {
+    void writeTo(Writer writer) throws IOException;
+  }
+
+  private void writeSourceFile(
+      String className, TypeElement originatingType, SourceWriter sourceWriter) {
     try {
       JavaFileObject sourceFile =
           processingEnv.getFiler().createSourceFile(className, originatingType);
       try (Writer writer = sourceFile.openWriter()) {
-        writer.write(text);
+        sourceWriter.writeTo(writer);
       }
     } catch (IOException e) {
       // This should really be an error, but we make it a warning in the hope of resisting Eclipse
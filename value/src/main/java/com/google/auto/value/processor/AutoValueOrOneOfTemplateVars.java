@@ -16,6 +16,7 @@
 package com.google.auto.value.processor;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
 /**
  * The variables to substitute into the autovalue.vm or autooneof.vm template.
@@ -33,6 +34,34 @@ abstract class AutoValueOrOneOfTemplateVars extends TemplateVars {
   /** Whether to generate a toString() method. */
   Boolean toString;
 
+  /**
+   * Whether to generate an {@code appendTo(StringBuilder)} method that appends the same text as
+   * {@code toString()} returns, and to implement {@code toString()} by calling it. This is true
+   * unless there is no generated {@code toString()}, or the class already has a method called
+   * {@code appendTo} with one parameter.
+   */
+  Boolean appendTo = false;
+
+  /** The initial capacity of the {@code StringBuilder} that {@code toString()} creates. */
+  Integer toStringCapacity = 16;
+
+  /**
+   * A map from the names of properties whose type is an {@code @AutoValue} class in the same
+   * package to the generated implementation of that class, as it should appear in an {@code
+   * instanceof} or a cast, for example {@code AutoValue_Foo} or {@code AutoValue_Bar<?>}. The
+   * generated {@code appendTo} method appends the values of these properties by calling their own
+   * {@code appendTo} methods.
+   */
+  ImmutableMap<String, String> appendToAutoValues = ImmutableMap.of();
+
+  /**
+   * A map from the names of properties whose type is an {@code @AutoOneOf} class in the same
+   * package to the generated class for it, for example {@code AutoOneOf_Foo}. That class has a
+   * static {@code appendTo(StringBuilder, Foo)} method that the generated {@code appendTo} method
+   * calls to append the values of these properties.
+   */
+  ImmutableMap<String, String> appendToAutoOneOfs = ImmutableMap.of();
+
   /**
    * A string representing the parameter type declaration of the equals(Object) method, including
    * any annotations. If {@link #equals} is false, this field is ignored (but it must still be
@@ -17,15 +17,23 @@ package com.google.auto.value.processor;
 
 import static com.google.auto.common.MoreElements.getLocalAndInheritedMethods;
 import static com.google.auto.value.processor.ClassNames.AUTO_VALUE_NAME;
+import static com.google.auto.value.processor.ClassNames.CACHE_HASH_CODE_NAME;
+import static com.google.auto.value.processor.ClassNames.INTERNED_NAME;
+import static com.google.auto.value.processor.ClassNames.PACKED_NAME;
 import static com.google.common.collect.Sets.difference;
 import static com.google.common.collect.Sets.intersection;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
+import static javax.lang.model.util.ElementFilter.methodsIn;
 
+import com.google.auto.common.MoreTypes;
 import com.google.auto.service.AutoService;
 import com.google.auto.value.extension.AutoValueExtension;
+import com.google.auto.value.processor.PhaseTimer.Phase;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableBiMap;
 import com.google.common.collect.ImmutableList;
@@ -33,22 +41,33 @@ import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import java.io.Serializable;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.ServiceConfigurationError;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.Processor;
 import javax.annotation.processing.SupportedAnnotationTypes;
 import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import net.ltgt.gradle.incap.IncrementalAnnotationProcessor;
@@ -67,6 +86,12 @@ import net.ltgt.gradle.incap.IncrementalAnnotationProcessorType;
 public class AutoValueProcessor extends AutoValueOrOneOfProcessor {
   private static final String OMIT_IDENTIFIERS_OPTION = "com.google.auto.value.OmitIdentifiers";
 
+  /**
+   * If this option is set to a number greater than 1, the template evaluation and reformatting for
+   * the classes in a round are done at the end of the round, using that many threads.
+   */
+  static final String GENERATION_THREADS_OPTION = "com.google.auto.value.GenerationThreads";
+
   // We moved MemoizeExtension to a different package, which had an unexpected effect:
   // now if an old version of AutoValue is in the class path, ServiceLoader can pick up both the
   // old and the new versions of MemoizeExtension. So we exclude the old version if we see it.
@@ -98,6 +123,18 @@ public class AutoValueProcessor extends AutoValueOrOneOfProcessor {
   private ImmutableList<AutoValueExtension> extensions;
   private final ClassLoader loaderForExtensions;
 
+  // For each extension, at the same index as in `extensions`, the annotations and property types
+  // that it declares as triggers. These are only asked for once, rather than once per class.
+  private ImmutableList<ImmutableSet<String>> triggerAnnotations;
+  private ImmutableList<ImmutableSet<String>> triggerPropertyTypes;
+
+  private BuildCache buildCache;
+
+  // If greater than 1, the number of threads used to generate the text of the classes in
+  // pendingClasses at the end of each round.
+  private int generationThreads;
+  private final List<PendingClass> pendingClasses = new ArrayList<>();
+
   @VisibleForTesting
   static ImmutableList<AutoValueExtension> extensionsFromLoader(ClassLoader loader) {
     return ImmutableList.copyOf(
@@ -108,7 +145,9 @@ public class AutoValueProcessor extends AutoValueOrOneOfProcessor {
 
   @Override
   public synchronized void init(ProcessingEnvironment processingEnv) {
-    super.init(processingEnv);
+    buildCache = BuildCache.create(processingEnv);
+    super.init(buildCache.processingEnvironment());
+    generationThreads = generationThreads();
 
     if (extensions == null) {
       try {
@@ -128,6 +167,34 @@ public class AutoValueProcessor extends AutoValueOrOneOfProcessor {
         extensions = ImmutableList.of();
       }
     }
+    triggerAnnotations =
+        ImmutableList.copyOf(
+            extensions.stream()
+                .map(e -> ImmutableSet.copyOf(e.triggerAnnotations()))
+                .collect(toList()));
+    triggerPropertyTypes =
+        ImmutableList.copyOf(
+            extensions.stream()
+                .map(e -> ImmutableSet.copyOf(e.triggerPropertyTypes()))
+                .collect(toList()));
+  }
+
+  private int generationThreads() {
+    String threads = processingEnv.getOptions().get(GENERATION_THREADS_OPTION);
+    if (threads == null) {
+      return 1;
+    }
+    try {
+      return Integer.parseInt(threads);
+    } catch (NumberFormatException e) {
+      errorReporter()
+          .reportWarning(
+              null,
+              "Ignoring -A%s=%s, which is not a number",
+              GENERATION_THREADS_OPTION,
+              threads);
+      return 1;
+    }
   }
 
   @Override
@@ -138,7 +205,12 @@ public class AutoValueProcessor extends AutoValueOrOneOfProcessor {
             .map(e -> e.incrementalType(processingEnv))
             .min(Comparator.naturalOrder())
             .orElse(AutoValueExtension.IncrementalExtensionType.ISOLATING);
-    builder.add(OMIT_IDENTIFIERS_OPTION).addAll(optionsFor(incrementalType));
+    builder
+        .add(OMIT_IDENTIFIERS_OPTION)
+        .add(ProfileReport.PROFILE_OPTION)
+        .add(BuildCache.CACHE_OPTION)
+        .add(GENERATION_THREADS_OPTION)
+        .addAll(optionsFor(incrementalType));
     for (AutoValueExtension extension : extensions) {
       builder.addAll(extension.getSupportedOptions());
     }
@@ -186,7 +258,43 @@ public class AutoValueProcessor extends AutoValueOrOneOfProcessor {
                   + " interface; try using @AutoAnnotation instead");
     }
     checkModifiersIfNested(type);
+    if (!buildCache.enabled()) {
+      phaseTimer().endPhase(Phase.VALIDATE);
+      generate(type, null);
+      return;
+    }
+
+    Optional<String> fingerprint = buildCache.fingerprint(type, extensions);
+    Optional<ImmutableMap<String, String>> cached = fingerprint.flatMap(buildCache::lookup);
+    profileReport().cacheResult(cached.isPresent());
+    phaseTimer().endPhase(Phase.VALIDATE);
+    if (cached.isPresent()) {
+      cached.get().forEach((className, text) -> writeSourceFile(className, text, type));
+      phaseTimer().endPhase(Phase.WRITE);
+      return;
+    }
+    if (!fingerprint.isPresent()) {
+      generate(type, null);
+      return;
+    }
+    BuildCache.Recording recording = buildCache.startRecording(fingerprint.get());
+    try {
+      generate(type, recording);
+    } finally {
+      // If the class was generated, its recording has already been finished, or will be when it is
+      // written at the end of the round. If generating it failed, the recording is discarded.
+      buildCache.pauseRecording();
+    }
+  }
 
+  /**
+   * Generates the classes for the given {@code @AutoValue} class, which has been validated. The
+   * main implementation class is written immediately, or at the end of the round if {@link
+   * #GENERATION_THREADS_OPTION} is set.
+   *
+   * @param recording the recording of generated files for the {@link BuildCache}, or null.
+   */
+  private void generate(TypeElement type, BuildCache.Recording recording) {
     // We are going to classify the methods of the @AutoValue class into several categories.
     // This covers the methods in the class itself and the ones it inherits from supertypes.
     // First, the only concrete (non-abstract) methods we are interested in are overrides of
@@ -196,7 +304,9 @@ public class AutoValueProcessor extends AutoValueOrOneOfProcessor {
     // (1) A property getter, like "abstract String foo()" or "abstract String getFoo()".
     // (2) A toBuilder() method, which is any abstract no-arg method returning the Builder for
     //     this @AutoValue class.
-    // (3) An abstract method that will be consumed by an extension, such as
+    // (3) A wither method, like "abstract Foo withBar(String bar)" for a property bar of type
+    //     String, which returns a copy of the @AutoValue instance with a different value for bar.
+    // (4) An abstract method that will be consumed by an extension, such as
     //     Parcelable.describeContents() or Parcelable.writeToParcel(Parcel, int).
     // The describeContents() example shows a quirk here: initially we will identify it as a
     // property, which means that we need to reconstruct the list of properties after allowing
@@ -243,7 +353,15 @@ public class AutoValueProcessor extends AutoValueOrOneOfProcessor {
 
     ImmutableSet<ExecutableElement> propertyMethods = propertyMethodsAndTypes.keySet();
     boolean extensionsPresent = !applicableExtensions.isEmpty();
-    validateMethods(type, abstractMethods, toBuilderMethods, propertyMethods, extensionsPresent);
+    ImmutableMap<ExecutableElement, String> witherMethods =
+        witherMethodsIn(type, abstractMethods, propertyMethodsAndTypes, properties);
+    validateMethods(
+        type,
+        abstractMethods,
+        toBuilderMethods,
+        witherMethods.keySet(),
+        propertyMethods,
+        extensionsPresent);
 
     String finalSubclass = generatedSubclassName(type, 0);
     AutoValueTemplateVars vars = new AutoValueTemplateVars();
@@ -252,6 +370,9 @@ public class AutoValueProcessor extends AutoValueOrOneOfProcessor {
     vars.identifiers = !processingEnv.getOptions().containsKey(OMIT_IDENTIFIERS_OPTION);
     defineSharedVarsForType(type, methods, vars);
     defineVarsForType(type, vars, toBuilderMethods, propertyMethodsAndTypes, builder);
+    vars.witherMethods = witherMethods(witherMethods, vars.props);
+    defineAppendToVars(type, methods, vars.props, toStringCapacity(vars), vars);
+    vars.interned = interned(type, methods);
 
     // If we've encountered problems then we might end up invoking extensions with inconsistent
     // state. Anyway we probably don't want to generate code which is likely to provoke further
@@ -261,19 +382,141 @@ public class AutoValueProcessor extends AutoValueOrOneOfProcessor {
     GwtCompatibility gwtCompatibility = new GwtCompatibility(type);
     vars.gwtCompatibleAnnotation = gwtCompatibility.gwtCompatibleAnnotationString();
 
+    phaseTimer().endPhase(Phase.CLASSIFY);
+
     builder.ifPresent(context::setBuilderContext);
     int subclassDepth = writeExtensions(type, context, applicableExtensions);
+    phaseTimer().endPhase(Phase.EXTENSIONS);
     String subclass = generatedSubclassName(type, subclassDepth);
     vars.subclass = TypeSimplifier.simpleNameOf(subclass);
     vars.isFinal = (subclassDepth == 0);
     vars.modifiers = vars.isFinal ? "final " : "abstract ";
+    vars.packed = packedProperties(type, vars);
 
+    PendingClass pending = new PendingClass(type, subclass, vars, gwtCompatibility, recording);
+    if (generationThreads > 1) {
+      pendingClasses.add(pending);
+      return;
+    }
     String text = vars.toText();
-    text = TypeEncoder.decode(text, processingEnv, vars.pkg, type.asType());
-    text = Reformatter.fixup(text);
-    writeSourceFile(subclass, text, type);
-    GwtSerialization gwtSerialization = new GwtSerialization(gwtCompatibility, processingEnv, type);
-    gwtSerialization.maybeWriteGwtSerializer(vars);
+    phaseTimer().endPhase(Phase.TO_TEXT);
+    TypeEncoder.TypeRewriter rewriter =
+        TypeEncoder.rewriter(text, symbolCache(), processingEnv, vars.pkg, type.asType());
+    phaseTimer().endPhase(Phase.DECODE);
+    write(pending, () -> writeSourceFile(subclass, rewriter, type));
+    phaseTimer().endPhase(Phase.WRITE);
+  }
+
+  /**
+   * An {@code @AutoValue} class whose template variables have all been defined, so generating its
+   * text does not need the compiler.
+   */
+  private static final class PendingClass {
+    final TypeElement type;
+    final String subclass;
+    final AutoValueTemplateVars vars;
+    final GwtCompatibility gwtCompatibility;
+    final BuildCache.Recording recording; // null if the class is not being recorded
+
+    PendingClass(
+        TypeElement type,
+        String subclass,
+        AutoValueTemplateVars vars,
+        GwtCompatibility gwtCompatibility,
+        BuildCache.Recording recording) {
+      this.type = type;
+      this.subclass = subclass;
+      this.vars = vars;
+      this.gwtCompatibility = gwtCompatibility;
+      this.recording = recording;
+    }
+  }
+
+  /**
+   * Writes the main implementation class for a pending class using {@code writeSubclass}, followed
+   * by its GWT serializer if it needs one.
+   */
+  private void write(PendingClass pending, Runnable writeSubclass) {
+    if (pending.recording != null) {
+      buildCache.resumeRecording(pending.recording);
+    }
+    writeSubclass.run();
+    GwtSerialization gwtSerialization =
+        new GwtSerialization(pending.gwtCompatibility, processingEnv, pending.type);
+    gwtSerialization.maybeWriteGwtSerializer(pending.vars);
+    if (pending.recording != null) {
+      buildCache.finishRecording(pending.recording);
+    }
+  }
+
+  /**
+   * Generates the text of the classes that were put off until the end of the round, using {@link
+   * #generationThreads} threads, and then writes them in the order they were processed. Evaluating
+   * the template and reformatting its output do not use the compiler, so they can be done in
+   * parallel. Finding the classes that the output references, and writing the files, do use the
+   * compiler, so they are done on this thread.
+   */
+  @Override
+  void endRound() {
+    if (pendingClasses.isEmpty()) {
+      return;
+    }
+    List<PendingClass> pending = new ArrayList<>(pendingClasses);
+    pendingClasses.clear();
+    phaseTimer().start();
+    ForkJoinPool pool = new ForkJoinPool(generationThreads);
+    List<String> sources;
+    try {
+      List<String> texts = inParallel(pool, pending, p -> p.vars.toText());
+      phaseTimer().endPhase(Phase.TO_TEXT);
+      List<TypeEncoder.TypeRewriter> rewriters = new ArrayList<>();
+      for (int i = 0; i < pending.size(); i++) {
+        PendingClass p = pending.get(i);
+        rewriters.add(
+            TypeEncoder.rewriter(
+                texts.get(i), symbolCache(), processingEnv, p.vars.pkg, p.type.asType()));
+      }
+      phaseTimer().endPhase(Phase.DECODE);
+      sources = inParallel(pool, rewriters, TypeEncoder.TypeRewriter::rewriteReformatted);
+      phaseTimer().endPhase(Phase.FORMAT);
+    } finally {
+      pool.shutdown();
+    }
+    for (int i = 0; i < pending.size(); i++) {
+      PendingClass p = pending.get(i);
+      String source = sources.get(i);
+      write(p, () -> writeSourceFile(p.subclass, source, p.type));
+    }
+    phaseTimer().endPhase(Phase.WRITE);
+  }
+
+  private interface ParallelFunction<T, R> {
+    R apply(T input) throws Exception;
+  }
+
+  /**
+   * Applies {@code function} to each of {@code inputs} using the threads of {@code pool}, and
+   * returns the results in the same order as the inputs.
+   */
+  private static <T, R> List<R> inParallel(
+      ForkJoinPool pool, List<T> inputs, ParallelFunction<? super T, R> function) {
+    List<Callable<R>> tasks = new ArrayList<>();
+    for (T input : inputs) {
+      tasks.add(() -> function.apply(input));
+    }
+    List<R> results = new ArrayList<>();
+    for (Future<R> future : pool.invokeAll(tasks)) {
+      try {
+        results.add(future.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      } catch (ExecutionException e) {
+        Throwables.throwIfUnchecked(e.getCause());
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+    return results;
   }
 
   // Invokes each of the given extensions to generate its subclass, and returns the number of
@@ -300,7 +543,9 @@ public class AutoValueProcessor extends AutoValueOrOneOfProcessor {
       String classFqName = generatedSubclassName(type, writtenSoFar);
       String classSimpleName = TypeSimplifier.simpleNameOf(classFqName);
       boolean isFinal = (writtenSoFar == 0);
+      long start = profileReport().now();
       String source = extension.generateClass(context, classSimpleName, parentSimpleName, isFinal);
+      profileReport().addExtension(extension.getClass().getName(), start);
       if (source != null) {
         source = Reformatter.fixup(source);
         writeSourceFile(classFqName, source, type);
@@ -314,8 +559,21 @@ public class AutoValueProcessor extends AutoValueOrOneOfProcessor {
       TypeElement type, ExtensionContext context) {
     List<AutoValueExtension> applicableExtensions = new ArrayList<>();
     List<AutoValueExtension> finalExtensions = new ArrayList<>();
-    for (AutoValueExtension extension : extensions) {
-      if (extension.applicable(context)) {
+    Supplier<ImmutableSet<String>> presentAnnotations =
+        Suppliers.memoize(() -> annotationsPresent(type, context));
+    Supplier<ImmutableSet<String>> presentPropertyTypes =
+        Suppliers.memoize(() -> propertyTypesPresent(context));
+    for (int i = 0; i < extensions.size(); i++) {
+      AutoValueExtension extension = extensions.get(i);
+      ImmutableSet<String> annotations = triggerAnnotations.get(i);
+      ImmutableSet<String> propertyTypes = triggerPropertyTypes.get(i);
+      boolean triggered =
+          (annotations.isEmpty() && propertyTypes.isEmpty())
+              || (!annotations.isEmpty()
+                  && !Collections.disjoint(annotations, presentAnnotations.get()))
+              || (!propertyTypes.isEmpty()
+                  && !Collections.disjoint(propertyTypes, presentPropertyTypes.get()));
+      if (triggered && extension.applicable(context)) {
         if (extension.mustBeFinal(context)) {
           finalExtensions.add(extension);
         } else {
@@ -340,6 +598,38 @@ public class AutoValueProcessor extends AutoValueOrOneOfProcessor {
     return ImmutableList.copyOf(applicableExtensions);
   }
 
+  // The names of the annotations on the given @AutoValue class, on the methods it declares, and on
+  // its property methods, for comparison with AutoValueExtension.triggerAnnotations().
+  private static ImmutableSet<String> annotationsPresent(
+      TypeElement type, ExtensionContext context) {
+    ImmutableSet.Builder<String> names = ImmutableSet.builder();
+    addAnnotationNames(type, names);
+    for (ExecutableElement method : methodsIn(type.getEnclosedElements())) {
+      addAnnotationNames(method, names);
+    }
+    for (ExecutableElement method : context.properties().values()) {
+      addAnnotationNames(method, names);
+    }
+    return names.build();
+  }
+
+  private static void addAnnotationNames(Element element, ImmutableSet.Builder<String> names) {
+    for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+      names.add(
+          MoreTypes.asTypeElement(annotation.getAnnotationType()).getQualifiedName().toString());
+    }
+  }
+
+  // The names of the classes that are the erasures of the property types, for comparison with
+  // AutoValueExtension.triggerPropertyTypes().
+  private static ImmutableSet<String> propertyTypesPresent(ExtensionContext context) {
+    return ImmutableSet.copyOf(
+        context.propertyTypes().values().stream()
+            .filter(t -> t.getKind().equals(TypeKind.DECLARED))
+            .map(t -> MoreTypes.asTypeElement(t).getQualifiedName().toString())
+            .collect(toList()));
+  }
+
   private ImmutableSet<ExecutableElement> methodsConsumedByExtensions(
       TypeElement type,
       ImmutableList<AutoValueExtension> applicableExtensions,
@@ -392,12 +682,14 @@ public class AutoValueProcessor extends AutoValueOrOneOfProcessor {
       TypeElement type,
       ImmutableSet<ExecutableElement> abstractMethods,
       ImmutableSet<ExecutableElement> toBuilderMethods,
+      ImmutableSet<ExecutableElement> witherMethods,
       ImmutableSet<ExecutableElement> propertyMethods,
       boolean extensionsPresent) {
     for (ExecutableElement method : abstractMethods) {
       if (propertyMethods.contains(method)) {
         checkReturnType(type, method);
       } else if (!toBuilderMethods.contains(method)
+          && !witherMethods.contains(method)
           && objectMethodToOverride(method) == ObjectMethod.NONE) {
         // This could reasonably be an error, were it not for an Eclipse bug in
         // ElementUtils.override that sometimes fails to recognize that one method overrides
@@ -413,6 +705,65 @@ public class AutoValueProcessor extends AutoValueOrOneOfProcessor {
     errorReporter().abortIfAnyError();
   }
 
+  /**
+   * Returns the wither methods among the given abstract methods, each mapped to the name of the
+   * property that it sets. The wither method for a property {@code bar}, defined by {@code bar()}
+   * or {@code getBar()}, is called {@code withBar}. It has one parameter, of the same type as the
+   * property, and returns the {@code @AutoValue} class or one of its supertypes. A method that has
+   * the right name and one parameter but the wrong types is an error.
+   */
+  private ImmutableMap<ExecutableElement, String> witherMethodsIn(
+      TypeElement type,
+      ImmutableSet<ExecutableElement> abstractMethods,
+      ImmutableMap<ExecutableElement, TypeMirror> propertyMethodsAndTypes,
+      ImmutableMap<String, ExecutableElement> properties) {
+    Map<String, String> witherNameToPropertyName = new LinkedHashMap<>();
+    for (String propertyName : properties.keySet()) {
+      witherNameToPropertyName.put(WitherMethod.witherName(propertyName), propertyName);
+    }
+    DeclaredType declaredType = MoreTypes.asDeclared(type.asType());
+    ImmutableMap.Builder<ExecutableElement, String> witherMethods = ImmutableMap.builder();
+    for (ExecutableElement method : abstractMethods) {
+      String propertyName = witherNameToPropertyName.get(method.getSimpleName().toString());
+      if (propertyName == null || method.getParameters().size() != 1) {
+        continue;
+      }
+      TypeMirror propertyType = propertyMethodsAndTypes.get(properties.get(propertyName));
+      ExecutableType methodType =
+          MoreTypes.asExecutable(typeUtils().asMemberOf(declaredType, method));
+      TypeMirror parameterType = methodType.getParameterTypes().get(0);
+      if (!typeUtils().isSameType(parameterType, propertyType)) {
+        errorReporter()
+            .reportError(
+                method,
+                "Parameter type %s of wither method should be %s to match property %s",
+                parameterType,
+                propertyType,
+                propertyName);
+      } else if (!typeUtils().isAssignable(type.asType(), methodType.getReturnType())) {
+        errorReporter()
+            .reportError(
+                method,
+                "Wither method should return %s, not %s",
+                type.asType(),
+                methodType.getReturnType());
+      }
+      witherMethods.put(method, propertyName);
+    }
+    return witherMethods.build();
+  }
+
+  private static ImmutableList<WitherMethod> witherMethods(
+      ImmutableMap<ExecutableElement, String> methodToPropertyName, Set<Property> props) {
+    Map<String, Property> nameToProperty = new LinkedHashMap<>();
+    props.forEach(p -> nameToProperty.put(p.getName(), p));
+    // We can't use ImmutableList.toImmutableList() for obscure Google-internal reasons.
+    return ImmutableList.copyOf(
+        methodToPropertyName.entrySet().stream()
+            .map(e -> new WitherMethod(e.getKey(), nameToProperty.get(e.getValue())))
+            .collect(toList()));
+  }
+
   private String extensionName(AutoValueExtension extension) {
     return extension.getClass().getName();
   }
@@ -433,7 +784,9 @@ public class AutoValueProcessor extends AutoValueOrOneOfProcessor {
         propertyMethodAnnotationMap(type, propertyMethods);
     vars.props =
         propertySet(propertyMethodsAndTypes, annotatedPropertyFields, annotatedPropertyMethods);
+    vars.equalsProps = propertiesInEqualsOrder(vars.props);
     vars.serialVersionUID = getSerialVersionUID(type);
+    vars.cacheHashCode = cacheHashCode(type, vars.hashCode);
     // Check for @AutoValue.Builder and add appropriate variables if it is present.
     maybeBuilder.ifPresent(
         builder -> {
@@ -444,6 +797,143 @@ public class AutoValueProcessor extends AutoValueOrOneOfProcessor {
         });
   }
 
+  /** Returns a guess at the length of the string returned by the generated {@code toString()}. */
+  private static int toStringCapacity(AutoValueTemplateVars vars) {
+    // Foo{a=..., b=...} or {..., ...}
+    int capacity = vars.identifiers ? vars.simpleClassName.length() + 2 : 2;
+    for (Property p : vars.props) {
+      capacity += TO_STRING_VALUE_LENGTH_GUESS + 2;
+      if (vars.identifiers) {
+        capacity += p.getName().length() + 1;
+      }
+    }
+    return capacity;
+  }
+
+  /**
+   * Returns true if the generated class should compute its hash code eagerly and store it, as
+   * requested by {@code @AutoValue.CacheHashCode}. Reports an error if that annotation is present
+   * on a class where it cannot be honoured.
+   */
+  private boolean cacheHashCode(TypeElement type, boolean generatingHashCode) {
+    Optional<AnnotationMirror> annotation = getAnnotationMirror(type, CACHE_HASH_CODE_NAME);
+    if (!annotation.isPresent()) {
+      return false;
+    }
+    if (!generatingHashCode) {
+      errorReporter()
+          .reportWarning(
+              type,
+              "@AutoValue.CacheHashCode has no effect because %s defines its own hashCode()",
+              type);
+      return false;
+    }
+    if (typeUtils().isAssignable(type.asType(), getTypeMirror(Serializable.class))) {
+      // The cached hash code would be serialized along with the properties, but it is not
+      // necessarily the same in the deserializing JVM, for example if a property is an enum.
+      errorReporter()
+          .reportError(type, "@AutoValue.CacheHashCode cannot be used on a Serializable class");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * The static methods without parameters that the generated class defines if it is {@code
+   * @AutoValue.Interned}. A static method cannot have the same signature as an instance method that
+   * it inherits. The {@code interned} method is not included here, since it has a parameter for
+   * each property, and a class with no properties gains nothing from interning anyway.
+   */
+  private static final ImmutableSet<String> INTERNED_METHOD_NAMES =
+      ImmutableSet.of("internRequestCount", "internHitCount", "internedInstanceCount");
+
+  /**
+   * Returns true if the generated class should canonicalize its instances, as requested by {@code
+   * @AutoValue.Interned}. Reports an error if that annotation is present on a class where it cannot
+   * be honoured.
+   */
+  private boolean interned(TypeElement type, ImmutableSet<ExecutableElement> methods) {
+    if (!hasAnnotationMirror(type, INTERNED_NAME)) {
+      return false;
+    }
+    boolean ok = true;
+    String interners = "com.".concat("google.common.collect.Interners"); // foil shading
+    if (symbolCache().getTypeElement(interners) == null) {
+      errorReporter()
+          .reportError(type, "@AutoValue.Interned requires the Interners class from Guava");
+      ok = false;
+    }
+    if (!type.getTypeParameters().isEmpty()) {
+      // An instance of Foo<String> could be equal to an instance of Foo<Integer>, for example if
+      // both have an empty list property, so the canonical instance might have the wrong type.
+      errorReporter().reportError(type, "@AutoValue.Interned cannot be used on a generic class");
+      ok = false;
+    }
+    if (new GwtCompatibility(type).gwtCompatibleAnnotation().isPresent()) {
+      errorReporter()
+          .reportError(type, "@AutoValue.Interned cannot be used on a @GwtCompatible class");
+      ok = false;
+    }
+    for (ExecutableElement method : methods) {
+      if (method.getParameters().isEmpty()
+          && INTERNED_METHOD_NAMES.contains(method.getSimpleName().toString())
+          && !method.getModifiers().contains(Modifier.STATIC)) {
+        errorReporter()
+            .reportError(
+                method,
+                "@AutoValue.Interned classes cannot have a method called %s because the generated"
+                    + " class defines a static method with that name",
+                method.getSimpleName());
+        ok = false;
+      }
+    }
+    return ok;
+  }
+
+  /**
+   * Returns the properties that the generated class should pack into shared fields, as requested
+   * by {@code @AutoValue.Packed}. Those are the {@code boolean} properties and the non-null
+   * properties of small enum types, except that enum properties are not packed in a Serializable
+   * class because their packed representation depends on the order of the enum constants.
+   */
+  private PackedProperties packedProperties(TypeElement type, AutoValueTemplateVars vars) {
+    if (!hasAnnotationMirror(type, PACKED_NAME)) {
+      return PackedProperties.EMPTY;
+    }
+    boolean serializable =
+        typeUtils().isAssignable(type.asType(), getTypeMirror(Serializable.class));
+    ImmutableMap.Builder<Property, Integer> propertyWidths = ImmutableMap.builder();
+    for (Property p : vars.props) {
+      TypeMirror propertyType = p.getTypeMirror();
+      if (propertyType.getKind() == TypeKind.BOOLEAN) {
+        propertyWidths.put(p, 1);
+      } else if (propertyType.getKind() == TypeKind.DECLARED
+          && !p.isNullable()
+          && !serializable) {
+        TypeElement propertyTypeElement = MoreTypes.asTypeElement(propertyType);
+        if (propertyTypeElement.getKind() == ElementKind.ENUM) {
+          int constantCount =
+              (int)
+                  propertyTypeElement.getEnclosedElements().stream()
+                      .filter(e -> e.getKind() == ElementKind.ENUM_CONSTANT)
+                      .count();
+          if (constantCount <= PackedProperties.MAX_ENUM_CONSTANTS) {
+            propertyWidths.put(p, PackedProperties.bitsForEnumConstants(constantCount));
+          }
+        }
+      }
+    }
+    PackedProperties packed =
+        new PackedProperties(
+            propertyWidths.build(), vars.subclass + vars.wildcardTypes, vars.identifiers);
+    if (packed.isEmpty()) {
+      errorReporter()
+          .reportWarning(
+              type, "@AutoValue.Packed has no effect because %s has no properties to pack", type);
+    }
+    return packed;
+  }
+
   @Override
   Optional<String> nullableAnnotationForMethod(ExecutableElement propertyMethod) {
     return nullableAnnotationFor(propertyMethod, propertyMethod.getReturnType());
@@ -485,7 +975,7 @@ public class AutoValueProcessor extends AutoValueOrOneOfProcessor {
   }
 
   private TypeMirror getTypeMirror(Class<?> c) {
-    return processingEnv.getElementUtils().getTypeElement(c.getName()).asType();
+    return symbolCache().getTypeMirror(c.getName());
   }
 
   private static <E> ImmutableSet<E> immutableSetDifference(ImmutableSet<E> a, ImmutableSet<E> b) {
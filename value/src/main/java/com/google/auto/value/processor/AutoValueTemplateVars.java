@@ -38,6 +38,13 @@ class AutoValueTemplateVars extends AutoValueOrOneOfTemplateVars {
    */
   ImmutableSet<AutoValueOrOneOfProcessor.Property> props;
 
+  /**
+   * The same properties as {@link #props}, in the order that {@code equals(Object)} should compare
+   * them. Properties that are cheap to compare, like primitives, come before ones that may be
+   * expensive, like collections.
+   */
+  ImmutableList<AutoValueOrOneOfProcessor.Property> equalsProps;
+
   /**
    * Whether to include identifiers in strings in the generated code. If false, exception messages
    * will not mention properties by name, and {@code toString()} will include neither property names
@@ -56,6 +63,27 @@ class AutoValueTemplateVars extends AutoValueOrOneOfTemplateVars {
    */
   String gwtCompatibleAnnotation;
 
+  /**
+   * True if the generated class should compute its hash code in its constructor and store it in a
+   * field, because the {@code @AutoValue} class has the {@code @AutoValue.CacheHashCode}
+   * annotation. This is never true if {@link #hashCode} is false.
+   */
+  Boolean cacheHashCode = false;
+
+  /**
+   * The properties that are packed into shared fields because the {@code @AutoValue} class has the
+   * {@code @AutoValue.Packed} annotation, and the code to read and write them. This is empty if
+   * there is no such annotation.
+   */
+  PackedProperties packed = PackedProperties.EMPTY;
+
+  /**
+   * True if the generated class should have a static {@code interned} factory method that returns
+   * canonical instances, because the {@code @AutoValue} class has the {@code @AutoValue.Interned}
+   * annotation. If there is a builder then its build method also returns canonical instances.
+   */
+  Boolean interned = false;
+
   /** The text of the serialVersionUID constant, or empty if there is none. */
   String serialVersionUID;
 
@@ -136,8 +164,12 @@ class AutoValueTemplateVars extends AutoValueOrOneOfTemplateVars {
    *   <li>it is {@code Optional} (in which case it defaults to empty);
    *   <li>it has a property-builder method (in which case it defaults to empty).
    * </ul>
+   *
+   * <p>The object here also supplies the code that the builder uses to record that a required
+   * primitive property has been set, since such properties are stored unboxed and so cannot use
+   * null to mean unset.
    */
-  ImmutableSet<AutoValueProcessor.Property> builderRequiredProperties = ImmutableSet.of();
+  BuilderRequiredProperties builderRequiredProperties = BuilderRequiredProperties.EMPTY;
 
   /**
    * A map from property names to information about the associated property getter. A property
@@ -150,6 +182,12 @@ class AutoValueTemplateVars extends AutoValueOrOneOfTemplateVars {
   /** Any {@code toBuilder()} methods, that is methods that return the builder type. */
   ImmutableList<SimpleMethod> toBuilderMethods;
 
+  /**
+   * Any wither methods, like {@code withFoo(String foo)}, that return a copy of this instance with
+   * one property changed.
+   */
+  ImmutableList<WitherMethod> witherMethods = ImmutableList.of();
+
   private static final Template TEMPLATE = parsedTemplateForResource("autovalue.vm");
 
   @Override
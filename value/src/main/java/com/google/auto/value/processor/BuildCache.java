@@ -0,0 +1,674 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.value.processor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.auto.common.MoreTypes;
+import com.google.auto.value.extension.AutoValueExtension;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileObject;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+
+/**
+ * An on-disk cache of the source files generated for {@code @AutoValue} classes, enabled by the
+ * {@code -Acom.google.auto.value.CacheDirectory=<dir>} option. It is meant for incremental builds
+ * and long-lived compiler processes, where a class is often recompiled without any change to its
+ * shape.
+ *
+ * <p>Each entry is keyed by a fingerprint of what the processor reads when generating code for a
+ * class:
+ *
+ * <ul>
+ *   <li>the class itself, its nested classes (including any builder), and its supertypes, down to
+ *       the annotations, modifiers, and signature of each member, and the value of each constant
+ *       field, such as {@code serialVersionUID};
+ *   <li>the names and members of the other classes that those signatures reference;
+ *   <li>the versions of the processor and of the extensions that are installed;
+ *   <li>the processor options, the source version, and the version of the JDK.
+ * </ul>
+ *
+ * <p>If the fingerprint matches an entry, the processor writes the cached source files and skips
+ * everything else. Otherwise it generates the class as usual, and while doing so it records every
+ * source file written through the {@link Filer}, including those written by extensions. The
+ * recorded files become a new entry, unless the class could not be cached because an error,
+ * warning, or note was reported, a non-source file was written, or the class references a type
+ * that is undefined.
+ *
+ * <p>The fingerprint does not cover everything that could conceivably affect the generated code;
+ * for example, an extension might read a configuration file. If that happens, deleting the cache
+ * directory is always safe.
+ */
+final class BuildCache {
+  static final String CACHE_OPTION = "com.google.auto.value.CacheDirectory";
+
+  // Increase this if the description used for fingerprints, or the entry format, changes.
+  private static final int FORMAT_VERSION = 2;
+
+  private final Path directory; // null if there is no cache
+  private final ProcessingEnvironment processingEnv;
+  private final String environmentDescription;
+  private Recording currentRecording; // null if we are not recording
+
+  private BuildCache(ProcessingEnvironment delegate, Path directory) {
+    this.directory = directory;
+    if (directory == null) {
+      this.processingEnv = delegate;
+      this.environmentDescription = null;
+    } else {
+      this.processingEnv = new RecordingProcessingEnvironment(delegate);
+      this.environmentDescription = describeEnvironment(delegate);
+    }
+  }
+
+  static BuildCache create(ProcessingEnvironment processingEnv) {
+    String directoryString = processingEnv.getOptions().get(CACHE_OPTION);
+    Path directory =
+        (directoryString == null || directoryString.isEmpty()) ? null : Paths.get(directoryString);
+    return new BuildCache(processingEnv, directory);
+  }
+
+  boolean enabled() {
+    return directory != null;
+  }
+
+  /**
+   * The environment that the processor should use. If the cache is enabled, this records the files
+   * written through its {@link Filer} and notices diagnostics reported through its {@link
+   * Messager}. Otherwise it is the original environment.
+   */
+  ProcessingEnvironment processingEnvironment() {
+    return processingEnv;
+  }
+
+  /**
+   * Returns the fingerprint for the given {@code @AutoValue} class, or empty if the class can't be
+   * cached because it references undefined types.
+   */
+  Optional<String> fingerprint(TypeElement type, List<? extends AutoValueExtension> extensions) {
+    StringBuilder description = new StringBuilder(environmentDescription);
+    for (AutoValueExtension extension : extensions) {
+      description.append("extension ").append(classVersion(extension.getClass())).append('\n');
+    }
+    TypeDescriber describer = new TypeDescriber(description);
+    if (!describer.describe(type)) {
+      return Optional.empty();
+    }
+    return Optional.of(Hashing.sha256().hashString(description, UTF_8).toString());
+  }
+
+  /**
+   * Returns the source files recorded for the given fingerprint, as a map from class name to text,
+   * or empty if there are none. A missing or unreadable entry is treated the same way.
+   */
+  Optional<ImmutableMap<String, String>> lookup(String fingerprint) {
+    byte[] bytes;
+    try {
+      bytes = Files.readAllBytes(entryPath(fingerprint));
+    } catch (NoSuchFileException e) {
+      return Optional.empty();
+    } catch (IOException e) {
+      warn("Could not read " + entryPath(fingerprint) + ": " + e);
+      return Optional.empty();
+    }
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      if (in.readInt() != FORMAT_VERSION) {
+        return Optional.empty();
+      }
+      ImmutableMap.Builder<String, String> files = ImmutableMap.builder();
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        String className = in.readUTF();
+        byte[] text = new byte[in.readInt()];
+        in.readFully(text);
+        files.put(className, new String(text, UTF_8));
+      }
+      return Optional.of(files.build());
+    } catch (IOException | RuntimeException e) {
+      // A truncated or otherwise corrupt entry. We'll overwrite it after generating the class.
+      return Optional.empty();
+    }
+  }
+
+  /** The source files written, and whether any diagnostics were reported, for one class. */
+  static final class Recording {
+    private final String fingerprint;
+    private final List<Map.Entry<String, String>> files = new ArrayList<>();
+    private boolean recordable = true;
+
+    private Recording(String fingerprint) {
+      this.fingerprint = fingerprint;
+    }
+  }
+
+  /**
+   * Starts recording the source files written, and diagnostics reported, for the class with the
+   * given fingerprint.
+   */
+  Recording startRecording(String fingerprint) {
+    currentRecording = new Recording(fingerprint);
+    return currentRecording;
+  }
+
+  /**
+   * Stops recording until {@link #resumeRecording}. This allows a class to be generated in more
+   * than one step, with other classes being processed in between.
+   */
+  void pauseRecording() {
+    currentRecording = null;
+  }
+
+  void resumeRecording(Recording recording) {
+    currentRecording = recording;
+  }
+
+  /**
+   * Stops recording, and stores the recorded files if the class was generated without any
+   * diagnostics. If generating the class failed with an exception, this method should not be
+   * called.
+   */
+  void finishRecording(Recording recording) {
+    currentRecording = null;
+    List<Map.Entry<String, String>> files = recording.files;
+    if (!recording.recordable || files.isEmpty()) {
+      return;
+    }
+    String fingerprint = recording.fingerprint;
+    Path entry = entryPath(fingerprint);
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DataOutputStream out = new DataOutputStream(bytes)) {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(files.size());
+        for (Map.Entry<String, String> file : files) {
+          byte[] text = file.getValue().getBytes(UTF_8);
+          out.writeUTF(file.getKey());
+          out.writeInt(text.length);
+          out.write(text);
+        }
+      }
+      Files.createDirectories(directory);
+      // Write to a temporary file and rename it, so that another compilation sharing the
+      // directory never sees a partial entry.
+      Path temp = Files.createTempFile(directory, fingerprint, ".tmp");
+      Files.write(temp, bytes.toByteArray());
+      Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      warn("Could not write " + entry + ": " + e);
+    }
+  }
+
+  private Path entryPath(String fingerprint) {
+    return directory.resolve(fingerprint + ".autovalue");
+  }
+
+  private void warn(String message) {
+    // Use the original Messager, so this warning does not itself make the class uncacheable.
+    ((RecordingProcessingEnvironment) processingEnv)
+        .delegate
+        .getMessager()
+        .printMessage(Diagnostic.Kind.WARNING, message);
+  }
+
+  private static String describeEnvironment(ProcessingEnvironment processingEnv) {
+    StringBuilder description = new StringBuilder();
+    description.append("format ").append(FORMAT_VERSION).append('\n');
+    description.append("processor ").append(classVersion(BuildCache.class)).append('\n');
+    description.append("source ").append(processingEnv.getSourceVersion()).append('\n');
+    description.append("jdk ").append(System.getProperty("java.version")).append('\n');
+    Map<String, String> options = new TreeMap<>(processingEnv.getOptions());
+    options.remove(CACHE_OPTION);
+    options.remove(ProfileReport.PROFILE_OPTION);
+    options.forEach(
+        (key, value) ->
+            description.append("option ").append(key).append('=').append(value).append('\n'));
+    return description.toString();
+  }
+
+  /**
+   * Returns a string that changes when the given class is rebuilt: its name, the version of its
+   * package if known, and the size and modification time of the jar or class file it came from.
+   */
+  private static String classVersion(Class<?> c) {
+    StringBuilder version = new StringBuilder(c.getName());
+    Package p = c.getPackage();
+    if (p != null && p.getImplementationVersion() != null) {
+      version.append(' ').append(p.getImplementationVersion());
+    }
+    try {
+      CodeSource codeSource = c.getProtectionDomain().getCodeSource();
+      URL location = (codeSource == null) ? null : codeSource.getLocation();
+      if (location != null && location.getProtocol().equals("file")) {
+        File file = new File(location.toURI());
+        if (file.isDirectory()) {
+          file = new File(file, c.getName().replace('.', File.separatorChar) + ".class");
+        }
+        version.append(' ').append(file).append(' ').append(file.length());
+        version.append(' ').append(file.lastModified());
+      }
+    } catch (Exception e) {
+      // Fall back to just the name and version.
+    }
+    return version.toString();
+  }
+
+  /**
+   * Appends a canonical description of a type to a StringBuilder. The type, its nested types, and
+   * its supertypes are described in full. Other types referenced from their members are described
+   * more briefly, by their supertypes and the signatures of their members.
+   */
+  private static final class TypeDescriber {
+    private final StringBuilder description;
+    private final Set<String> described = new HashSet<>();
+    private final Set<String> referencedNames = new HashSet<>();
+    private final List<TypeElement> referenced = new ArrayList<>();
+    private boolean valid = true;
+
+    TypeDescriber(StringBuilder description) {
+      this.description = description;
+    }
+
+    /** Describes the type, and returns false if it references an undefined type. */
+    boolean describe(TypeElement type) {
+      describeFully(type);
+      for (int i = 0; i < referenced.size() && valid; i++) {
+        TypeElement ref = referenced.get(i);
+        if (!described.contains(ref.getQualifiedName().toString())) {
+          describeBriefly(ref);
+        }
+      }
+      return valid;
+    }
+
+    private void describeFully(TypeElement type) {
+      if (!described.add(type.getQualifiedName().toString())) {
+        return;
+      }
+      describeTypeHeader("type", type);
+      for (Element member : type.getEnclosedElements()) {
+        describeMember(member);
+        if (member instanceof TypeElement) {
+          describeFully((TypeElement) member);
+        }
+      }
+      List<TypeMirror> supertypes = new ArrayList<>(type.getInterfaces());
+      supertypes.add(type.getSuperclass());
+      for (TypeMirror supertype : supertypes) {
+        if (supertype.getKind().equals(TypeKind.DECLARED)) {
+          TypeElement superElement = MoreTypes.asTypeElement(supertype);
+          if (!isJdkType(superElement)) {
+            describeFully(superElement);
+          }
+        }
+      }
+    }
+
+    private void describeBriefly(TypeElement type) {
+      describeTypeHeader("ref", type);
+      for (Element member : type.getEnclosedElements()) {
+        description
+            .append("  ")
+            .append(member.getKind())
+            .append(' ')
+            .append(member.getModifiers())
+            .append(' ')
+            .append(member.getSimpleName())
+            .append(' ')
+            .append(member.asType());
+        describeConstantValue(member);
+        description.append('\n');
+      }
+    }
+
+    private void describeTypeHeader(String prefix, TypeElement type) {
+      description
+          .append(prefix)
+          .append(' ')
+          .append(type.getKind())
+          .append(' ')
+          .append(type.getModifiers())
+          .append(' ')
+          .append(type.getQualifiedName());
+      describeAnnotations(type);
+      for (TypeParameterElement typeParameter : type.getTypeParameters()) {
+        description.append(" <").append(typeParameter).append(' ');
+        typeParameter.getBounds().forEach(this::describeType);
+        description.append('>');
+      }
+      description.append(" extends ");
+      describeType(type.getSuperclass());
+      description.append(" implements ");
+      type.getInterfaces().forEach(this::describeType);
+      description.append('\n');
+    }
+
+    private void describeMember(Element member) {
+      description
+          .append("  ")
+          .append(member.getKind())
+          .append(' ')
+          .append(member.getModifiers())
+          .append(' ')
+          .append(member.getSimpleName())
+          .append(' ');
+      describeAnnotations(member);
+      describeType(member.asType());
+      if (member instanceof ExecutableElement) {
+        ExecutableElement method = (ExecutableElement) member;
+        for (VariableElement parameter : method.getParameters()) {
+          description.append(" param ").append(parameter.getSimpleName());
+          describeAnnotations(parameter);
+        }
+        AnnotationValue defaultValue = method.getDefaultValue();
+        if (defaultValue != null) {
+          description.append(" default ").append(defaultValue);
+        }
+      }
+      describeConstantValue(member);
+      description.append('\n');
+    }
+
+    // A constant such as serialVersionUID can be copied into the generated code, so its value is
+    // part of the description.
+    private void describeConstantValue(Element member) {
+      if (member instanceof VariableElement) {
+        Object constantValue = ((VariableElement) member).getConstantValue();
+        if (constantValue != null) {
+          description.append(" constant ").append(constantValue);
+        }
+      }
+    }
+
+    private void describeAnnotations(Element element) {
+      for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+        description.append(' ').append(annotation);
+        describeType(annotation.getAnnotationType());
+      }
+    }
+
+    // Appends the type, which includes any type annotations, and notes the types it references.
+    private void describeType(TypeMirror type) {
+      description.append(type).append(' ');
+      noteReferencedTypes(type);
+    }
+
+    private void noteReferencedTypes(TypeMirror type) {
+      switch (type.getKind()) {
+        case ERROR:
+          valid = false;
+          break;
+        case DECLARED:
+          DeclaredType declared = MoreTypes.asDeclared(type);
+          TypeElement element = MoreTypes.asTypeElement(declared);
+          if (!isJdkType(element) && referencedNames.add(element.getQualifiedName().toString())) {
+            referenced.add(element);
+          }
+          declared.getTypeArguments().forEach(this::noteReferencedTypes);
+          break;
+        case ARRAY:
+          noteReferencedTypes(((ArrayType) type).getComponentType());
+          break;
+        case WILDCARD:
+          WildcardType wildcard = (WildcardType) type;
+          if (wildcard.getExtendsBound() != null) {
+            noteReferencedTypes(wildcard.getExtendsBound());
+          }
+          if (wildcard.getSuperBound() != null) {
+            noteReferencedTypes(wildcard.getSuperBound());
+          }
+          break;
+        case EXECUTABLE:
+          ExecutableType executable = (ExecutableType) type;
+          noteReferencedTypes(executable.getReturnType());
+          executable.getParameterTypes().forEach(this::noteReferencedTypes);
+          executable.getThrownTypes().forEach(this::noteReferencedTypes);
+          break;
+        default:
+          // Type variables are described by their declarations, and the other kinds of type do
+          // not reference classes.
+          break;
+      }
+    }
+
+    // The JDK is covered by the JDK version in the environment description, so we don't need to
+    // describe its classes.
+    private static boolean isJdkType(TypeElement type) {
+      String name = type.getQualifiedName().toString();
+      return name.startsWith("java.") || name.startsWith("javax.");
+    }
+  }
+
+  /**
+   * A {@link ProcessingEnvironment} that records the source files written through its {@link Filer}
+   * and notes any diagnostics reported through its {@link Messager}, while a recording is active.
+   */
+  private final class RecordingProcessingEnvironment implements ProcessingEnvironment {
+    private final ProcessingEnvironment delegate;
+    private final Filer filer;
+    private final Messager messager;
+
+    RecordingProcessingEnvironment(ProcessingEnvironment delegate) {
+      this.delegate = delegate;
+      this.filer = new RecordingFiler(delegate.getFiler());
+      this.messager = new RecordingMessager(delegate.getMessager());
+    }
+
+    @Override
+    public Map<String, String> getOptions() {
+      return delegate.getOptions();
+    }
+
+    @Override
+    public Messager getMessager() {
+      return messager;
+    }
+
+    @Override
+    public Filer getFiler() {
+      return filer;
+    }
+
+    @Override
+    public Elements getElementUtils() {
+      return delegate.getElementUtils();
+    }
+
+    @Override
+    public Types getTypeUtils() {
+      return delegate.getTypeUtils();
+    }
+
+    @Override
+    public SourceVersion getSourceVersion() {
+      return delegate.getSourceVersion();
+    }
+
+    @Override
+    public Locale getLocale() {
+      return delegate.getLocale();
+    }
+  }
+
+  private void notRecordable() {
+    if (currentRecording != null) {
+      currentRecording.recordable = false;
+    }
+  }
+
+  private final class RecordingFiler implements Filer {
+    private final Filer delegate;
+
+    RecordingFiler(Filer delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public JavaFileObject createSourceFile(CharSequence name, Element... originatingElements)
+        throws IOException {
+      JavaFileObject file = delegate.createSourceFile(name, originatingElements);
+      Recording recording = currentRecording;
+      if (recording == null) {
+        return file;
+      }
+      String className = name.toString();
+      return new ForwardingJavaFileObject<JavaFileObject>(file) {
+        @Override
+        public Writer openWriter() throws IOException {
+          StringWriter text = new StringWriter();
+          return new FilterWriter(super.openWriter()) {
+            @Override
+            public void write(int c) throws IOException {
+              super.write(c);
+              text.write(c);
+            }
+
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+              super.write(cbuf, off, len);
+              text.write(cbuf, off, len);
+            }
+
+            @Override
+            public void write(String str, int off, int len) throws IOException {
+              super.write(str, off, len);
+              text.write(str, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+              super.close();
+              recording.files.add(new SimpleImmutableEntry<>(className, text.toString()));
+            }
+          };
+        }
+
+        @Override
+        public OutputStream openOutputStream() throws IOException {
+          notRecordable();
+          return super.openOutputStream();
+        }
+      };
+    }
+
+    @Override
+    public JavaFileObject createClassFile(CharSequence name, Element... originatingElements)
+        throws IOException {
+      notRecordable();
+      return delegate.createClassFile(name, originatingElements);
+    }
+
+    @Override
+    public FileObject createResource(
+        JavaFileManager.Location location,
+        CharSequence moduleAndPkg,
+        CharSequence relativeName,
+        Element... originatingElements)
+        throws IOException {
+      notRecordable();
+      return delegate.createResource(location, moduleAndPkg, relativeName, originatingElements);
+    }
+
+    @Override
+    public FileObject getResource(
+        JavaFileManager.Location location, CharSequence moduleAndPkg, CharSequence relativeName)
+        throws IOException {
+      return delegate.getResource(location, moduleAndPkg, relativeName);
+    }
+  }
+
+  private final class RecordingMessager implements Messager {
+    private final Messager delegate;
+
+    RecordingMessager(Messager delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void printMessage(Diagnostic.Kind kind, CharSequence msg) {
+      notRecordable();
+      delegate.printMessage(kind, msg);
+    }
+
+    @Override
+    public void printMessage(Diagnostic.Kind kind, CharSequence msg, Element e) {
+      notRecordable();
+      delegate.printMessage(kind, msg, e);
+    }
+
+    @Override
+    public void printMessage(
+        Diagnostic.Kind kind, CharSequence msg, Element e, AnnotationMirror a) {
+      notRecordable();
+      delegate.printMessage(kind, msg, e, a);
+    }
+
+    @Override
+    public void printMessage(
+        Diagnostic.Kind kind, CharSequence msg, Element e, AnnotationMirror a, AnnotationValue v) {
+      notRecordable();
+      delegate.printMessage(kind, msg, e, a, v);
+    }
+  }
+}
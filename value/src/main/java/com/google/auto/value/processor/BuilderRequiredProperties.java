@@ -0,0 +1,165 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.value.processor;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+
+import com.google.auto.value.processor.AutoValueOrOneOfProcessor.Property;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Code generation to track which properties have been set in a builder, referenced from the
+ * autovalue.vm template.
+ *
+ * <p>Every required property must be set before the builder's {@code build()} method is called. A
+ * required property of reference type is unset as long as its field in the builder is null. A
+ * required property of primitive type is stored in a field of that primitive type, so that setting
+ * it does not allocate a boxed value. Whether it has been set is instead recorded as a bit in one
+ * of the {@code int} fields {@code set$0}, {@code set$1}, etc. Then {@code build()} can check that
+ * every primitive property has been set by comparing each of those fields against a constant.
+ */
+public final class BuilderRequiredProperties {
+  static final BuilderRequiredProperties EMPTY = of(ImmutableSet.of());
+
+  private static final int BITS_PER_FIELD = Integer.SIZE;
+
+  /**
+   * The required properties, in the same order as the original abstract method declarations in the
+   * AutoValue class.
+   */
+  private final ImmutableSet<Property> requiredProperties;
+
+  /**
+   * Maps each required primitive property to its index among those properties. Property number
+   * {@code i} is tracked by bit {@code i % 32} of field {@code set$(i / 32)}.
+   */
+  private final ImmutableMap<Property, Integer> primitivePropertyToIndex;
+
+  private BuilderRequiredProperties(ImmutableSet<Property> requiredProperties) {
+    this.requiredProperties = requiredProperties;
+    ImmutableList<Property> primitiveProperties =
+        requiredProperties.stream()
+            .filter(p -> p.getKind().isPrimitive())
+            .collect(toImmutableList());
+    this.primitivePropertyToIndex =
+        IntStream.range(0, primitiveProperties.size())
+            .boxed()
+            .collect(toImmutableMap(primitiveProperties::get, i -> i));
+  }
+
+  static BuilderRequiredProperties of(ImmutableSet<Property> requiredProperties) {
+    return new BuilderRequiredProperties(requiredProperties);
+  }
+
+  /** The required properties. The template uses this to tell whether a property is required. */
+  public ImmutableSet<Property> getRequiredProperties() {
+    return requiredProperties;
+  }
+
+  /** The names of the {@code int} fields that record which primitive properties have been set. */
+  public ImmutableList<String> getFieldNames() {
+    return IntStream.range(0, fieldCount())
+        .mapToObj(BuilderRequiredProperties::fieldName)
+        .collect(toImmutableList());
+  }
+
+  /**
+   * Returns a statement that records that the given property has been set, such as {@code set$0 |=
+   * 4;}, or an empty string if the property does not need that. Only required primitive properties
+   * need it, since for other properties the field itself being non-null shows that it has been set.
+   */
+  public String markAsSet(Property p) {
+    Integer index = primitivePropertyToIndex.get(p);
+    if (index == null) {
+      return "";
+    }
+    return fieldName(index / BITS_PER_FIELD) + " |= " + bit(index) + ";";
+  }
+
+  /**
+   * Returns an expression that is true if the given required property has not been set, such as
+   * {@code (set$0 & 4) == 0} or {@code this.foo == null}.
+   */
+  public String missingRequiredProperty(Property p) {
+    Integer index = primitivePropertyToIndex.get(p);
+    if (index == null) {
+      return "this." + p + " == null";
+    }
+    return "(" + fieldName(index / BITS_PER_FIELD) + " & " + bit(index) + ") == 0";
+  }
+
+  /**
+   * Returns an expression that is true if any required property has not been set. For primitive
+   * properties this is just one comparison per {@code set$N} field, rather than one per property.
+   */
+  public String getAnyMissing() {
+    List<String> conditions = new ArrayList<>();
+    for (int i = 0; i < fieldCount(); i++) {
+      conditions.add(fieldName(i) + " != " + intLiteral(fullMask(i)));
+    }
+    for (Property p : requiredProperties) {
+      if (!primitivePropertyToIndex.containsKey(p)) {
+        conditions.add(missingRequiredProperty(p));
+      }
+    }
+    // The result appears in an if statement in the build() method, so continuation lines are
+    // indented to line up with the rest of that method.
+    return String.join("\n          || ", conditions);
+  }
+
+  /**
+   * Returns statements that record that every primitive property has been set, for use in a
+   * builder that has been initialized from an existing instance of the {@code @AutoValue} class.
+   */
+  public ImmutableList<String> getInitToAllSet() {
+    return IntStream.range(0, fieldCount())
+        .mapToObj(i -> fieldName(i) + " = " + intLiteral(fullMask(i)) + ";")
+        .collect(toImmutableList());
+  }
+
+  private int fieldCount() {
+    return (primitivePropertyToIndex.size() + BITS_PER_FIELD - 1) / BITS_PER_FIELD;
+  }
+
+  private int fullMask(int field) {
+    int bitsInField =
+        Math.min(BITS_PER_FIELD, primitivePropertyToIndex.size() - field * BITS_PER_FIELD);
+    return (bitsInField == BITS_PER_FIELD) ? -1 : (1 << bitsInField) - 1;
+  }
+
+  private static String bit(int index) {
+    return intLiteral(1 << (index % BITS_PER_FIELD));
+  }
+
+  private static String fieldName(int field) {
+    return "set$" + field;
+  }
+
+  // Small masks are clearer in decimal, and large ones in hex. Either way the result is a valid int
+  // literal, since 0x80000000 and 0xffffffff are int literals in Java.
+  private static String intLiteral(int mask) {
+    if (mask >= 0 && mask < 256) {
+      return Integer.toString(mask);
+    }
+    return "0x" + Integer.toHexString(mask);
+  }
+}
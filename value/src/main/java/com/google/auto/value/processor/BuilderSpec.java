@@ -302,7 +302,7 @@ class BuilderSpec {
           required.remove(property);
         }
       }
-      vars.builderRequiredProperties = ImmutableSet.copyOf(required);
+      vars.builderRequiredProperties = BuilderRequiredProperties.of(ImmutableSet.copyOf(required));
     }
   }
 
@@ -25,8 +25,13 @@ final class ClassNames {
 
   static final String AUTO_VALUE_PACKAGE_NAME = "com.google.auto.value.";
   static final String AUTO_ANNOTATION_NAME = AUTO_VALUE_PACKAGE_NAME + "AutoAnnotation";
+  static final String CACHED_NAME = AUTO_ANNOTATION_NAME + ".Cached";
   static final String AUTO_ONE_OF_NAME = AUTO_VALUE_PACKAGE_NAME + "AutoOneOf";
+  static final String COMPACT_NAME = AUTO_ONE_OF_NAME + ".Compact";
   static final String AUTO_VALUE_NAME = AUTO_VALUE_PACKAGE_NAME + "AutoValue";
   static final String AUTO_VALUE_BUILDER_NAME = AUTO_VALUE_NAME + ".Builder";
+  static final String CACHE_HASH_CODE_NAME = AUTO_VALUE_NAME + ".CacheHashCode";
+  static final String PACKED_NAME = AUTO_VALUE_NAME + ".Packed";
+  static final String INTERNED_NAME = AUTO_VALUE_NAME + ".Interned";
   static final String COPY_ANNOTATIONS_NAME = AUTO_VALUE_NAME + ".CopyAnnotations";
 }
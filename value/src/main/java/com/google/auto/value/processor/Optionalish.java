@@ -44,10 +44,12 @@ public class Optionalish {
 
   private final DeclaredType optionalType;
   private final String className;
+  private final String rawType;
 
   private Optionalish(DeclaredType optionalType) {
     this.optionalType = optionalType;
     this.className = MoreElements.asType(optionalType.asElement()).getQualifiedName().toString();
+    this.rawType = TypeEncoder.encodeRaw(optionalType);
   }
 
   /**
@@ -79,7 +81,7 @@ public class Optionalish {
    * "Optional"}, but it might be {@code "OptionalInt"} or {@code "java.util.Optional"} for example.
    */
   public String getRawType() {
-    return TypeEncoder.encodeRaw(optionalType);
+    return rawType;
   }
 
   /**
@@ -92,7 +94,7 @@ public class Optionalish {
    */
   public String getEmpty() {
     String empty = className.startsWith("java.util.") ? ".empty()" : ".absent()";
-    return TypeEncoder.encodeRaw(optionalType) + empty;
+    return rawType + empty;
   }
 
   TypeMirror getContainedType(Types typeUtils) {
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.value.processor;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.auto.value.processor.AutoValueOrOneOfProcessor.Property;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.lang.model.type.TypeKind;
+
+/**
+ * Code generation for {@code @AutoValue.Packed}, referenced from the autovalue.vm template.
+ *
+ * <p>Each packed property occupies a run of bits in one of the fields {@code bits$0}, {@code
+ * bits$1}, etc. A {@code boolean} property occupies one bit. An enum property occupies enough bits
+ * to hold the ordinal of any of its constants. Properties are assigned bits in the order they are
+ * declared, and a new field is started whenever the next property would not fit in 64 bits. Each
+ * field has the smallest integral type that can hold its bits.
+ */
+public final class PackedProperties {
+  static final PackedProperties EMPTY = new PackedProperties(ImmutableMap.of(), "", false);
+
+  /** The largest number of constants that an enum type can have if its properties are packed. */
+  static final int MAX_ENUM_CONSTANTS = 256;
+
+  /** A field that holds the bits of one or more packed properties. */
+  public static final class Word {
+    private final String name;
+    private final List<Slot> slots = new ArrayList<>();
+    private int bits;
+
+    private Word(String name) {
+      this.name = name;
+    }
+
+    /** The name of the field, for example {@code bits$0}. */
+    public String getName() {
+      return name;
+    }
+
+    /** The primitive type of the field, for example {@code byte}. */
+    public String getType() {
+      if (bits <= Byte.SIZE) {
+        return "byte";
+      } else if (bits <= Short.SIZE) {
+        return "short";
+      } else if (bits <= Integer.SIZE) {
+        return "int";
+      } else {
+        return "long";
+      }
+    }
+
+    /** An expression for the contribution of this field to {@code hashCode()}. */
+    public String getHashCodeExpression() {
+      return isLong() ? "(int) ((" + name + " >>> 32) ^ " + name + ")" : name;
+    }
+
+    private boolean isLong() {
+      return bits > Integer.SIZE;
+    }
+
+    /** Returns a literal for the given mask, in the arithmetic type of this field. */
+    private String literal(long mask) {
+      if (isLong()) {
+        return (mask >= 0 && mask < 256 ? Long.toString(mask) : "0x" + Long.toHexString(mask))
+            + "L";
+      }
+      int intMask = (int) mask;
+      return intMask >= 0 && intMask < 256
+          ? Integer.toString(intMask)
+          : "0x" + Integer.toHexString(intMask);
+    }
+  }
+
+  /** The position of one packed property within a {@link Word}. */
+  private static final class Slot {
+    final Property property;
+    final Word word;
+    final int shift;
+    final int width;
+
+    Slot(Property property, Word word, int shift, int width) {
+      this.property = property;
+      this.word = word;
+      this.shift = shift;
+      this.width = width;
+    }
+
+    long mask() {
+      return (1L << width) - 1;
+    }
+
+    boolean isBoolean() {
+      return property.getKind() == TypeKind.BOOLEAN;
+    }
+
+    String valuesArray() {
+      return property + "$values";
+    }
+  }
+
+  private final ImmutableMap<Property, Slot> slots;
+  private final ImmutableList<Word> words;
+  private final ImmutableList<String> staticFields;
+  private final String subclassType;
+  private final boolean identifiers;
+
+  /**
+   * Constructs an instance to pack the given properties.
+   *
+   * @param propertyWidths maps each property to be packed, in declaration order, to the number of
+   *     bits it needs
+   * @param subclassType the generated subclass as it can appear in an {@code instanceof} or a cast,
+   *     for example {@code AutoValue_Foo<?>}
+   * @param identifiers true if exception messages should mention the names of properties
+   */
+  PackedProperties(
+      ImmutableMap<Property, Integer> propertyWidths, String subclassType, boolean identifiers) {
+    this.subclassType = subclassType;
+    this.identifiers = identifiers;
+    Map<Property, Slot> slots = new LinkedHashMap<>();
+    List<Word> words = new ArrayList<>();
+    Word word = null;
+    for (Map.Entry<Property, Integer> entry : propertyWidths.entrySet()) {
+      int width = entry.getValue();
+      if (word == null || word.bits + width > Long.SIZE) {
+        word = new Word("bits$" + words.size());
+        words.add(word);
+      }
+      Slot slot = new Slot(entry.getKey(), word, word.bits, width);
+      word.slots.add(slot);
+      word.bits += width;
+      slots.put(entry.getKey(), slot);
+    }
+    this.slots = ImmutableMap.copyOf(slots);
+    this.words = ImmutableList.copyOf(words);
+    // Computed here rather than when the template asks for it, because it needs the compiler.
+    this.staticFields =
+        this.slots.values().stream()
+            .filter(slot -> !slot.isBoolean())
+            .map(
+                slot -> {
+                  String enumType = TypeEncoder.encodeRaw(slot.property.getTypeMirror());
+                  return "private static final " + enumType + "[] " + slot.valuesArray() + " = "
+                      + enumType + ".values();";
+                })
+            .collect(toImmutableList());
+  }
+
+  /** Returns the number of bits needed to store any ordinal of an enum with this many constants. */
+  static int bitsForEnumConstants(int constantCount) {
+    return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(constantCount - 1));
+  }
+
+  public boolean isEmpty() {
+    return slots.isEmpty();
+  }
+
+  /** True if the given property is packed, and so does not have a field of its own. */
+  public boolean isPacked(Property p) {
+    return slots.containsKey(p);
+  }
+
+  /** The fields that hold the packed properties. */
+  public ImmutableList<Word> getWords() {
+    return words;
+  }
+
+  /**
+   * Declarations of static fields that cache the {@code values()} of each packed enum property, so
+   * that decoding the property does not need to clone that array.
+   */
+  public ImmutableList<String> getStaticFields() {
+    return staticFields;
+  }
+
+  // The strings returned by the methods here appear at known places in the generated class, so any
+  // continuation lines they contain are indented to match those places.
+
+  /**
+   * Statements for the constructor that set each packed field from the constructor parameters. For
+   * an enum property this first checks that its ordinal fits in the bits allocated to it. That
+   * could fail only if the enum has gained constants since the {@code @AutoValue} class was
+   * compiled.
+   */
+  public ImmutableList<String> getInitializers() {
+    ImmutableList.Builder<String> statements = ImmutableList.builder();
+    for (Slot slot : slots.values()) {
+      if (!slot.isBoolean()) {
+        String message =
+            identifiers
+                ? "\"Ordinal of " + slot.property.getName() + " does not fit: recompile\""
+                : "";
+        statements.add(
+            "if (" + slot.property + ".ordinal() > " + slot.mask() + ") {\n"
+                + "      throw new IllegalArgumentException(" + message + ");\n"
+                + "    }");
+      }
+    }
+    for (Word word : words) {
+      List<String> parts = new ArrayList<>();
+      for (Slot slot : word.slots) {
+        String part;
+        if (slot.isBoolean()) {
+          part = "(" + slot.property + " ? " + word.literal(1L << slot.shift) + " : 0)";
+        } else {
+          String ordinal = (word.isLong() ? "(long) " : "") + slot.property + ".ordinal()";
+          part = (slot.shift == 0) ? ordinal : ordinal + " << " + slot.shift;
+        }
+        parts.add(part);
+      }
+      String value = String.join("\n        | ", parts);
+      String type = word.getType();
+      if (type.equals("byte") || type.equals("short")) {
+        value = "(" + type + ") (" + value + ")";
+      }
+      statements.add("this." + word.name + " = " + value + ";");
+    }
+    return statements.build();
+  }
+
+  /** An expression that decodes the value of the given packed property from its field. */
+  public String decode(Property p) {
+    Slot slot = slots.get(p);
+    Word word = slot.word;
+    if (slot.isBoolean()) {
+      return "(" + word.name + " & " + word.literal(1L << slot.shift) + ") != 0";
+    }
+    String shifted =
+        (slot.shift == 0) ? word.name : "(" + word.name + " >>> " + slot.shift + ")";
+    if (word.isLong()) {
+      shifted = "(int) " + (slot.shift == 0 ? word.name : shifted);
+    }
+    return slot.valuesArray() + "[" + shifted + " & " + slot.mask() + "]";
+  }
+
+  /**
+   * An expression that is true if every packed property of {@code this} is equal to the same
+   * property of {@code that}. If {@code that} is also an instance of the generated subclass then
+   * this just compares the packed fields. Otherwise it compares each property separately.
+   */
+  public String getEqualsExpression() {
+    List<String> sameWords = new ArrayList<>();
+    for (Word word : words) {
+      sameWords.add(
+          "this." + word.name + " == ((" + subclassType + ") that)." + word.name);
+    }
+    List<String> sameProperties = new ArrayList<>();
+    for (Slot slot : slots.values()) {
+      String getter = slot.property.getGetter();
+      sameProperties.add("this." + getter + "() == that." + getter + "()");
+    }
+    return "(that instanceof " + subclassType + "\n"
+        + "              ? " + String.join("\n                  && ", sameWords) + "\n"
+        + "              : " + String.join("\n                  && ", sameProperties) + ")";
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.value.processor;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The total time that a processor has spent in each phase of generating code for the classes it
+ * has processed. This exists so that benchmarks, which run the processor in-process, can see where
+ * the time goes, and for the {@link ProfileReport}. The clock is only read once timing has been
+ * {@linkplain #enable enabled}, either by a benchmark or because the {@code -Aauto.profile} option
+ * was given, so otherwise the times are all zero.
+ *
+ * <p>This class is public, and only uses JDK types in its public API, because the processor jar
+ * relocates its other dependencies.
+ */
+public final class PhaseTimer {
+  /**
+   * The phases of processing one {@code @AutoValue} or {@code @AutoOneOf} class, or one
+   * {@code @AutoAnnotation} method.
+   */
+  public enum Phase {
+    /** Checking that the annotation has been used on the right kind of class or method. */
+    VALIDATE,
+
+    /**
+     * Classifying the methods of the class, validating them, and defining most of the template
+     * variables.
+     */
+    CLASSIFY,
+
+    /** Running extensions, including writing the classes that they generate. */
+    EXTENSIONS,
+
+    /** Defining the remaining template variables and evaluating the template. */
+    TO_TEXT,
+
+    /**
+     * Finding the classes that the template output references, and working out which of them to
+     * import.
+     */
+    DECODE,
+
+    /**
+     * Respelling the class names in the template output and tidying its whitespace. Normally this
+     * is done as the text is written, but when times are being recorded it is done first, so that
+     * it can be timed separately from {@link #WRITE}.
+     */
+    FORMAT,
+
+    /** Writing the generated source files through the {@code Filer}. */
+    WRITE,
+  }
+
+  private final long[] nanos = new long[Phase.values().length];
+  private boolean enabled;
+  private long lastMark;
+
+  /** Starts recording times. Until this is called, the other methods do not read the clock. */
+  public void enable() {
+    enabled = true;
+  }
+
+  /** Returns true if times are being recorded. */
+  public boolean enabled() {
+    return enabled;
+  }
+
+  /** Marks the start of processing a class, which is also the start of its first phase. */
+  void start() {
+    if (enabled) {
+      lastMark = System.nanoTime();
+    }
+  }
+
+  /** Marks the end of the given phase, which is also the start of the next one. */
+  void endPhase(Phase phase) {
+    if (!enabled) {
+      return;
+    }
+    long now = System.nanoTime();
+    nanos[phase.ordinal()] += now - lastMark;
+    lastMark = now;
+  }
+
+  /** Returns the total nanoseconds spent in the given phase so far. */
+  public long nanos(Phase phase) {
+    return nanos[phase.ordinal()];
+  }
+
+  /** Returns the total nanoseconds spent in each phase so far. */
+  public Map<Phase, Long> nanosByPhase() {
+    Map<Phase, Long> map = new EnumMap<>(Phase.class);
+    for (Phase phase : Phase.values()) {
+      map.put(phase, nanos(phase));
+    }
+    return map;
+  }
+
+  /** Sets all the totals back to zero. */
+  public void reset() {
+    for (int i = 0; i < nanos.length; i++) {
+      nanos[i] = 0;
+    }
+  }
+}
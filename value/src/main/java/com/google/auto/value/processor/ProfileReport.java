@@ -0,0 +1,232 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.value.processor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.auto.value.processor.PhaseTimer.Phase;
+import com.google.common.base.CaseFormat;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic;
+
+/**
+ * A report of where a processor spends its time, written if the {@code -Aauto.profile=<path>}
+ * option is given. At the end of each round, the processor appends one JSON object per line to the
+ * file at that path: one for each type it processed, then one summarizing the round. For example:
+ *
+ * <pre>
+ * {"processor":"AutoValueProcessor","round":1,"type":"com.example.Foo","outcome":"generated",
+ *     "nanos":{"validate":41000,"classify":2160000,...},"extensions":{"...MemoizeExtension":8000}}
+ * {"processor":"AutoValueProcessor","round":1,"types":1,"deferred":0,"nanos":4310000}
+ * </pre>
+ *
+ * (Each object is on a single line in the actual file.) The {@code "nanos"} object for a type has
+ * the time spent in each {@linkplain PhaseTimer.Phase phase}: validation, classification,
+ * extensions, template evaluation ({@code "toText"}), finding the referenced classes ({@code
+ * "decode"}), formatting, and writing through the {@code Filer}. If the {@link BuildCache} is
+ * enabled, the summary also has a {@code "cache"} object with the number of hits and misses in the
+ * round and the ratio of hits to lookups. Several processors can share the same file, since each
+ * one appends to it. If the option is not given, every method returns immediately.
+ *
+ * <p>This follows the format of {@code com.google.auto.common.ProfileReport}, which this module
+ * cannot use because it depends on a released version of auto-common.
+ */
+final class ProfileReport {
+  static final String PROFILE_OPTION = "auto.profile";
+
+  private final ProcessingEnvironment processingEnv;
+  private final String processorName;
+  private final Path path; // null if there is no report
+  private final List<String> lines = new ArrayList<>();
+  private final Map<String, Long> extensionNanos = new LinkedHashMap<>();
+  private final long[] phaseNanosAtStart = new long[Phase.values().length];
+  private int round;
+  private int typesInRound;
+  private int cacheHitsInRound;
+  private int cacheMissesInRound;
+  private boolean cacheHit;
+  private long roundStart;
+
+  private ProfileReport(ProcessingEnvironment processingEnv, String processorName, Path path) {
+    this.processingEnv = processingEnv;
+    this.processorName = processorName;
+    this.path = path;
+  }
+
+  static ProfileReport create(ProcessingEnvironment processingEnv, String processorName) {
+    String pathString = processingEnv.getOptions().get(PROFILE_OPTION);
+    Path path = (pathString == null || pathString.isEmpty()) ? null : Paths.get(pathString);
+    return new ProfileReport(processingEnv, processorName, path);
+  }
+
+  boolean enabled() {
+    return path != null;
+  }
+
+  /** Returns the current time for a later call to {@link #addExtension}, if there is a report. */
+  long now() {
+    return enabled() ? System.nanoTime() : 0;
+  }
+
+  void startRound() {
+    if (enabled()) {
+      round++;
+      typesInRound = 0;
+      cacheHitsInRound = 0;
+      cacheMissesInRound = 0;
+      roundStart = System.nanoTime();
+    }
+  }
+
+  /** Records the phase times so far, so {@link #endType} can report the times for this type. */
+  void startType(PhaseTimer timer) {
+    if (enabled()) {
+      for (Phase phase : Phase.values()) {
+        phaseNanosAtStart[phase.ordinal()] = timer.nanos(phase);
+      }
+      extensionNanos.clear();
+      cacheHit = false;
+    }
+  }
+
+  /** Records whether the current type was found in the {@link BuildCache}. */
+  void cacheResult(boolean hit) {
+    if (enabled()) {
+      cacheHit = hit;
+      if (hit) {
+        cacheHitsInRound++;
+      } else {
+        cacheMissesInRound++;
+      }
+    }
+  }
+
+  /** Records the time since {@code start}, from {@link #now}, as spent in the given extension. */
+  void addExtension(String extensionName, long start) {
+    if (enabled()) {
+      extensionNanos.merge(extensionName, System.nanoTime() - start, Long::sum);
+    }
+  }
+
+  /**
+   * Records a line for the given type, with the time spent in each phase since {@link #startType}.
+   *
+   * @param outcome {@code "generated"}, {@code "deferred"} if the type referenced undefined types
+   *     and will be retried in the next round, or {@code "error"}. A type that was generated from
+   *     the {@link BuildCache} is reported as {@code "cached"} instead of {@code "generated"}.
+   */
+  void endType(String typeName, String outcome, PhaseTimer timer) {
+    if (enabled()) {
+      typesInRound++;
+      Map<String, Long> phaseNanos = new LinkedHashMap<>();
+      for (Phase phase : Phase.values()) {
+        phaseNanos.put(
+            CaseFormat.UPPER_UNDERSCORE.to(CaseFormat.LOWER_CAMEL, phase.name()),
+            timer.nanos(phase) - phaseNanosAtStart[phase.ordinal()]);
+      }
+      StringBuilder line = startLine();
+      field(line, "type", typeName);
+      field(line, "outcome", (cacheHit && outcome.equals("generated")) ? "cached" : outcome);
+      field(line, "nanos", phaseNanos);
+      if (!extensionNanos.isEmpty()) {
+        field(line, "extensions", extensionNanos);
+      }
+      lines.add(line.append('}').toString());
+    }
+  }
+
+  /**
+   * Writes the lines for the current round, followed by a summary line.
+   *
+   * @param deferred the number of types that will be retried in the next round.
+   */
+  void endRound(int deferred) {
+    if (enabled()) {
+      StringBuilder line = startLine();
+      field(line, "types", typesInRound);
+      field(line, "deferred", deferred);
+      field(line, "nanos", System.nanoTime() - roundStart);
+      int cacheLookups = cacheHitsInRound + cacheMissesInRound;
+      if (cacheLookups > 0) {
+        Map<String, Object> cache = new LinkedHashMap<>();
+        cache.put("hits", cacheHitsInRound);
+        cache.put("misses", cacheMissesInRound);
+        cache.put("hitRatio", (double) cacheHitsInRound / cacheLookups);
+        field(line, "cache", cache);
+      }
+      lines.add(line.append('}').toString());
+      try {
+        Files.write(path, lines, UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+      } catch (IOException e) {
+        processingEnv
+            .getMessager()
+            .printMessage(
+                Diagnostic.Kind.WARNING, "Could not write profile report to " + path + ": " + e);
+      }
+      lines.clear();
+    }
+  }
+
+  private StringBuilder startLine() {
+    StringBuilder line = new StringBuilder("{");
+    field(line, "processor", processorName);
+    field(line, "round", round);
+    return line;
+  }
+
+  private static void field(StringBuilder line, String name, Object value) {
+    if (line.length() > 1) {
+      line.append(',');
+    }
+    appendString(line, name);
+    line.append(':');
+    if (value instanceof String) {
+      appendString(line, (String) value);
+    } else if (value instanceof Map<?, ?>) {
+      StringBuilder map = new StringBuilder("{");
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        field(map, (String) entry.getKey(), entry.getValue());
+      }
+      line.append(map).append('}');
+    } else {
+      line.append(value);
+    }
+  }
+
+  private static void appendString(StringBuilder line, String s) {
+    line.append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        line.append('\\').append(c);
+      } else if (c < ' ') {
+        line.append(String.format("\\u%04x", (int) c));
+      } else {
+        line.append(c);
+      }
+    }
+    line.append('"');
+  }
+}
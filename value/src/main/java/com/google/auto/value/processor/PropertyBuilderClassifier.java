@@ -81,6 +81,7 @@ class PropertyBuilderClassifier {
    */
   public static class PropertyBuilder {
     private final ExecutableElement propertyBuilderMethod;
+    private final String access;
     private final String name;
     private final String builderType;
     private final TypeMirror builderTypeMirror;
@@ -100,6 +101,7 @@ class PropertyBuilderClassifier {
         String builtToBuilder,
         String copyAll) {
       this.propertyBuilderMethod = propertyBuilderMethod;
+      this.access = SimpleMethod.access(propertyBuilderMethod);
       this.name = propertyBuilderMethod.getSimpleName() + "$";
       this.builderType = builderType;
       this.builderTypeMirror = builderTypeMirror;
@@ -116,7 +118,7 @@ class PropertyBuilderClassifier {
     }
 
     public String getAccess() {
-      return SimpleMethod.access(propertyBuilderMethod);
+      return access;
     }
 
     /** The name of the field to hold this builder. */
@@ -15,71 +15,175 @@
  */
 package com.google.auto.value.processor;
 
+import java.io.IOException;
+import java.io.Writer;
+
 /**
  * Postprocessor that runs over the output of the template engine in order to make it look nicer.
  * Mostly, this involves removing surplus horizontal and vertical space.
  *
+ * <p>The reformatter is fed one token at a time, as defined by {@link JavaScanner}, and writes its
+ * output as it goes. That allows {@link TypeEncoder} to respell class names and reformat the result
+ * in a single pass, writing straight into the generated source file. Runs of tokens that are copied
+ * unchanged are written with a single call.
+ *
  * @author emcmanus@google.com (Éamonn McManus)
  */
 class Reformatter {
+  private final Appendable out;
+
+  // The pending token, which is processed when we know the first character of the token after it.
+  private String pendingSource;
+  private int pendingStart;
+  private int pendingEnd;
+
+  // The run of unchanged text that we have yet to write to out.
+  private String runSource;
+  private int runStart;
+  private int runEnd;
+
+  // The first character of the token before the pending one.
+  private char previous;
+  private boolean wroteNothing = true;
+  private int braces;
+  private int parens;
+
+  Reformatter(Appendable out) {
+    this.out = out;
+  }
+
   static String fixup(String s) {
-    StringBuilder out = new StringBuilder();
+    StringBuilder out = new StringBuilder(s.length());
     JavaScanner scanner = new JavaScanner(s);
     s = scanner.string();
-    int len = s.length();
-    for (int start = 0, previous = 0, braces = 0, parens = 0, end = 0;
-        start < len;
-        previous = start, start = end) {
-      end = scanner.tokenEnd(start);
-      // The tokenized string always ends with \n so we can usually look at s.charAt(end) without
-      // worrying about going past the end of the string.
-      switch (s.charAt(start)) {
-        case '(':
-          parens++;
-          break;
-        case ')':
-          parens--;
-          break;
-        case '{':
-          braces++;
-          break;
-        case '}':
-          braces--;
-          break;
-        case ' ':
-          // This token is a string of consecutive spaces that is not at the start of a line.
-          // Consecutive spaces at the start of a line are attached to the previous newline, and
-          // we don't expect the first line to start with spaces. So we are going to compress this
-          // into just one space, and we are going to delete it entirely if it follows '(' or
-          // precedes a newline or one of the punctuation characters here.
-          if (s.charAt(previous) != '(' && "\n.,;)".indexOf(s.charAt(end)) < 0) {
-            out.append(' ');
-          }
-          continue;
-        case '\n':
-          // This token is a newline plus any following spaces (the indentation of the next line).
-          // If it is followed by something other than a newline then we will output it. Otherwise,
-          // it is part of a sequence of newlines but it is not the last one. If this is a context
-          // where we delete blank lines, or if this is not the first new line in the sequence, or
-          // if we are at the start of the file, we will delete this one. Otherwise we will output a
-          // single newline with no following indentation. Contexts where we delete blank lines are
-          // inside parentheses or inside more than one set of braces.
-          if (end < len && s.charAt(end) != '\n') {
-            if (out.length() == 0) {
-              // Omit newlines at the very start of the file.
-              start++;
-            }
-            break; // Output the newline and its following indentation.
-          }
-          if (parens == 0 && braces < 2 && s.charAt(previous) != '\n' && out.length() > 0) {
-            out.append('\n');
-          }
-          continue;
-        default:
-          break;
+    Reformatter reformatter = new Reformatter(out);
+    try {
+      for (int start = 0, end; start < s.length(); start = end) {
+        end = scanner.tokenEnd(start);
+        reformatter.token(s, start, end);
       }
-      out.append(s, start, end);
+      reformatter.finish();
+    } catch (IOException e) {
+      // A StringBuilder doesn't throw IOException.
+      throw new AssertionError(e);
     }
     return out.toString();
   }
+
+  /**
+   * Adds the token from {@code start} to {@code end} in {@code s}. The token must be nonempty, and
+   * it must be a complete token as defined by {@link JavaScanner}, except that a class name
+   * respelled by {@link TypeEncoder} can be a single token.
+   */
+  void token(String s, int start, int end) throws IOException {
+    if (pendingSource == null) {
+      previous = s.charAt(start);
+    } else {
+      process(s.charAt(start));
+    }
+    pendingSource = s;
+    pendingStart = start;
+    pendingEnd = end;
+  }
+
+  /**
+   * Processes the last token and writes any remaining output. The last token must be a newline,
+   * which it always is if the text was scanned by {@link JavaScanner}.
+   */
+  void finish() throws IOException {
+    if (pendingSource != null) {
+      // There is nothing after the final newline, which we treat the same as another newline.
+      process('\n');
+      pendingSource = null;
+    }
+    flushRun();
+  }
+
+  private void process(char next) throws IOException {
+    char first = pendingSource.charAt(pendingStart);
+    process(first, next);
+    previous = first;
+  }
+
+  private void process(char first, char next) throws IOException {
+    int start = pendingStart;
+    switch (first) {
+      case '(':
+        parens++;
+        break;
+      case ')':
+        parens--;
+        break;
+      case '{':
+        braces++;
+        break;
+      case '}':
+        braces--;
+        break;
+      case ' ':
+        // This token is a string of consecutive spaces that is not at the start of a line.
+        // Consecutive spaces at the start of a line are attached to the previous newline, and
+        // we don't expect the first line to start with spaces. So we are going to compress this
+        // into just one space, and we are going to delete it entirely if it follows '(' or
+        // precedes a newline or one of the punctuation characters here.
+        if (previous != '(' && "\n.,;)".indexOf(next) < 0) {
+          write(' ');
+        }
+        return;
+      case '\n':
+        // This token is a newline plus any following spaces (the indentation of the next line).
+        // If it is followed by something other than a newline then we will output it. Otherwise,
+        // it is part of a sequence of newlines but it is not the last one. If this is a context
+        // where we delete blank lines, or if this is not the first new line in the sequence, or
+        // if we are at the start of the file, we will delete this one. Otherwise we will output a
+        // single newline with no following indentation. Contexts where we delete blank lines are
+        // inside parentheses or inside more than one set of braces.
+        if (next != '\n') {
+          if (wroteNothing) {
+            // Omit newlines at the very start of the file.
+            start++;
+          }
+          break; // Output the newline and its following indentation.
+        }
+        if (parens == 0 && braces < 2 && previous != '\n' && !wroteNothing) {
+          write('\n');
+        }
+        return;
+      default:
+        break;
+    }
+    copy(pendingSource, start, pendingEnd);
+  }
+
+  private void copy(String s, int start, int end) throws IOException {
+    if (start == end) {
+      return;
+    }
+    wroteNothing = false;
+    if (s == runSource && start == runEnd) {
+      runEnd = end;
+    } else {
+      flushRun();
+      runSource = s;
+      runStart = start;
+      runEnd = end;
+    }
+  }
+
+  private void write(char c) throws IOException {
+    flushRun();
+    out.append(c);
+    wroteNothing = false;
+  }
+
+  private void flushRun() throws IOException {
+    if (runSource != null) {
+      if (out instanceof Writer) {
+        ((Writer) out).write(runSource, runStart, runEnd - runStart);
+      } else {
+        out.append(runSource, runStart, runEnd);
+      }
+      runSource = null;
+    }
+  }
 }
@@ -27,14 +27,19 @@ import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.ServiceConfigurationError;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A replacement for {@link java.util.ServiceLoader} that avoids certain long-standing bugs. This
  * simpler implementation does not bother with lazy loading but returns all the service
  * implementations in one list. It makes sure that {@link URLConnection#setUseCaches} is called to
- * turn off jar caching, since that tends to lead to problems in versions before JDK 9.
+ * turn off jar caching, since that tends to lead to problems in versions before JDK 9. It does
+ * remember which implementations each class loader provides, though, so that the {@code
+ * META-INF/services} files are only read once per loader.
  *
  * @see <a href="https://github.com/google/auto/issues/718">Issue #718</a>
  * @see <a href="https://bugs.openjdk.java.net/browse/JDK-8156014">JDK-8156014</a>
@@ -42,7 +47,56 @@ import java.util.ServiceConfigurationError;
 public final class SimpleServiceLoader {
   private SimpleServiceLoader() {}
 
+  /**
+   * The provider class names found for each service, keyed by the loader used to find them. Keys
+   * are weak so that a cached loader can still be garbage-collected; the values only contain
+   * strings, so they do not keep the loader alive either.
+   */
+  private static final Map<ClassLoader, Map<String, ImmutableList<String>>> PROVIDER_NAMES =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  /**
+   * Returns a new instance of each provider of {@code service} that is registered in a {@code
+   * META-INF/services} file visible to {@code loader}. The files are only read the first time a
+   * given service is loaded with a given loader; after that, the provider class names are
+   * remembered, which is significant when the same loader is used by many compilations in a
+   * long-lived compiler process.
+   */
   public static <T> ImmutableList<T> load(Class<? extends T> service, ClassLoader loader) {
+    ImmutableList.Builder<T> providers = ImmutableList.builder();
+    for (String className : providerNames(service, loader)) {
+      Class<?> c;
+      try {
+        c = Class.forName(className, false, loader);
+      } catch (ClassNotFoundException e) {
+        throw new ServiceConfigurationError("Could not load " + className, e);
+      }
+      if (!service.isAssignableFrom(c)) {
+        throw new ServiceConfigurationError(
+            "Class " + className + " is not assignable to " + service.getName());
+      }
+      try {
+        Object provider = c.getConstructor().newInstance();
+        providers.add(service.cast(provider));
+      } catch (ReflectiveOperationException e) {
+        throw new ServiceConfigurationError("Could not construct " + className, e);
+      }
+    }
+    return providers.build();
+  }
+
+  private static ImmutableList<String> providerNames(Class<?> service, ClassLoader loader) {
+    Map<String, ImmutableList<String>> namesForLoader =
+        PROVIDER_NAMES.computeIfAbsent(loader, k -> new ConcurrentHashMap<>());
+    ImmutableList<String> names = namesForLoader.get(service.getName());
+    if (names == null) {
+      names = readProviderNames(service, loader);
+      namesForLoader.put(service.getName(), names);
+    }
+    return names;
+  }
+
+  private static ImmutableList<String> readProviderNames(Class<?> service, ClassLoader loader) {
     String resourceName = "META-INF/services/" + service.getName();
     List<URL> resourceUrls;
     try {
@@ -50,48 +104,29 @@ public final class SimpleServiceLoader {
     } catch (IOException e) {
       throw new ServiceConfigurationError("Could not look up " + resourceName, e);
     }
-    ImmutableList.Builder<T> providers = ImmutableList.builder();
+    ImmutableList.Builder<String> names = ImmutableList.builder();
     for (URL resourceUrl : resourceUrls) {
       try {
-        providers.addAll(providersFromUrl(resourceUrl, service, loader));
+        names.addAll(providerNamesFromUrl(resourceUrl));
       } catch (IOException e) {
         throw new ServiceConfigurationError("Could not read " + resourceUrl, e);
       }
     }
-    return providers.build();
+    return names.build();
   }
 
-  private static <T> ImmutableList<T> providersFromUrl(
-      URL resourceUrl, Class<T> service, ClassLoader loader) throws IOException {
-    ImmutableList.Builder<T> providers = ImmutableList.builder();
+  private static ImmutableList<String> providerNamesFromUrl(URL resourceUrl) throws IOException {
     URLConnection urlConnection = resourceUrl.openConnection();
     urlConnection.setUseCaches(false);
     try (InputStream in = urlConnection.getInputStream();
         BufferedReader reader =
             new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
-      for (String line : reader.lines().collect(toList())) {
-        Optional<String> maybeClassName = parseClassName(line);
-        if (maybeClassName.isPresent()) {
-          String className = maybeClassName.get();
-          Class<?> c;
-          try {
-            c = Class.forName(className, false, loader);
-          } catch (ClassNotFoundException e) {
-            throw new ServiceConfigurationError("Could not load " + className, e);
-          }
-          if (!service.isAssignableFrom(c)) {
-            throw new ServiceConfigurationError(
-                "Class " + className + " is not assignable to " + service.getName());
-          }
-          try {
-            Object provider = c.getConstructor().newInstance();
-            providers.add(service.cast(provider));
-          } catch (ReflectiveOperationException e) {
-            throw new ServiceConfigurationError("Could not construct " + className, e);
-          }
-        }
-      }
-      return providers.build();
+      return ImmutableList.copyOf(
+          reader.lines()
+              .map(SimpleServiceLoader::parseClassName)
+              .filter(Optional::isPresent)
+              .map(Optional::get)
+              .collect(toList()));
     }
   }
 
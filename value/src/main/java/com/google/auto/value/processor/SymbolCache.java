@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.value.processor;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+
+/**
+ * A cache of the results of {@link Elements#getTypeElement}, keyed by qualified name. The same
+ * handful of classes, such as {@code java.lang.Object} or {@code java.io.Serializable}, are looked
+ * up for every class we generate, and so are the names that {@link TypeSimplifier} checks for
+ * clashes with {@code java.lang} classes, most of which do not exist. Looking up a class that does
+ * not exist is particularly expensive with javac, so we remember those results too.
+ *
+ * <p>Elements obtained in one round of annotation processing are not guaranteed to be usable in
+ * the next, so the cache must be {@linkplain #clear cleared} at the start of every round.
+ *
+ * <p>This class is public, and only uses JDK types in its public API, because benchmarks read its
+ * counters and the processor jar relocates its other dependencies.
+ */
+public final class SymbolCache {
+  private final Elements elementUtils;
+  private final Map<String, Optional<TypeElement>> typeElements = new HashMap<>();
+  private long hits;
+  private long misses;
+
+  SymbolCache(Elements elementUtils) {
+    this.elementUtils = elementUtils;
+  }
+
+  /**
+   * Returns the same as {@code elementUtils.getTypeElement(qualifiedName)}, which may be null, but
+   * only asks {@code elementUtils} the first time a given name is seen in the current round.
+   */
+  TypeElement getTypeElement(String qualifiedName) {
+    Optional<TypeElement> typeElement = typeElements.get(qualifiedName);
+    if (typeElement == null) {
+      misses++;
+      typeElement = Optional.ofNullable(elementUtils.getTypeElement(qualifiedName));
+      typeElements.put(qualifiedName, typeElement);
+    } else {
+      hits++;
+    }
+    return typeElement.orElse(null);
+  }
+
+  /**
+   * Returns the type of the class with the given name, which must exist. This is the type with the
+   * class's own type parameters as arguments, as returned by {@link TypeElement#asType()}.
+   */
+  TypeMirror getTypeMirror(String qualifiedName) {
+    TypeElement typeElement = getTypeElement(qualifiedName);
+    checkState(typeElement != null, "Could not find class %s", qualifiedName);
+    return typeElement.asType();
+  }
+
+  /** Forgets all the cached lookups. This must be called at the start of every round. */
+  void clear() {
+    typeElements.clear();
+  }
+
+  /** Returns the number of lookups so far that were answered from the cache. */
+  public long hits() {
+    return hits;
+  }
+
+  /** Returns the number of lookups so far that had to ask {@link Elements#getTypeElement}. */
+  public long misses() {
+    return misses;
+  }
+}
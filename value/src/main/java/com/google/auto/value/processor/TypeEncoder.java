@@ -23,7 +23,10 @@ import com.google.auto.common.MoreElements;
 import com.google.auto.common.MoreTypes;
 import com.google.auto.value.processor.MissingTypes.MissingTypeException;
 import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.OptionalInt;
 import java.util.Set;
 import javax.annotation.processing.ProcessingEnvironment;
@@ -136,10 +139,28 @@ final class TypeEncoder {
 
   static String decode(
       String text, Elements elementUtils, Types typeUtils, String pkg, TypeMirror baseType) {
-    TypeRewriter typeRewriter = new TypeRewriter(text, elementUtils, typeUtils, pkg, baseType);
+    TypeRewriter typeRewriter =
+        new TypeRewriter(text, new SymbolCache(elementUtils), typeUtils, pkg, baseType);
     return typeRewriter.rewrite();
   }
 
+  /**
+   * Returns a {@link TypeRewriter} for the given text, having already determined which classes it
+   * references and what imports it needs. The caller can then use {@link
+   * TypeRewriter#rewriteReformatted} to write the decoded and reformatted text directly to the
+   * generated source file. The other parameters have the same meaning as for {@link #decode}.
+   *
+   * @param symbols the cache through which referenced classes are looked up.
+   */
+  static TypeRewriter rewriter(
+      String text,
+      SymbolCache symbols,
+      ProcessingEnvironment processingEnv,
+      String packageName,
+      TypeMirror baseType) {
+    return new TypeRewriter(text, symbols, processingEnv.getTypeUtils(), packageName, baseType);
+  }
+
   private static String className(DeclaredType declaredType) {
     return MoreElements.asType(declaredType.asElement()).getQualifiedName().toString();
   }
@@ -392,43 +413,66 @@ final class TypeEncoder {
     }
   }
 
-  private static class TypeRewriter {
+  /**
+   * Rewrites text containing encoded class names. Constructing the rewriter scans the text once to
+   * find the referenced classes and the {@code `import`} marker, computes the imports, and works
+   * out how each class name should be spelled. Then {@link #rewrite} returns the decoded text, or
+   * {@link #rewriteReformatted} writes the decoded text through a {@link Reformatter}, so the text
+   * is only scanned once more. Only the constructor uses the compiler, so the rewriting can happen
+   * on another thread.
+   */
+  static final class TypeRewriter {
     private final String text;
     private final int textLength;
     private final JavaScanner scanner;
-    private final Elements elementUtils;
-    private final Types typeUtils;
-    private final String packageName;
-    private final TypeMirror baseType;
+    private final SymbolCache symbols;
+    private final Map<String, DeclaredType> classes = new HashMap<>();
+    private final Map<String, String> spellings = new HashMap<>();
+    private final String importStatements;
+    private final OptionalInt importMarker;
 
     TypeRewriter(
-        String text, Elements elementUtils, Types typeUtils, String pkg, TypeMirror baseType) {
+        String text, SymbolCache symbols, Types typeUtils, String pkg, TypeMirror baseType) {
       this.text = text;
       this.textLength = text.length();
       this.scanner = new JavaScanner(text);
-      this.elementUtils = elementUtils;
-      this.typeUtils = typeUtils;
-      this.packageName = pkg;
-      this.baseType = baseType;
+      this.symbols = symbols;
+      // Scan the text to determine what classes are referenced, and where the imports go.
+      Set<TypeMirror> referencedClasses = new TypeMirrorSet();
+      OptionalInt importMarker = OptionalInt.empty();
+      for (int token = 0; token < textLength; token = scanner.tokenEnd(token)) {
+        if (text.charAt(token) == '`') {
+          if (text.startsWith("`import`", token)) {
+            if (!importMarker.isPresent()) {
+              importMarker = OptionalInt.of(token);
+            }
+          } else {
+            referencedClasses.add(classForName(classNameAt(token)));
+          }
+        }
+      }
+      this.importMarker = importMarker;
+      // Make a type simplifier based on these referenced types, and use it to work out the imports
+      // and the spelling of each class.
+      TypeSimplifier typeSimplifier =
+          new TypeSimplifier(symbols, typeUtils, pkg, referencedClasses, baseType);
+      StringBuilder imports = new StringBuilder();
+      for (String toImport : typeSimplifier.typesToImport()) {
+        imports.append("import ").append(toImport).append(";\n");
+      }
+      this.importStatements = imports.toString();
+      classes.forEach(
+          (className, type) -> spellings.put(className, typeSimplifier.simplifiedClassName(type)));
     }
 
     String rewrite() {
-      // Scan the text to determine what classes are referenced.
-      Set<TypeMirror> referencedClasses = findReferencedClasses();
-      // Make a type simplifier based on these referenced types.
-      TypeSimplifier typeSimplifier =
-          new TypeSimplifier(elementUtils, typeUtils, packageName, referencedClasses, baseType);
-
-      StringBuilder output = new StringBuilder();
+      StringBuilder output = new StringBuilder(textLength);
       int copyStart;
 
       // Replace the `import` token with the import statements, if it is present.
-      OptionalInt importMarker = findImportMarker();
       if (importMarker.isPresent()) {
         output.append(text, 0, importMarker.getAsInt());
-        for (String toImport : typeSimplifier.typesToImport()) {
-          output.append("import ").append(toImport).append(";\n");
-        }
+        output.append(importStatements);
         copyStart = scanner.tokenEnd(importMarker.getAsInt());
       } else {
         copyStart = 0;
@@ -439,7 +483,7 @@ final class TypeEncoder {
       for (token = copyStart; token < textLength; token = scanner.tokenEnd(token)) {
         if (text.charAt(token) == '`') {
           output.append(text, copyStart, token);
-          decode(output, typeSimplifier, token);
+          output.append(decode(token));
           copyStart = scanner.tokenEnd(token);
         }
       }
@@ -447,27 +491,61 @@ final class TypeEncoder {
       return output.toString();
     }
 
-    private Set<TypeMirror> findReferencedClasses() {
-      Set<TypeMirror> classes = new TypeMirrorSet();
-      for (int token = 0; token < textLength; token = scanner.tokenEnd(token)) {
-        if (text.charAt(token) == '`' && !text.startsWith("`import`", token)) {
-          String className = classNameAt(token);
-          classes.add(classForName(className));
+    /** Returns the decoded text, reformatted as {@link Reformatter#fixup} would. */
+    String rewriteReformatted() {
+      StringBuilder out = new StringBuilder();
+      try {
+        rewriteReformatted(out);
+      } catch (IOException e) {
+        throw new AssertionError(e); // StringBuilder does not throw IOException
+      }
+      return out.toString();
+    }
+
+    /**
+     * Writes the decoded text to {@code out}, reformatted as {@link Reformatter#fixup} would. This
+     * has the same result as {@code out.append(Reformatter.fixup(rewrite()))}, but without
+     * building the intermediate strings.
+     */
+    void rewriteReformatted(Appendable out) throws IOException {
+      Reformatter reformatter = new Reformatter(out);
+      // The reformatter needs the text to end with a newline, which the scanner ensures.
+      String text = scanner.string();
+      int importAt = importMarker.orElse(-1);
+      for (int token = 0, end; token < text.length(); token = end) {
+        end = scanner.tokenEnd(token);
+        if (token == importAt) {
+          String imports = importStatements;
+          JavaScanner importScanner = new JavaScanner(imports);
+          for (int i = 0, j; i < imports.length(); i = j) {
+            j = importScanner.tokenEnd(i);
+            reformatter.token(imports, i, j);
+          }
+        } else if (text.charAt(token) == '`') {
+          String decoded = decode(token);
+          if (!decoded.isEmpty()) {
+            reformatter.token(decoded, 0, decoded.length());
+          }
+        } else {
+          reformatter.token(text, token, end);
         }
       }
-      return classes;
+      reformatter.finish();
     }
 
     private DeclaredType classForName(String className) {
-      TypeElement typeElement = elementUtils.getTypeElement(className);
-      checkState(typeElement != null, "Could not find referenced class %s", className);
-      return MoreTypes.asDeclared(typeElement.asType());
+      DeclaredType type = classes.get(className);
+      if (type == null) {
+        TypeElement typeElement = symbols.getTypeElement(className);
+        checkState(typeElement != null, "Could not find referenced class %s", className);
+        type = MoreTypes.asDeclared(typeElement.asType());
+        classes.put(className, type);
+      }
+      return type;
     }
 
-    private void decode(StringBuilder output, TypeSimplifier typeSimplifier, int token) {
-      String className = classNameAt(token);
-      DeclaredType type = classForName(className);
-      String simplified = typeSimplifier.simplifiedClassName(type);
+    private String decode(int token) {
+      String simplified = spellings.get(classNameAt(token));
       int dot;
       switch (text.charAt(token + 1)) {
         case '«':
@@ -476,25 +554,13 @@ final class TypeEncoder {
           // or "java.util.Map.@Nullable Entry".
           // If there's no dot, then we want nothing here, for "@Nullable Map".
           dot = simplified.lastIndexOf('.');
-          output.append(simplified.substring(0, dot + 1)); // correct even if dot == -1
-          break;
+          return simplified.substring(0, dot + 1); // correct even if dot == -1
         case '»':
           dot = simplified.lastIndexOf('.');
-          output.append(simplified.substring(dot + 1)); // correct even if dot == -1
-          break;
+          return simplified.substring(dot + 1); // correct even if dot == -1
         default:
-          output.append(simplified);
-          break;
-      }
-    }
-
-    private OptionalInt findImportMarker() {
-      for (int token = 0; token < textLength; token = scanner.tokenEnd(token)) {
-        if (text.startsWith("`import`", token)) {
-          return OptionalInt.of(token);
-        }
+          return simplified;
       }
-      return OptionalInt.empty();
     }
 
     private String classNameAt(int token) {
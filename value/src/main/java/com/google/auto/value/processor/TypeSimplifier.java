@@ -41,7 +41,6 @@ import javax.lang.model.type.TypeVariable;
 import javax.lang.model.type.TypeVisitor;
 import javax.lang.model.type.WildcardType;
 import javax.lang.model.util.ElementFilter;
-import javax.lang.model.util.Elements;
 import javax.lang.model.util.SimpleTypeVisitor8;
 import javax.lang.model.util.Types;
 
@@ -71,8 +70,8 @@ final class TypeSimplifier {
   /**
    * Makes a new simplifier for the given package and set of types.
    *
-   * @param elementUtils the result of {@code ProcessingEnvironment.getElementUtils()} for the
-   *     current annotation processing environment.
+   * @param symbols the cache through which to look up classes in the current annotation
+   *     processing environment.
    * @param typeUtils the result of {@code ProcessingEnvironment.getTypeUtils()} for the current
    *     annotation processing environment.
    * @param packageName the name of the package from which classes will be referenced. Classes that
@@ -85,7 +84,7 @@ final class TypeSimplifier {
    *     undefined).
    */
   TypeSimplifier(
-      Elements elementUtils,
+      SymbolCache symbols,
       Types typeUtils,
       String packageName,
       Set<TypeMirror> types,
@@ -96,7 +95,7 @@ final class TypeSimplifier {
     }
     Set<TypeMirror> topLevelTypes = topLevelTypes(typeUtils, typesPlusBase);
     Set<TypeMirror> defined = nonPrivateDeclaredTypes(typeUtils, base);
-    this.imports = findImports(elementUtils, typeUtils, packageName, topLevelTypes, defined);
+    this.imports = findImports(symbols, typeUtils, packageName, topLevelTypes, defined);
   }
 
   /**
@@ -201,7 +200,7 @@ final class TypeSimplifier {
    *     whether the type should be imported, and how the type should be spelled in the source code.
    */
   private static Map<String, Spelling> findImports(
-      Elements elementUtils,
+      SymbolCache symbols,
       Types typeUtils,
       String codePackageName,
       Set<TypeMirror> referenced,
@@ -223,7 +222,7 @@ final class TypeSimplifier {
         spelling = fullName;
       } else if (pkg.equals("java.lang")) {
         importIt = false;
-        spelling = javaLangSpelling(elementUtils, codePackageName, typeElement);
+        spelling = javaLangSpelling(symbols, codePackageName, typeElement);
       } else if (pkg.equals(codePackageName)) {
         importIt = false;
         spelling = fullName.substring(pkg.isEmpty() ? 0 : pkg.length() + 1);
@@ -246,11 +245,11 @@ final class TypeSimplifier {
    * is not enough. We have to look to see if the class exists.
    */
   private static String javaLangSpelling(
-      Elements elementUtils, String codePackageName, TypeElement typeElement) {
+      SymbolCache symbols, String codePackageName, TypeElement typeElement) {
     // If this is java.lang.Thread.State or the like, we have to look for a clash with Thread.
     TypeElement topLevelType = topLevelType(typeElement);
     TypeElement clash =
-        elementUtils.getTypeElement(codePackageName + "." + topLevelType.getSimpleName());
+        symbols.getTypeElement(codePackageName + "." + topLevelType.getSimpleName());
     String fullName = typeElement.getQualifiedName().toString();
     return (clash == null) ? fullName.substring("java.lang.".length()) : fullName;
   }
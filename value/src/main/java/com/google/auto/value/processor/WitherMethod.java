@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.value.processor;
+
+import com.google.auto.value.processor.AutoValueOrOneOfProcessor.Property;
+import javax.lang.model.element.ExecutableElement;
+
+/**
+ * An abstract method like {@code withFoo(String foo)} on an {@code @AutoValue} class, which returns
+ * a copy of {@code this} where the property {@code foo} has a new value.
+ *
+ * <p>Like {@link SimpleMethod}, this class and its getters are public so that they can be
+ * referenced from templates.
+ */
+public final class WitherMethod {
+  private final String access;
+  private final String name;
+  private final Property property;
+
+  WitherMethod(ExecutableElement method, Property property) {
+    this.access = SimpleMethod.access(method);
+    this.name = method.getSimpleName().toString();
+    this.property = property;
+  }
+
+  public String getAccess() {
+    return access;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /** The property that this method sets in the copy. */
+  public Property getProperty() {
+    return property;
+  }
+
+  /** The name that a wither method for the property with the given name would have. */
+  static String witherName(String propertyName) {
+    return "with" + Character.toUpperCase(propertyName.charAt(0)) + propertyName.substring(1);
+  }
+}
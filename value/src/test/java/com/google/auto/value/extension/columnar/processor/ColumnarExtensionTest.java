@@ -0,0 +1,338 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.value.extension.columnar.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static com.google.testing.compile.Compiler.javac;
+import static org.junit.Assert.assertThrows;
+
+import com.google.auto.value.AutoValue;
+import com.google.auto.value.extension.columnar.Columnar;
+import com.google.auto.value.processor.AutoValueProcessor;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.JavaFileObjects;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.FileObject;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class ColumnarExtensionTest {
+  @Columnar
+  @AutoValue
+  abstract static class Event {
+    abstract long id();
+
+    abstract boolean flag();
+
+    @Nullable
+    abstract String name();
+
+    abstract List<String> tags();
+
+    static Event create(long id, boolean flag, @Nullable String name, List<String> tags) {
+      return new AutoValue_ColumnarExtensionTest_Event(id, flag, name, tags);
+    }
+
+    static Builder builder() {
+      return new AutoValue_ColumnarExtensionTest_Event.Builder();
+    }
+
+    @AutoValue.Builder
+    abstract static class Builder {
+      abstract Builder id(long x);
+
+      abstract Builder flag(boolean x);
+
+      abstract Builder name(String x);
+
+      abstract Builder tags(List<String> x);
+
+      abstract Event build();
+    }
+  }
+
+  @Test
+  public void addAndGet() {
+    ColumnarExtensionTest_EventColumns columns = new ColumnarExtensionTest_EventColumns(1);
+    Event first = Event.builder().id(23).flag(true).name("foo").tags(ImmutableList.of()).build();
+    Event second = Event.create(17, false, null, ImmutableList.of("bar", "baz"));
+    columns.add(first);
+    columns.add(second);
+    columns.add(first);
+
+    assertThat(columns.size()).isEqualTo(3);
+    assertThat(columns.get(0)).isEqualTo(first);
+    assertThat(columns.get(1)).isEqualTo(second);
+    assertThat(columns.get(2)).isEqualTo(first);
+    assertThat(columns.id(1)).isEqualTo(17);
+    assertThat(columns.flag(0)).isTrue();
+    assertThat(columns.name(1)).isNull();
+    assertThat(columns.tags(1)).containsExactly("bar", "baz").inOrder();
+  }
+
+  @Test
+  public void columns() {
+    ColumnarExtensionTest_EventColumns columns = new ColumnarExtensionTest_EventColumns();
+    long expectedSum = 0;
+    for (int i = 0; i < 100; i++) {
+      columns.add(Event.create(i, i % 2 == 0, null, ImmutableList.of()));
+      expectedSum += i;
+    }
+    long[] ids = columns.idColumn();
+    boolean[] flags = columns.flagColumn();
+    long sum = 0;
+    int flagged = 0;
+    for (int i = 0; i < columns.size(); i++) {
+      sum += ids[i];
+      flagged += flags[i] ? 1 : 0;
+    }
+    assertThat(sum).isEqualTo(expectedSum);
+    assertThat(flagged).isEqualTo(50);
+  }
+
+  @Test
+  public void indexOutOfBounds() {
+    ColumnarExtensionTest_EventColumns columns = new ColumnarExtensionTest_EventColumns();
+    columns.add(Event.create(1, true, null, ImmutableList.of()));
+    assertThrows(IndexOutOfBoundsException.class, () -> columns.get(1));
+    assertThrows(IndexOutOfBoundsException.class, () -> columns.id(-1));
+    assertThrows(
+        IllegalArgumentException.class, () -> new ColumnarExtensionTest_EventColumns(-1));
+  }
+
+  @Test
+  public void builderStillChecksForNull() {
+    assertThrows(NullPointerException.class, () -> Event.create(1, true, null, null));
+  }
+
+  @Test
+  public void genericClass() {
+    JavaFileObject javaFileObject =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Baz",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "import com.google.auto.value.extension.columnar.Columnar;",
+            "",
+            "@AutoValue",
+            "@Columnar",
+            "abstract class Baz<T> {",
+            "  abstract T foo();",
+            "}");
+    Compilation compilation =
+        javac().withProcessors(new AutoValueProcessor()).compile(javaFileObject);
+    assertThat(compilation)
+        .hadErrorContaining("@Columnar cannot be used on a generic class")
+        .inFile(javaFileObject)
+        .onLineContaining("class Baz");
+  }
+
+  @Test
+  public void arrayProperty() {
+    JavaFileObject javaFileObject =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Baz",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "import com.google.auto.value.extension.columnar.Columnar;",
+            "",
+            "@AutoValue",
+            "@Columnar",
+            "abstract class Baz {",
+            "  @SuppressWarnings(\"mutable\")",
+            "  abstract int[] samples();",
+            "  @SuppressWarnings(\"mutable\")",
+            "  abstract String[][] names();",
+            "}");
+    Compilation compilation =
+        javac().withProcessors(new AutoValueProcessor()).compile(javaFileObject);
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThat(compilation)
+        .generatedSourceFile("foo.bar.BazColumns")
+        .contentsAsUtf8String()
+        .contains("this.samples = new int[initialCapacity][];");
+    assertThat(compilation)
+        .generatedSourceFile("foo.bar.BazColumns")
+        .contentsAsUtf8String()
+        .contains("this.names = new String[initialCapacity][][];");
+  }
+
+  @Test
+  public void reservedMethodName() {
+    JavaFileObject javaFileObject =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Baz",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "import com.google.auto.value.extension.columnar.Columnar;",
+            "",
+            "@AutoValue",
+            "@Columnar",
+            "abstract class Baz {",
+            "  abstract String get();",
+            "}");
+    Compilation compilation =
+        javac().withProcessors(new AutoValueProcessor()).compile(javaFileObject);
+    assertThat(compilation)
+        .hadErrorContaining("A @Columnar class cannot have a property method called get")
+        .inFile(javaFileObject)
+        .onLineContaining("get()");
+  }
+
+  @Test
+  public void columnsClassHasOriginatingElement() {
+    // Gradle's isolating mode needs each generated file to have exactly one originating element.
+    JavaFileObject javaFileObject =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Baz",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "import com.google.auto.value.extension.columnar.Columnar;",
+            "",
+            "@AutoValue",
+            "@Columnar",
+            "abstract class Baz {",
+            "  abstract int foo();",
+            "}");
+    ListMultimap<String, String> originatingElements = ArrayListMultimap.create();
+    AutoValueProcessor processor =
+        new AutoValueProcessor() {
+          @Override
+          public synchronized void init(ProcessingEnvironment processingEnv) {
+            super.init(new RecordingProcessingEnvironment(processingEnv, originatingElements));
+          }
+        };
+    Compilation compilation = javac().withProcessors(processor).compile(javaFileObject);
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThat(compilation).generatedSourceFile("foo.bar.BazColumns");
+    assertThat(originatingElements.get("foo.bar.BazColumns")).containsExactly("foo.bar.Baz");
+  }
+
+  /**
+   * A {@link ProcessingEnvironment} whose {@link Filer} records the originating elements of each
+   * source file that is created through it.
+   */
+  private static final class RecordingProcessingEnvironment implements ProcessingEnvironment {
+    private final ProcessingEnvironment delegate;
+    private final Filer filer;
+
+    RecordingProcessingEnvironment(
+        ProcessingEnvironment delegate, ListMultimap<String, String> originatingElements) {
+      this.delegate = delegate;
+      this.filer = new RecordingFiler(delegate.getFiler(), originatingElements);
+    }
+
+    @Override
+    public Map<String, String> getOptions() {
+      return delegate.getOptions();
+    }
+
+    @Override
+    public Messager getMessager() {
+      return delegate.getMessager();
+    }
+
+    @Override
+    public Filer getFiler() {
+      return filer;
+    }
+
+    @Override
+    public Elements getElementUtils() {
+      return delegate.getElementUtils();
+    }
+
+    @Override
+    public Types getTypeUtils() {
+      return delegate.getTypeUtils();
+    }
+
+    @Override
+    public SourceVersion getSourceVersion() {
+      return delegate.getSourceVersion();
+    }
+
+    @Override
+    public Locale getLocale() {
+      return delegate.getLocale();
+    }
+  }
+
+  private static final class RecordingFiler implements Filer {
+    private final Filer delegate;
+    private final ListMultimap<String, String> originatingElements;
+
+    RecordingFiler(Filer delegate, ListMultimap<String, String> originatingElements) {
+      this.delegate = delegate;
+      this.originatingElements = originatingElements;
+    }
+
+    @Override
+    public JavaFileObject createSourceFile(CharSequence name, Element... originatingElements)
+        throws IOException {
+      for (Element element : originatingElements) {
+        this.originatingElements.put(name.toString(), element.toString());
+      }
+      return delegate.createSourceFile(name, originatingElements);
+    }
+
+    @Override
+    public JavaFileObject createClassFile(CharSequence name, Element... originatingElements)
+        throws IOException {
+      return delegate.createClassFile(name, originatingElements);
+    }
+
+    @Override
+    public FileObject createResource(
+        JavaFileManager.Location location,
+        CharSequence moduleAndPkg,
+        CharSequence relativeName,
+        Element... originatingElements)
+        throws IOException {
+      return delegate.createResource(location, moduleAndPkg, relativeName, originatingElements);
+    }
+
+    @Override
+    public FileObject getResource(
+        JavaFileManager.Location location, CharSequence moduleAndPkg, CharSequence relativeName)
+        throws IOException {
+      return delegate.getResource(location, moduleAndPkg, relativeName);
+    }
+  }
+}
@@ -25,6 +25,13 @@ import com.google.common.collect.ImmutableList;
 import java.lang.reflect.AnnotatedType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -232,6 +239,57 @@ public class MemoizedTest {
     }
   }
 
+  @AutoValue
+  abstract static class LockFreeValue<T> {
+    private final AtomicInteger primitiveCount = new AtomicInteger();
+    private final AtomicInteger notNullableCount = new AtomicInteger();
+    private final AtomicInteger nullableCount = new AtomicInteger();
+    private final AtomicInteger returnsNullCount = new AtomicInteger();
+    private final AtomicInteger notNullableButReturnsNullCount = new AtomicInteger();
+    private final AtomicInteger hashCodeCount = new AtomicInteger();
+
+    abstract T value();
+
+    @Memoized(lockFree = true)
+    long primitive() {
+      primitiveCount.incrementAndGet();
+      return 23L;
+    }
+
+    @Memoized(lockFree = true)
+    String notNullable() {
+      notNullableCount.incrementAndGet();
+      return "derived " + value();
+    }
+
+    @Memoized(lockFree = true)
+    @javax.annotation.Nullable
+    String nullable() {
+      nullableCount.incrementAndGet();
+      return "nullable derived " + value();
+    }
+
+    @Memoized(lockFree = true)
+    @javax.annotation.Nullable
+    String returnsNull() {
+      returnsNullCount.incrementAndGet();
+      return null;
+    }
+
+    @Memoized(lockFree = true)
+    String notNullableButReturnsNull() {
+      notNullableButReturnsNullCount.incrementAndGet();
+      return null;
+    }
+
+    @Memoized(lockFree = true)
+    @Override
+    public int hashCode() {
+      hashCodeCount.incrementAndGet();
+      return value().hashCode();
+    }
+  }
+
   @Before
   public void setUp() {
     value = new AutoValue_MemoizedTest_Value(
@@ -453,6 +511,83 @@ public class MemoizedTest {
     assertThat(memoizedHashCodeAndFinalEqualsMethod.hashCodeCount).isEqualTo(1);
   }
 
+  @Test
+  public void lockFree() {
+    LockFreeValue<String> lockFreeValue = new AutoValue_MemoizedTest_LockFreeValue<>("string");
+    assertThat(lockFreeValue.primitive()).isEqualTo(23L);
+    assertThat(lockFreeValue.primitive()).isEqualTo(23L);
+    assertThat(lockFreeValue.primitiveCount.get()).isEqualTo(1);
+
+    assertThat(lockFreeValue.notNullable()).isEqualTo("derived string");
+    assertThat(lockFreeValue.notNullable()).isSameInstanceAs(lockFreeValue.notNullable());
+    assertThat(lockFreeValue.notNullableCount.get()).isEqualTo(1);
+
+    assertThat(lockFreeValue.nullable()).isEqualTo("nullable derived string");
+    assertThat(lockFreeValue.nullable()).isSameInstanceAs(lockFreeValue.nullable());
+    assertThat(lockFreeValue.nullableCount.get()).isEqualTo(1);
+
+    assertThat(lockFreeValue.returnsNull()).isNull();
+    assertThat(lockFreeValue.returnsNull()).isNull();
+    assertThat(lockFreeValue.returnsNullCount.get()).isEqualTo(1);
+
+    assertThat(lockFreeValue.hashCode()).isEqualTo("string".hashCode());
+    assertThat(lockFreeValue.hashCode()).isEqualTo("string".hashCode());
+    assertThat(lockFreeValue.hashCodeCount.get()).isEqualTo(1);
+
+    // Memoizing each value did not disturb the flags of the others.
+    assertThat(lockFreeValue.primitiveCount.get()).isEqualTo(1);
+    assertThat(lockFreeValue.nullableCount.get()).isEqualTo(1);
+    assertThat(lockFreeValue.returnsNullCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void lockFree_notNullableButReturnsNull() {
+    LockFreeValue<String> lockFreeValue = new AutoValue_MemoizedTest_LockFreeValue<>("string");
+    try {
+      lockFreeValue.notNullableButReturnsNull();
+      fail();
+    } catch (NullPointerException expected) {
+      assertThat(expected)
+          .hasMessageThat()
+          .isEqualTo("notNullableButReturnsNull() cannot return null");
+    }
+    assertThat(lockFreeValue.notNullableButReturnsNullCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void lockFree_concurrent() throws Exception {
+    int threadCount = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    try {
+      for (int i = 0; i < 100; i++) {
+        LockFreeValue<Integer> lockFreeValue = new AutoValue_MemoizedTest_LockFreeValue<>(i);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+          futures.add(
+              executor.submit(
+                  () -> {
+                    start.await();
+                    assertThat(lockFreeValue.primitive()).isEqualTo(23L);
+                    assertThat(lockFreeValue.returnsNull()).isNull();
+                    return lockFreeValue.nullable();
+                  }));
+        }
+        start.countDown();
+        for (Future<String> future : futures) {
+          assertThat(future.get()).isEqualTo("nullable derived " + i);
+        }
+        // Once every thread has finished, the value is memoized.
+        assertThat(lockFreeValue.nullable()).isSameInstanceAs(lockFreeValue.nullable());
+        int nullableCount = lockFreeValue.nullableCount.get();
+        lockFreeValue.nullable();
+        assertThat(lockFreeValue.nullableCount.get()).isEqualTo(nullableCount);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   interface TypeEdgeIterable<InputT, ResultT> {}
 
   interface ResourceUri {}
@@ -434,6 +434,220 @@ public class AutoAnnotationCompilationTest {
         .hasSourceEquivalentTo(expectedOutput);
   }
 
+  @Test
+  public void testCached() {
+    JavaFileObject myAnnotationJavaFile =
+        JavaFileObjects.forSourceLines(
+            "com.example.annotations.MyAnnotation",
+            "package com.example.annotations;",
+            "",
+            "public @interface MyAnnotation {",
+            "  String value();",
+            "  int[] ints();",
+            "  int defaultedValue() default 23;",
+            "}");
+    int invariableHash = ("defaultedValue".hashCode() * 127) ^ 23;
+    JavaFileObject annotationFactoryJavaFile =
+        JavaFileObjects.forSourceLines(
+            "com.example.factories.AnnotationFactory",
+            "package com.example.factories;",
+            "",
+            "import com.google.auto.value.AutoAnnotation;",
+            "import com.example.annotations.MyAnnotation;",
+            "import java.util.List;",
+            "",
+            "public class AnnotationFactory {",
+            "  @AutoAnnotation @AutoAnnotation.Cached",
+            "  public static MyAnnotation newMyAnnotation(String value, List<Integer> ints) {",
+            "    return AutoAnnotation_AnnotationFactory_newMyAnnotation.cached(value, ints);",
+            "  }",
+            "}");
+    JavaFileObject expectedOutput =
+        JavaFileObjects.forSourceLines(
+            "com.example.factories.AutoAnnotation_AnnotationFactory_newMyAnnotation",
+            "package com.example.factories;",
+            "",
+            "import com.example.annotations.MyAnnotation;",
+            "import java.util.Arrays;",
+            "import java.util.Collection;",
+            "import java.util.List;",
+            GeneratedImport.importGeneratedAnnotationType(),
+            "",
+            "@Generated(\"" + AutoAnnotationProcessor.class.getName() + "\")",
+            "final class AutoAnnotation_AnnotationFactory_newMyAnnotation",
+            "     implements MyAnnotation {",
+            "  private final String value;",
+            "  private final int[] ints;",
+            "  private static final int defaultedValue = 23;",
+            "  private final int hashCode$;",
+            "  private static final AutoAnnotation_AnnotationFactory_newMyAnnotation[] cache$ =",
+            "      new AutoAnnotation_AnnotationFactory_newMyAnnotation[64];",
+            "",
+            "  AutoAnnotation_AnnotationFactory_newMyAnnotation(",
+            "      String value, List<Integer> ints) {",
+            "    if (value == null) {",
+            "      throw new NullPointerException(\"Null value\");",
+            "    }",
+            "    this.value = value;",
+            "    if (ints == null) {",
+            "      throw new NullPointerException(\"Null ints\");",
+            "    }",
+            "    this.ints = intArrayFromCollection(ints);",
+            "    this.hashCode$ = hashCodeOf$(this.value, this.ints);",
+            "  }",
+            "",
+            "  @Override public Class<? extends MyAnnotation> annotationType() {",
+            "    return MyAnnotation.class;",
+            "  }",
+            "",
+            "  @Override public String value() {",
+            "    return value;",
+            "  }",
+            "",
+            "  @Override public int[] ints() {",
+            "    return ints.clone();",
+            "  }",
+            "",
+            "  @Override public int defaultedValue() {",
+            "    return defaultedValue;",
+            "  }",
+            "",
+            "  @Override public String toString() {",
+            "    StringBuilder sb = new StringBuilder(\"@com.example.annotations.MyAnnotation(\");",
+            "    sb.append(\"value=\");",
+            "    appendQuoted(sb, value);",
+            "    sb.append(\", \");",
+            "    sb.append(\"ints=\");",
+            "    sb.append(Arrays.toString(ints));",
+            "    return sb.append(')').toString();",
+            "  }",
+            "",
+            "  @Override public boolean equals(Object o) {",
+            "    if (o == this) {",
+            "      return true;",
+            "    }",
+            "    if (o instanceof AutoAnnotation_AnnotationFactory_newMyAnnotation",
+            "        && ((AutoAnnotation_AnnotationFactory_newMyAnnotation) o).hashCode$",
+            "            != hashCode$) {",
+            "      return false;",
+            "    }",
+            "    if (o instanceof MyAnnotation) {",
+            "      MyAnnotation that = (MyAnnotation) o;",
+            "      return value.equals(that.value())",
+            "          && Arrays.equals(ints,",
+            "              (that instanceof AutoAnnotation_AnnotationFactory_newMyAnnotation)",
+            "                  ? ((AutoAnnotation_AnnotationFactory_newMyAnnotation) that).ints",
+            "                  : that.ints())",
+            "          && (defaultedValue == that.defaultedValue());",
+            "    }",
+            "    return false;",
+            "  }",
+            "",
+            "  @Override public int hashCode() {",
+            "    return hashCode$;",
+            "  }",
+            "",
+            "  private AutoAnnotation_AnnotationFactory_newMyAnnotation(",
+            "      int hashCode$, String value, int[] ints) {",
+            "    this.hashCode$ = hashCode$;",
+            "    this.value = value;",
+            "    this.ints = ints;",
+            "  }",
+            "",
+            "  static AutoAnnotation_AnnotationFactory_newMyAnnotation cached(",
+            "      String value, List<Integer> ints) {",
+            "    if (value == null) {",
+            "      throw new NullPointerException(\"Null value\");",
+            "    }",
+            "    if (ints == null) {",
+            "      throw new NullPointerException(\"Null ints\");",
+            "    }",
+            "    int[] ints$ = intArrayFromCollection(ints);",
+            "    int hashCode$ = hashCodeOf$(value, ints$);",
+            "    int index$ = (hashCode$ ^ (hashCode$ >>> 16)) & (cache$.length - 1);",
+            "    AutoAnnotation_AnnotationFactory_newMyAnnotation instance$ = cache$[index$];",
+            "    if (instance$ == null",
+            "        || instance$.hashCode$ != hashCode$",
+            "        || !value.equals(instance$.value)",
+            "        || !Arrays.equals(ints$, instance$.ints)) {",
+            "      instance$ = new AutoAnnotation_AnnotationFactory_newMyAnnotation(",
+            "          hashCode$, value, ints$);",
+            "      cache$[index$] = instance$;",
+            "    }",
+            "    return instance$;",
+            "  }",
+            "",
+            "  private static int hashCodeOf$(String value, int[] ints) {",
+            "    return " + invariableHash,
+            "        + (" + 127 * "value".hashCode() + " ^ value.hashCode())",
+            "        + (" + 127 * "ints".hashCode() + " ^ Arrays.hashCode(ints));",
+            "  }",
+            "",
+            "  private static int[] intArrayFromCollection(Collection<Integer> c) {",
+            "    int[] a = new int[c.size()];",
+            "    int i = 0;",
+            "    for (int x : c) {",
+            "      a[i++] = x;",
+            "    }",
+            "    return a;",
+            "  }",
+            "",
+            "  private static void appendQuoted(StringBuilder sb, String s) {",
+            "    sb.append('\"');",
+            "    for (int i = 0; i < s.length(); i++) {",
+            "      appendEscaped(sb, s.charAt(i));",
+            "    }",
+            "    sb.append('\"');",
+            "  }",
+            "",
+            "  private static void appendEscaped(StringBuilder sb, char c) {",
+            "    switch (c) {",
+            "    case '\\\\':",
+            "    case '\"':",
+            "    case '\\'':",
+            "      sb.append('\\\\').append(c);",
+            "      break;",
+            "    case '\\n':",
+            "      sb.append(\"\\\\n\");",
+            "      break;",
+            "    case '\\r':",
+            "      sb.append(\"\\\\r\");",
+            "      break;",
+            "    case '\\t':",
+            "      sb.append(\"\\\\t\");",
+            "      break;",
+            "    default:",
+            "      if (c < 0x20) {",
+            "        sb.append('\\\\');",
+            "        appendWithZeroPadding(sb, Integer.toOctalString(c), 3);",
+            "      } else if (c < 0x7f || Character.isLetter(c)) {",
+            "        sb.append(c);",
+            "      } else {",
+            "        sb.append(\"\\\\u\");",
+            "        appendWithZeroPadding(sb, Integer.toHexString(c), 4);",
+            "      }",
+            "      break;",
+            "    }",
+            "  }",
+            "",
+            "  private static void appendWithZeroPadding(StringBuilder sb, String s, int width) {",
+            "    for (int i = width - s.length(); i > 0; i--) {",
+            "      sb.append('0');",
+            "    }",
+            "    sb.append(s);",
+            "  }",
+            "}");
+    Compilation compilation =
+        javac()
+            .withProcessors(new AutoAnnotationProcessor())
+            .compile(annotationFactoryJavaFile, myAnnotationJavaFile);
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThat(compilation)
+        .generatedSourceFile(
+            "com.example.factories.AutoAnnotation_AnnotationFactory_newMyAnnotation")
+        .hasSourceEquivalentTo(expectedOutput);
+  }
+
   @Test
   public void testMissingClass() {
     // Test that referring to an undefined annotation does not trigger @AutoAnnotation processing.
@@ -368,6 +368,41 @@ public class AutoAnnotationErrorsTest {
         .onLineContaining("TestAnnotation newTestAnnotation(String value)");
   }
 
+  @Test
+  public void testCachedWithoutParametersConflictsWithMember() {
+    JavaFileObject annotationSource =
+        JavaFileObjects.forSourceLines(
+            "com.example.TestAnnotation",
+            "package com.example;",
+            "",
+            "public @interface TestAnnotation {",
+            "  boolean cached() default true;",
+            "}");
+    JavaFileObject testSource =
+        JavaFileObjects.forSourceLines(
+            "com.foo.Test",
+            "package com.foo;",
+            "",
+            "import com.example.TestAnnotation;",
+            "import com.google.auto.value.AutoAnnotation;",
+            "",
+            "class Test {",
+            "  @AutoAnnotation @AutoAnnotation.Cached static TestAnnotation newTestAnnotation() {",
+            "    return AutoAnnotation_Test_newTestAnnotation.cached();",
+            "  }",
+            "}");
+    Compilation compilation =
+        javac()
+            .withProcessors(new AutoAnnotationProcessor())
+            .compile(annotationSource, testSource);
+    assertThat(compilation)
+        .hadErrorContaining(
+            "@AutoAnnotation.Cached method must have parameters if the annotation has a member"
+                + " called cached")
+        .inFile(testSource)
+        .onLineContaining("TestAnnotation newTestAnnotation()");
+  }
+
   @Test
   public void testAnnotationMemberNameConflictWithGeneratedLocal() {
     JavaFileObject annotationSource =
@@ -89,6 +89,25 @@ public class AutoOneOfCompilationTest {
             "    return (TaskResult<V, T>) Impl_empty.INSTANCE;",
             "  }",
             "",
+            "  interface Cases<V, T extends Throwable, R> {",
+            "    R value(V value);",
+            "    R exception(Throwable exception);",
+            "    R empty();",
+            "  }",
+            "",
+            "  static <V, T extends Throwable, R> R match(",
+            "      TaskResult<V, T> value, Cases<V, T, R> cases) {",
+            "    return ((Parent_<V, T>) value).match(cases);",
+            "  }",
+            "",
+            "  static void appendTo(StringBuilder sb, TaskResult<?, ?> value) {",
+            "    if (value instanceof Parent_) {",
+            "      ((Parent_<?, ?>) value).appendTo(sb);",
+            "    } else {",
+            "      sb.append(value);",
+            "    }",
+            "  }",
+            "",
             "  // Parent class that each implementation will inherit from.",
             "  private abstract static class Parent_<V, T extends Throwable> "
                 + "extends TaskResult<V, T> {",
@@ -106,6 +125,10 @@ public class AutoOneOfCompilationTest {
             "    public void empty() {",
             "      throw new UnsupportedOperationException(getKind().toString());",
             "    }",
+            "",
+            "    abstract <R> R match(Cases<V, T, R> cases);",
+            "",
+            "    abstract StringBuilder appendTo(StringBuilder sb);",
             "  }",
             "",
             "  // Implementation when the contained property is \"value\".",
@@ -123,8 +146,20 @@ public class AutoOneOfCompilationTest {
             "    }",
             "",
             "    @Override",
+            "    <R> R match(Cases<V, T, R> cases) {",
+            "      return cases.value(this.value);",
+            "    }",
+            "",
+            "    @Override",
             "    public String toString() {",
-            "      return \"TaskResult{value=\" + this.value + \"}\";",
+            "      return appendTo(new StringBuilder(38)).toString();",
+            "    }",
+            "",
+            "    @Override",
+            "    StringBuilder appendTo(StringBuilder sb) {",
+            "      sb.append(\"TaskResult{value=\");",
+            "      sb.append(this.value);",
+            "      return sb.append('}');",
             "    }",
             "",
             "    @Override",
@@ -164,8 +199,20 @@ public class AutoOneOfCompilationTest {
             "    }",
             "",
             "    @Override",
+            "    <R> R match(Cases<V, T, R> cases) {",
+            "      return cases.exception(this.exception);",
+            "    }",
+            "",
+            "    @Override",
             "    public String toString() {",
-            "      return \"TaskResult{exception=\" + this.exception + \"}\";",
+            "      return appendTo(new StringBuilder(38)).toString();",
+            "    }",
+            "",
+            "    @Override",
+            "    StringBuilder appendTo(StringBuilder sb) {",
+            "      sb.append(\"TaskResult{exception=\");",
+            "      sb.append(this.exception);",
+            "      return sb.append('}');",
             "    }",
             "",
             "    @Override",
@@ -201,11 +248,21 @@ public class AutoOneOfCompilationTest {
             "    public void empty() {}",
             "",
             "    @Override",
+            "    <R> R match(Cases<V, T, R> cases) {",
+            "      return cases.empty();",
+            "    }",
+            "",
+            "    @Override",
             "    public String toString() {",
             "      return \"TaskResult{empty}\";",
             "    }",
             "",
             "    @Override",
+            "    StringBuilder appendTo(StringBuilder sb) {",
+            "      return sb.append(\"TaskResult{empty}\");",
+            "    }",
+            "",
+            "    @Override",
             "    public boolean equals(Object x) {",
             "      return x == this;",
             "    }",
@@ -265,12 +322,32 @@ public class AutoOneOfCompilationTest {
             "    return Impl_nothing.INSTANCE;",
             "  }",
             "",
+            "  interface Cases<R> {",
+            "    R nothing();",
+            "  }",
+            "",
+            "  static <R> R match(Nothing value, Cases<R> cases) {",
+            "    return ((Parent_) value).match(cases);",
+            "  }",
+            "",
+            "  static void appendTo(StringBuilder sb, Nothing value) {",
+            "    if (value instanceof Parent_) {",
+            "      ((Parent_) value).appendTo(sb);",
+            "    } else {",
+            "      sb.append(value);",
+            "    }",
+            "  }",
+            "",
             "  // Parent class that each implementation will inherit from.",
             "  private abstract static class Parent_ extends Nothing {",
             "    @Override",
             "    void nothing() {",
             "      throw new UnsupportedOperationException(kind().toString());",
             "    }",
+            "",
+            "    abstract <R> R match(Cases<R> cases);",
+            "",
+            "    abstract StringBuilder appendTo(StringBuilder sb);",
             "  }",
             "",
             "  // Implementation when the contained property is \"nothing\".",
@@ -284,11 +361,21 @@ public class AutoOneOfCompilationTest {
             "    public void nothing() {}",
             "",
             "    @Override",
+            "    <R> R match(Cases<R> cases) {",
+            "      return cases.nothing();",
+            "    }",
+            "",
+            "    @Override",
             "    public String toString() {",
             "      return \"Nothing{nothing}\";",
             "    }",
             "",
             "    @Override",
+            "    StringBuilder appendTo(StringBuilder sb) {",
+            "      return sb.append(\"Nothing{nothing}\");",
+            "    }",
+            "",
+            "    @Override",
             "    public boolean equals(Object x) {",
             "      return x == this;",
             "    }",
@@ -474,4 +561,82 @@ public class AutoOneOfCompilationTest {
         .inFile(javaFileObject)
         .onLineContaining("@Nullable String dog()");
   }
+
+  @Test
+  public void copiedTypeOnlyAnnotationGoesOnParentClass() {
+    JavaFileObject javaFileObject =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Pet",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoOneOf;",
+            "import com.google.auto.value.AutoValue;",
+            "import java.lang.annotation.ElementType;",
+            "import java.lang.annotation.Target;",
+            "",
+            "@AutoOneOf(Pet.Kind.class)",
+            "@AutoValue.CopyAnnotations",
+            "@Pet.TypeOnly",
+            "public abstract class Pet {",
+            "  @Target(ElementType.TYPE)",
+            "  @interface TypeOnly {}",
+            "",
+            "  public enum Kind {",
+            "    DOG,",
+            "    CAT,",
+            "  }",
+            "  public abstract Kind getKind();",
+            "  public abstract String dog();",
+            "  public abstract String cat();",
+            "}");
+    Compilation compilation =
+        javac().withProcessors(new AutoOneOfProcessor()).compile(javaFileObject);
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThat(compilation)
+        .generatedSourceFile("foo.bar.AutoOneOf_Pet")
+        .contentsAsUtf8String()
+        .containsMatch("(?s:@[\\w.]*TypeOnly\\s+private abstract static class Parent_)");
+    assertThat(compilation)
+        .generatedSourceFile("foo.bar.AutoOneOf_Pet")
+        .contentsAsUtf8String()
+        .doesNotContainMatch("(?s:TypeOnly\\s+interface Cases)");
+  }
+
+  @Test
+  public void resultTypeVariableDoesNotHideReferencedClass() {
+    JavaFileObject rFileObject =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.R",
+            "package foo.bar;",
+            "",
+            "public class R {",
+            "  public static class Id {}",
+            "}");
+    JavaFileObject javaFileObject =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Resource",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoOneOf;",
+            "",
+            "@AutoOneOf(Resource.Kind.class)",
+            "public abstract class Resource<R0> {",
+            "  public enum Kind {",
+            "    R,",
+            "    ID,",
+            "    OTHER,",
+            "  }",
+            "  public abstract Kind getKind();",
+            "  public abstract R r();",
+            "  public abstract R.Id id();",
+            "  public abstract R0 other();",
+            "}");
+    Compilation compilation =
+        javac().withProcessors(new AutoOneOfProcessor()).compile(rFileObject, javaFileObject);
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThat(compilation)
+        .generatedSourceFile("foo.bar.AutoOneOf_Resource")
+        .contentsAsUtf8String()
+        .contains("interface Cases<R0, R1> {");
+  }
 }
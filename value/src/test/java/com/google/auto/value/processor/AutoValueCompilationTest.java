@@ -94,9 +94,13 @@ public class AutoValueCompilationTest {
             "  }",
             "",
             "  @Override public String toString() {",
-            "    return \"Baz{\"",
-            "        + \"buh=\" + buh",
-            "        + \"}\";",
+            "    return appendTo(new StringBuilder(27)).toString();",
+            "  }",
+            "",
+            "  StringBuilder appendTo(StringBuilder sb) {",
+            "    sb.append(\"Baz{buh=\");",
+            "    sb.append(this.buh);",
+            "    return sb.append('}');",
             "  }",
             "",
             "  @Override public boolean equals(Object o) {",
@@ -187,10 +191,22 @@ public class AutoValueCompilationTest {
             "  }",
             "",
             "  @Override public String toString() {",
-            "    return \"Baz{\"",
-            "        + \"ints=\" + Arrays.toString(ints) + \", \"",
-            "        + \"arrays=\" + arrays",
-            "        + \"}\";",
+            "    return appendTo(new StringBuilder(53)).toString();",
+            "  }",
+            "",
+            "  StringBuilder appendTo(StringBuilder sb) {",
+            "    sb.append(\"Baz{ints=\");",
+            "    sb.append('[');",
+            "    for (int i$ = 0; i$ < this.ints.length; i$++) {",
+            "      if (i$ > 0) {",
+            "        sb.append(\", \");",
+            "      }",
+            "      sb.append(this.ints[i$]);",
+            "    }",
+            "    sb.append(']');",
+            "    sb.append(\", arrays=\");",
+            "    sb.append(this.arrays);",
+            "    return sb.append('}');",
             "  }",
             "",
             "  @Override public boolean equals(Object o) {",
@@ -318,9 +334,13 @@ public class AutoValueCompilationTest {
             "",
             "  @Override",
             "  public String toString() {",
-            "    return \"Nesty{\"",
-            "        + \"inner=\" + inner",
-            "        + \"}\";",
+            "    return appendTo(new StringBuilder(31)).toString();",
+            "  }",
+            "",
+            "  StringBuilder appendTo(StringBuilder sb) {",
+            "    sb.append(\"Nesty{inner=\");",
+            "    sb.append(this.inner);",
+            "    return sb.append('}');",
             "  }",
             "",
             "  @Override",
@@ -789,6 +809,605 @@ public class AutoValueCompilationTest {
     }
   }
 
+  @Test
+  public void cacheHashCode() {
+    JavaFileObject javaFileObject =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Baz",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "",
+            "@AutoValue",
+            "@AutoValue.CacheHashCode",
+            "public abstract class Baz {",
+            "  public abstract int foo();",
+            "  public abstract String bar();",
+            "",
+            "  public static Baz create(int foo, String bar) {",
+            "    return new AutoValue_Baz(foo, bar);",
+            "  }",
+            "}");
+    JavaFileObject expectedOutput =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.AutoValue_Baz",
+            "package foo.bar;",
+            "",
+            GeneratedImport.importGeneratedAnnotationType(),
+            "",
+            "@Generated(\"" + AutoValueProcessor.class.getName() + "\")",
+            "final class AutoValue_Baz extends Baz {",
+            "  private final int foo;",
+            "  private final String bar;",
+            "  private final int hashCode$;",
+            "",
+            "  AutoValue_Baz(int foo, String bar) {",
+            "    this.foo = foo;",
+            "    if (bar == null) {",
+            "      throw new NullPointerException(\"Null bar\");",
+            "    }",
+            "    this.bar = bar;",
+            "    this.hashCode$ = computeHashCode$();",
+            "  }",
+            "",
+            "  @Override public int foo() {",
+            "    return foo;",
+            "  }",
+            "",
+            "  @Override public String bar() {",
+            "    return bar;",
+            "  }",
+            "",
+            "  @Override public String toString() {",
+            "    return appendTo(new StringBuilder(49)).toString();",
+            "  }",
+            "",
+            "  StringBuilder appendTo(StringBuilder sb) {",
+            "    sb.append(\"Baz{foo=\");",
+            "    sb.append(this.foo);",
+            "    sb.append(\", bar=\");",
+            "    sb.append(this.bar);",
+            "    return sb.append('}');",
+            "  }",
+            "",
+            "  @Override public boolean equals(Object o) {",
+            "    if (o == this) {",
+            "      return true;",
+            "    }",
+            "    if (o instanceof Baz) {",
+            "      if (o instanceof AutoValue_Baz",
+            "          && ((AutoValue_Baz) o).hashCode$ != this.hashCode$) {",
+            "        return false;",
+            "      }",
+            "      Baz that = (Baz) o;",
+            "      return this.foo == that.foo()",
+            "          && this.bar.equals(that.bar());",
+            "    }",
+            "    return false;",
+            "  }",
+            "",
+            "  @Override public int hashCode() {",
+            "    return hashCode$;",
+            "  }",
+            "",
+            "  private int computeHashCode$() {",
+            "    int h$ = 1;",
+            "    h$ *= 1000003;",
+            "    h$ ^= foo;",
+            "    h$ *= 1000003;",
+            "    h$ ^= bar.hashCode();",
+            "    return h$;",
+            "  }",
+            "}");
+    Compilation compilation =
+        javac().withProcessors(new AutoValueProcessor()).compile(javaFileObject);
+    assertThat(compilation)
+        .generatedSourceFile("foo.bar.AutoValue_Baz")
+        .hasSourceEquivalentTo(expectedOutput);
+  }
+
+  @Test
+  public void cacheHashCodeSerializable() {
+    JavaFileObject javaFileObject =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Baz",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "",
+            "@AutoValue",
+            "@AutoValue.CacheHashCode",
+            "public abstract class Baz implements java.io.Serializable {",
+            "  public abstract int foo();",
+            "}");
+    Compilation compilation =
+        javac().withProcessors(new AutoValueProcessor()).compile(javaFileObject);
+    assertThat(compilation)
+        .hadErrorContaining("@AutoValue.CacheHashCode cannot be used on a Serializable class")
+        .inFile(javaFileObject)
+        .onLineContaining("class Baz");
+  }
+
+  @Test
+  public void cacheHashCodeWithExplicitHashCode() {
+    JavaFileObject javaFileObject =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Baz",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "",
+            "@AutoValue",
+            "@AutoValue.CacheHashCode",
+            "public abstract class Baz {",
+            "  public abstract int foo();",
+            "",
+            "  @Override public int hashCode() {",
+            "    return foo();",
+            "  }",
+            "}");
+    Compilation compilation =
+        javac().withProcessors(new AutoValueProcessor()).compile(javaFileObject);
+    assertThat(compilation)
+        .hadWarningContaining("@AutoValue.CacheHashCode has no effect")
+        .inFile(javaFileObject)
+        .onLineContaining("class Baz");
+  }
+
+  @Test
+  public void packed() {
+    JavaFileObject javaFileObject =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Baz",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "import java.util.concurrent.TimeUnit;",
+            "",
+            "@AutoValue",
+            "@AutoValue.Packed",
+            "public abstract class Baz {",
+            "  public abstract boolean foo();",
+            "  public abstract String bar();",
+            "  public abstract TimeUnit unit();",
+            "",
+            "  public static Baz create(boolean foo, String bar, TimeUnit unit) {",
+            "    return new AutoValue_Baz(foo, bar, unit);",
+            "  }",
+            "}");
+    JavaFileObject expectedOutput =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.AutoValue_Baz",
+            "package foo.bar;",
+            "",
+            "import java.util.concurrent.TimeUnit;",
+            GeneratedImport.importGeneratedAnnotationType(),
+            "",
+            "@Generated(\"" + AutoValueProcessor.class.getName() + "\")",
+            "final class AutoValue_Baz extends Baz {",
+            "  private final String bar;",
+            "  private final byte bits$0;",
+            "  private static final TimeUnit[] unit$values = TimeUnit.values();",
+            "",
+            "  AutoValue_Baz(boolean foo, String bar, TimeUnit unit) {",
+            "    if (bar == null) {",
+            "      throw new NullPointerException(\"Null bar\");",
+            "    }",
+            "    this.bar = bar;",
+            "    if (unit == null) {",
+            "      throw new NullPointerException(\"Null unit\");",
+            "    }",
+            "    if (unit.ordinal() > 7) {",
+            "      throw new IllegalArgumentException(",
+            "          \"Ordinal of unit does not fit: recompile\");",
+            "    }",
+            "    this.bits$0 = (byte) ((foo ? 1 : 0)",
+            "        | unit.ordinal() << 1);",
+            "  }",
+            "",
+            "  @Override public boolean foo() {",
+            "    return (bits$0 & 1) != 0;",
+            "  }",
+            "",
+            "  @Override public String bar() {",
+            "    return bar;",
+            "  }",
+            "",
+            "  @Override public TimeUnit unit() {",
+            "    return unit$values[(bits$0 >>> 1) & 7];",
+            "  }",
+            "",
+            "  @Override public String toString() {",
+            "    return appendTo(new StringBuilder(72)).toString();",
+            "  }",
+            "",
+            "  StringBuilder appendTo(StringBuilder sb) {",
+            "    sb.append(\"Baz{foo=\");",
+            "    sb.append(this.foo());",
+            "    sb.append(\", bar=\");",
+            "    sb.append(this.bar);",
+            "    sb.append(\", unit=\");",
+            "    sb.append(this.unit());",
+            "    return sb.append('}');",
+            "  }",
+            "",
+            "  @Override public boolean equals(Object o) {",
+            "    if (o == this) {",
+            "      return true;",
+            "    }",
+            "    if (o instanceof Baz) {",
+            "      Baz that = (Baz) o;",
+            "      return (that instanceof AutoValue_Baz",
+            "              ? this.bits$0 == ((AutoValue_Baz) that).bits$0",
+            "              : this.foo() == that.foo()",
+            "                  && this.unit() == that.unit())",
+            "          && this.bar.equals(that.bar());",
+            "    }",
+            "    return false;",
+            "  }",
+            "",
+            "  @Override public int hashCode() {",
+            "    int h$ = 1;",
+            "    h$ *= 1000003;",
+            "    h$ ^= bar.hashCode();",
+            "    h$ *= 1000003;",
+            "    h$ ^= bits$0;",
+            "    return h$;",
+            "  }",
+            "}");
+    Compilation compilation =
+        javac().withProcessors(new AutoValueProcessor()).compile(javaFileObject);
+    assertThat(compilation)
+        .generatedSourceFile("foo.bar.AutoValue_Baz")
+        .hasSourceEquivalentTo(expectedOutput);
+  }
+
+  @Test
+  public void packedWithNothingToPack() {
+    JavaFileObject javaFileObject =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Baz",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "",
+            "@AutoValue",
+            "@AutoValue.Packed",
+            "public abstract class Baz {",
+            "  public abstract int foo();",
+            "}");
+    Compilation compilation =
+        javac().withProcessors(new AutoValueProcessor()).compile(javaFileObject);
+    assertThat(compilation)
+        .hadWarningContaining("@AutoValue.Packed has no effect")
+        .inFile(javaFileObject)
+        .onLineContaining("class Baz");
+  }
+
+  @Test
+  public void interned() {
+    JavaFileObject javaFileObject =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Baz",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "",
+            "@AutoValue",
+            "@AutoValue.Interned",
+            "public abstract class Baz {",
+            "  public abstract String foo();",
+            "  public abstract int bar();",
+            "",
+            "  public static Baz create(String foo, int bar) {",
+            "    return AutoValue_Baz.interned(foo, bar);",
+            "  }",
+            "}");
+    JavaFileObject expectedOutput =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.AutoValue_Baz",
+            "package foo.bar;",
+            "",
+            "import com.google.common.collect.Interner;",
+            "import com.google.common.collect.Interners;",
+            "import java.util.concurrent.atomic.AtomicLong;",
+            GeneratedImport.importGeneratedAnnotationType(),
+            "",
+            "@Generated(\"" + AutoValueProcessor.class.getName() + "\")",
+            "final class AutoValue_Baz extends Baz {",
+            "  private final String foo;",
+            "  private final int bar;",
+            "",
+            "  AutoValue_Baz(String foo, int bar) {",
+            "    if (foo == null) {",
+            "      throw new NullPointerException(\"Null foo\");",
+            "    }",
+            "    this.foo = foo;",
+            "    this.bar = bar;",
+            "  }",
+            "",
+            "  @Override public String foo() {",
+            "    return foo;",
+            "  }",
+            "",
+            "  @Override public int bar() {",
+            "    return bar;",
+            "  }",
+            "",
+            "  @Override public String toString() {",
+            "    return appendTo(new StringBuilder(49)).toString();",
+            "  }",
+            "",
+            "  StringBuilder appendTo(StringBuilder sb) {",
+            "    sb.append(\"Baz{foo=\");",
+            "    sb.append(this.foo);",
+            "    sb.append(\", bar=\");",
+            "    sb.append(this.bar);",
+            "    return sb.append('}');",
+            "  }",
+            "",
+            "  @Override public boolean equals(Object o) {",
+            "    if (o == this) {",
+            "      return true;",
+            "    }",
+            "    if (o instanceof Baz) {",
+            "      Baz that = (Baz) o;",
+            "      return this.bar == that.bar()",
+            "          && this.foo.equals(that.foo());",
+            "    }",
+            "    return false;",
+            "  }",
+            "",
+            "  @Override public int hashCode() {",
+            "    int h$ = 1;",
+            "    h$ *= 1000003;",
+            "    h$ ^= foo.hashCode();",
+            "    h$ *= 1000003;",
+            "    h$ ^= bar;",
+            "    return h$;",
+            "  }",
+            "",
+            "  private static final Interner<Baz> interner$ = Interners.newWeakInterner();",
+            "  private static final AtomicLong internRequests$ = new AtomicLong();",
+            "  private static final AtomicLong internMisses$ = new AtomicLong();",
+            "",
+            "  static Baz interned(String foo, int bar) {",
+            "    return intern$(new AutoValue_Baz(foo, bar));",
+            "  }",
+            "",
+            "  private static Baz intern$(Baz instance) {",
+            "    internRequests$.incrementAndGet();",
+            "    Baz canonical = interner$.intern(instance);",
+            "    if (canonical == instance) {",
+            "      internMisses$.incrementAndGet();",
+            "    }",
+            "    return canonical;",
+            "  }",
+            "",
+            "  static long internRequestCount() {",
+            "    return internRequests$.get();",
+            "  }",
+            "",
+            "  static long internHitCount() {",
+            "    return internRequests$.get() - internMisses$.get();",
+            "  }",
+            "",
+            "  static long internedInstanceCount() {",
+            "    return internMisses$.get();",
+            "  }",
+            "}");
+    Compilation compilation =
+        javac().withProcessors(new AutoValueProcessor()).compile(javaFileObject);
+    assertThat(compilation)
+        .generatedSourceFile("foo.bar.AutoValue_Baz")
+        .hasSourceEquivalentTo(expectedOutput);
+  }
+
+  @Test
+  public void internedGeneric() {
+    JavaFileObject javaFileObject =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Baz",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "import java.util.List;",
+            "",
+            "@AutoValue",
+            "@AutoValue.Interned",
+            "public abstract class Baz<T> {",
+            "  public abstract List<T> foo();",
+            "}");
+    Compilation compilation =
+        javac().withProcessors(new AutoValueProcessor()).compile(javaFileObject);
+    assertThat(compilation)
+        .hadErrorContaining("@AutoValue.Interned cannot be used on a generic class")
+        .inFile(javaFileObject)
+        .onLineContaining("class Baz");
+  }
+
+  @Test
+  public void witherMethods() {
+    JavaFileObject javaFileObject =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Baz",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "",
+            "@AutoValue",
+            "public abstract class Baz<T> {",
+            "  public abstract T getFoo();",
+            "  public abstract double getBar();",
+            "",
+            "  public abstract Baz<T> withFoo(T foo);",
+            "  abstract Baz<T> withBar(double bar);",
+            "}");
+    JavaFileObject expectedOutput =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.AutoValue_Baz",
+            "package foo.bar;",
+            "",
+            GeneratedImport.importGeneratedAnnotationType(),
+            "",
+            "@Generated(\"" + AutoValueProcessor.class.getName() + "\")",
+            "final class AutoValue_Baz<T> extends Baz<T> {",
+            "  private final T foo;",
+            "  private final double bar;",
+            "",
+            "  AutoValue_Baz(T foo, double bar) {",
+            "    if (foo == null) {",
+            "      throw new NullPointerException(\"Null foo\");",
+            "    }",
+            "    this.foo = foo;",
+            "    this.bar = bar;",
+            "  }",
+            "",
+            "  @Override public T getFoo() {",
+            "    return foo;",
+            "  }",
+            "",
+            "  @Override public double getBar() {",
+            "    return bar;",
+            "  }",
+            "",
+            "  @Override public String toString() {",
+            "    return appendTo(new StringBuilder(49)).toString();",
+            "  }",
+            "",
+            "  StringBuilder appendTo(StringBuilder sb) {",
+            "    sb.append(\"Baz{foo=\");",
+            "    sb.append(this.foo);",
+            "    sb.append(\", bar=\");",
+            "    sb.append(this.bar);",
+            "    return sb.append('}');",
+            "  }",
+            "",
+            "  @Override public boolean equals(Object o) {",
+            "    if (o == this) {",
+            "      return true;",
+            "    }",
+            "    if (o instanceof Baz) {",
+            "      Baz<?> that = (Baz<?>) o;",
+            "      return Double.doubleToLongBits(this.bar) == Double.doubleToLongBits(that.getBar())",
+            "          && this.foo.equals(that.getFoo());",
+            "    }",
+            "    return false;",
+            "  }",
+            "",
+            "  @Override public int hashCode() {",
+            "    int h$ = 1;",
+            "    h$ *= 1000003;",
+            "    h$ ^= foo.hashCode();",
+            "    h$ *= 1000003;",
+            "    h$ ^= (int) ((Double.doubleToLongBits(bar) >>> 32) ^ Double.doubleToLongBits(bar));",
+            "    return h$;",
+            "  }",
+            "",
+            "  @Override public Baz<T> withFoo(T foo) {",
+            "    if (foo == this.foo) {",
+            "      return this;",
+            "    }",
+            "    return new AutoValue_Baz<T>(foo, this.bar);",
+            "  }",
+            "",
+            "  @Override Baz<T> withBar(double bar) {",
+            "    if (Double.doubleToRawLongBits(bar) == Double.doubleToRawLongBits(this.bar)) {",
+            "      return this;",
+            "    }",
+            "    return new AutoValue_Baz<T>(this.foo, bar);",
+            "  }",
+            "}");
+    Compilation compilation =
+        javac().withProcessors(new AutoValueProcessor()).compile(javaFileObject);
+    assertThat(compilation)
+        .generatedSourceFile("foo.bar.AutoValue_Baz")
+        .hasSourceEquivalentTo(expectedOutput);
+  }
+
+  @Test
+  public void witherMethodWrongParameterType() {
+    JavaFileObject javaFileObject =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Baz",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "",
+            "@AutoValue",
+            "public abstract class Baz {",
+            "  public abstract String foo();",
+            "",
+            "  public abstract Baz withFoo(CharSequence foo);",
+            "}");
+    Compilation compilation =
+        javac().withProcessors(new AutoValueProcessor()).compile(javaFileObject);
+    assertThat(compilation)
+        .hadErrorContaining(
+            "Parameter type java.lang.CharSequence of wither method should be java.lang.String"
+                + " to match property foo")
+        .inFile(javaFileObject)
+        .onLineContaining("withFoo");
+  }
+
+  @Test
+  public void witherMethodWrongReturnType() {
+    JavaFileObject javaFileObject =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Baz",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "",
+            "@AutoValue",
+            "public abstract class Baz {",
+            "  public abstract String foo();",
+            "",
+            "  public abstract String withFoo(String foo);",
+            "}");
+    Compilation compilation =
+        javac().withProcessors(new AutoValueProcessor()).compile(javaFileObject);
+    assertThat(compilation)
+        .hadErrorContaining("Wither method should return foo.bar.Baz, not java.lang.String")
+        .inFile(javaFileObject)
+        .onLineContaining("withFoo");
+  }
+
+  @Test
+  public void equalsComparesCheapPropertiesFirst() {
+    JavaFileObject javaFileObject =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Baz",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "import java.util.List;",
+            "import java.util.concurrent.TimeUnit;",
+            "",
+            "@AutoValue",
+            "public abstract class Baz {",
+            "  public abstract List<String> list();",
+            "  public abstract String string();",
+            "  public abstract int[] array();",
+            "  public abstract TimeUnit unit();",
+            "  public abstract Long boxed();",
+            "  public abstract long primitive();",
+            "}");
+    Compilation compilation =
+        javac().withProcessors(new AutoValueProcessor()).compile(javaFileObject);
+    assertThat(compilation).succeeded();
+    assertThat(compilation)
+        .generatedSourceFile("foo.bar.AutoValue_Baz")
+        .contentsAsUtf8String()
+        .containsMatch(
+            "(?s:return this\\.unit\\.equals\\(that\\.unit\\(\\)\\)\\s*"
+                + "&& this\\.boxed\\.equals\\(that\\.boxed\\(\\)\\)\\s*"
+                + "&& this\\.primitive == that\\.primitive\\(\\)\\s*"
+                + "&& this\\.string\\.equals\\(that\\.string\\(\\)\\)\\s*"
+                + "&& this\\.list\\.equals\\(that\\.list\\(\\)\\)\\s*"
+                + "&& Arrays\\.equals\\(this\\.array,)");
+  }
+
   @Test
   public void nonExistentSuperclass() {
     // The main purpose of this test is to check that AutoValueProcessor doesn't crash the
@@ -1109,15 +1728,47 @@ public class AutoValueCompilationTest {
             "  }",
             "",
             "  @Override public String toString() {",
-            "    return \"Baz{\"",
-            "        + \"anInt=\" + anInt + \", \"",
-            "        + \"aByteArray=\" + Arrays.toString(aByteArray) + \", \"",
-            "        + \"aNullableIntArray=\" + Arrays.toString(aNullableIntArray) + \", \"",
-            "        + \"aList=\" + aList + \", \"",
-            "        + \"anImmutableList=\" + anImmutableList + \", \"",
-            "        + \"anOptionalString=\" + anOptionalString + \", \"",
-            "        + \"aNestedAutoValue=\" + aNestedAutoValue",
-            "        + \"}\";",
+            "    return appendTo(new StringBuilder(222)).toString();",
+            "  }",
+            "",
+            "  StringBuilder appendTo(StringBuilder sb) {",
+            "    sb.append(\"Baz{anInt=\");",
+            "    sb.append(this.anInt);",
+            "    sb.append(\", aByteArray=\");",
+            "    sb.append('[');",
+            "    for (int i$ = 0; i$ < this.aByteArray.length; i$++) {",
+            "      if (i$ > 0) {",
+            "        sb.append(\", \");",
+            "      }",
+            "      sb.append(this.aByteArray[i$]);",
+            "    }",
+            "    sb.append(']');",
+            "    sb.append(\", aNullableIntArray=\");",
+            "    if (this.aNullableIntArray == null) {",
+            "      sb.append(\"null\");",
+            "    } else {",
+            "      sb.append('[');",
+            "      for (int i$ = 0; i$ < this.aNullableIntArray.length; i$++) {",
+            "        if (i$ > 0) {",
+            "          sb.append(\", \");",
+            "        }",
+            "        sb.append(this.aNullableIntArray[i$]);",
+            "      }",
+            "      sb.append(']');",
+            "    }",
+            "    sb.append(\", aList=\");",
+            "    sb.append(this.aList);",
+            "    sb.append(\", anImmutableList=\");",
+            "    sb.append(this.anImmutableList);",
+            "    sb.append(\", anOptionalString=\");",
+            "    sb.append(this.anOptionalString);",
+            "    sb.append(\", aNestedAutoValue=\");",
+            "    if (this.aNestedAutoValue instanceof AutoValue_NestedAutoValue<?>) {",
+            "      ((AutoValue_NestedAutoValue<?>) this.aNestedAutoValue).appendTo(sb);",
+            "    } else {",
+            "      sb.append(this.aNestedAutoValue);",
+            "    }",
+            "    return sb.append('}');",
             "  }",
             "",
             "  @Override public boolean equals(Object o) {",
@@ -1165,7 +1816,7 @@ public class AutoValueCompilationTest {
             "  }",
             "",
             "  static final class Builder<T extends Number> extends Baz.Builder<T> {",
-            "    private Integer anInt;",
+            "    private int anInt;",
             "    private byte[] aByteArray;",
             "    private int[] aNullableIntArray;",
             "    private List<T> aList;",
@@ -1174,6 +1825,7 @@ public class AutoValueCompilationTest {
             "    private Optional<String> anOptionalString = Optional.absent();",
             "    private NestedAutoValue.Builder<T> aNestedAutoValueBuilder$;",
             "    private NestedAutoValue<T> aNestedAutoValue;",
+            "    private int set$0;",
             "",
             "    Builder() {",
             "    }",
@@ -1186,17 +1838,19 @@ public class AutoValueCompilationTest {
             "      this.anImmutableList = source.anImmutableList();",
             "      this.anOptionalString = source.anOptionalString();",
             "      this.aNestedAutoValue = source.aNestedAutoValue();",
+            "      set$0 = 1;",
             "    }",
             "",
             "    @Override",
             "    public Baz.Builder<T> anInt(int anInt) {",
             "      this.anInt = anInt;",
+            "      set$0 |= 1;",
             "      return this;",
             "    }",
             "",
             "    @Override",
             "    public Optional<Integer> anInt() {",
-            "      if (anInt == null) {",
+            "      if ((set$0 & 1) == 0) {",
             "        return Optional.absent();",
             "      } else {",
             "        return Optional.of(anInt);",
@@ -1312,17 +1966,19 @@ public class AutoValueCompilationTest {
                 + "NestedAutoValue.builder();",
             "        this.aNestedAutoValue = aNestedAutoValue$builder.build();",
             "      }",
-            "      String missing = \"\";",
-            "      if (this.anInt == null) {",
-            "        missing += \" anInt\";",
-            "      }",
-            "      if (this.aByteArray == null) {",
-            "        missing += \" aByteArray\";",
-            "      }",
-            "      if (this.aList == null) {",
-            "        missing += \" aList\";",
-            "      }",
-            "      if (!missing.isEmpty()) {",
+            "      if (set$0 != 1",
+            "          || this.aByteArray == null",
+            "          || this.aList == null) {",
+            "        StringBuilder missing = new StringBuilder();",
+            "        if ((set$0 & 1) == 0) {",
+            "          missing.append(\" anInt\");",
+            "        }",
+            "        if (this.aByteArray == null) {",
+            "          missing.append(\" aByteArray\");",
+            "        }",
+            "        if (this.aList == null) {",
+            "          missing.append(\" aList\");",
+            "        }",
             "        throw new IllegalStateException(\"Missing required properties:\" + missing);",
             "      }",
             "      return new AutoValue_Baz<T>(",
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.value.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static com.google.testing.compile.Compiler.javac;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.JavaFileObjects;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import javax.tools.JavaFileObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class BuildCacheTest {
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static final JavaFileObject BAZ =
+      JavaFileObjects.forSourceLines(
+          "foo.bar.Baz",
+          "package foo.bar;",
+          "",
+          "import com.google.auto.value.AutoValue;",
+          "import com.google.auto.value.extension.memoized.Memoized;",
+          "",
+          "@AutoValue",
+          "abstract class Baz {",
+          "  abstract String string();",
+          "",
+          "  @Memoized",
+          "  String upper() {",
+          "    return string().toUpperCase();",
+          "  }",
+          "}");
+
+  private File cacheDirectory;
+  private File report;
+
+  @Before
+  public void setUp() {
+    cacheDirectory = new File(temporaryFolder.getRoot(), "cache");
+    report = new File(temporaryFolder.getRoot(), "profile.jsonl");
+  }
+
+  private Compilation compile(JavaFileObject... sources) {
+    return javac()
+        .withProcessors(new AutoValueProcessor())
+        .withOptions(
+            "-A" + BuildCache.CACHE_OPTION + "=" + cacheDirectory,
+            "-A" + ProfileReport.PROFILE_OPTION + "=" + report)
+        .compile(sources);
+  }
+
+  private static String generatedSource(Compilation compilation, String className)
+      throws IOException {
+    return compilation.generatedSourceFile(className).get().getCharContent(false).toString();
+  }
+
+  @Test
+  public void secondCompilationHits() throws Exception {
+    Compilation first = compile(BAZ);
+    assertThat(first).succeededWithoutWarnings();
+    assertThat(cacheDirectory.list()).hasLength(1);
+
+    Compilation second = compile(BAZ);
+    assertThat(second).succeededWithoutWarnings();
+    assertThat(cacheDirectory.list()).hasLength(1);
+    for (String className : new String[] {"foo.bar.AutoValue_Baz", "foo.bar.$AutoValue_Baz"}) {
+      assertThat(generatedSource(second, className))
+          .isEqualTo(generatedSource(first, className));
+    }
+
+    List<String> lines = Files.readAllLines(report.toPath(), UTF_8);
+    // Each compilation has a line for Baz and a summary for round 1, followed by summaries for the
+    // two rounds where there is nothing to do.
+    assertThat(lines).hasSize(8);
+    assertThat(lines.get(0)).contains("\"outcome\":\"generated\"");
+    assertThat(lines.get(1)).contains("\"cache\":{\"hits\":0,\"misses\":1,\"hitRatio\":0.0}");
+    assertThat(lines.get(4)).contains("\"outcome\":\"cached\"");
+    assertThat(lines.get(5)).contains("\"cache\":{\"hits\":1,\"misses\":0,\"hitRatio\":1.0}");
+  }
+
+  @Test
+  public void changedClassMisses() throws Exception {
+    assertThat(compile(BAZ)).succeededWithoutWarnings();
+    JavaFileObject changedBaz =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Baz",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "",
+            "@AutoValue",
+            "abstract class Baz {",
+            "  abstract String string();",
+            "  abstract int number();",
+            "}");
+    Compilation compilation = compile(changedBaz);
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThat(generatedSource(compilation, "foo.bar.AutoValue_Baz")).contains("int number");
+    assertThat(cacheDirectory.list()).hasLength(2);
+  }
+
+  @Test
+  public void changedConstantMisses() throws Exception {
+    assertThat(compile(serializableBaz(1))).succeededWithoutWarnings();
+    Compilation compilation = compile(serializableBaz(2));
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThat(generatedSource(compilation, "foo.bar.AutoValue_Baz"))
+        .contains("serialVersionUID = 2L");
+    assertThat(cacheDirectory.list()).hasLength(2);
+  }
+
+  private static JavaFileObject serializableBaz(long serialVersionUID) {
+    return JavaFileObjects.forSourceLines(
+        "foo.bar.Baz",
+        "package foo.bar;",
+        "",
+        "import com.google.auto.value.AutoValue;",
+        "import java.io.Serializable;",
+        "",
+        "@AutoValue",
+        "abstract class Baz implements Serializable {",
+        "  private static final long serialVersionUID = " + serialVersionUID + "L;",
+        "",
+        "  abstract String string();",
+        "}");
+  }
+
+  @Test
+  public void changedReferencedClassMisses() throws Exception {
+    JavaFileObject qux =
+        JavaFileObjects.forSourceLines("foo.bar.Qux", "package foo.bar;", "", "class Qux {}");
+    JavaFileObject quux =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Quux",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "",
+            "@AutoValue",
+            "abstract class Quux {",
+            "  abstract Qux qux();",
+            "}");
+    assertThat(compile(quux, qux)).succeededWithoutWarnings();
+    JavaFileObject changedQux =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Qux",
+            "package foo.bar;",
+            "",
+            "class Qux implements Comparable<Qux> {",
+            "  @Override public int compareTo(Qux that) {",
+            "    return 0;",
+            "  }",
+            "}");
+    assertThat(compile(quux, changedQux)).succeededWithoutWarnings();
+    assertThat(cacheDirectory.list()).hasLength(2);
+  }
+
+  @Test
+  public void classWithWarningIsNotCached() {
+    JavaFileObject warningBaz =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Baz",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "",
+            "@AutoValue",
+            "abstract class Baz {",
+            "  abstract int[] ints();",
+            "}");
+    Compilation compilation = compile(warningBaz);
+    assertThat(compilation).succeeded();
+    assertThat(compilation).hadWarningContaining("mutable");
+    assertThat(cacheDirectory.exists()).isFalse();
+  }
+
+  @Test
+  public void noCacheByDefault() {
+    Compilation compilation = javac().withProcessors(new AutoValueProcessor()).compile(BAZ);
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThat(cacheDirectory.exists()).isFalse();
+  }
+}
@@ -41,6 +41,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.ServiceConfigurationError;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.function.Consumer;
 import java.util.jar.JarOutputStream;
 import java.util.zip.ZipEntry;
@@ -144,9 +145,13 @@ public class ExtensionTest {
             "",
             "  @Override",
             "  public String toString() {",
-            "    return \"Baz{\"",
-            "        + \"foo=\" + foo",
-            "        + \"}\";",
+            "    return appendTo(new StringBuilder(27)).toString();",
+            "  }",
+            "",
+            "  StringBuilder appendTo(StringBuilder sb) {",
+            "    sb.append(\"Baz{foo=\");",
+            "    sb.append(this.foo);",
+            "    return sb.append('}');",
             "  }",
             "",
             "  @Override",
@@ -228,6 +233,65 @@ public class ExtensionTest {
     assertThat(compilation).succeededWithoutWarnings();
   }
 
+  @Test
+  public void testTriggers() {
+    class TriggeredExtension extends NonFinalExtension {
+      final Set<String> applicableCalls = new TreeSet<>();
+
+      @Override
+      public Set<String> triggerAnnotations() {
+        return ImmutableSet.of("java.lang.Deprecated");
+      }
+
+      @Override
+      public Set<String> triggerPropertyTypes() {
+        return ImmutableSet.of("java.util.Optional");
+      }
+
+      @Override
+      public boolean applicable(Context context) {
+        applicableCalls.add(context.autoValueClass().getSimpleName().toString());
+        return super.applicable(context);
+      }
+    }
+    JavaFileObject untriggered =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Untriggered",
+            "package foo.bar;",
+            "import com.google.auto.value.AutoValue;",
+            "@AutoValue public abstract class Untriggered {",
+            "  abstract String foo();",
+            "}");
+    JavaFileObject annotatedMethod =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.AnnotatedMethod",
+            "package foo.bar;",
+            "import com.google.auto.value.AutoValue;",
+            "@AutoValue public abstract class AnnotatedMethod {",
+            "  abstract String foo();",
+            "  @Deprecated String bar() {",
+            "    return foo();",
+            "  }",
+            "}");
+    JavaFileObject optionalProperty =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.OptionalProperty",
+            "package foo.bar;",
+            "import com.google.auto.value.AutoValue;",
+            "import java.util.Optional;",
+            "@AutoValue public abstract class OptionalProperty {",
+            "  abstract Optional<String> foo();",
+            "}");
+    TriggeredExtension extension = new TriggeredExtension();
+    Compilation compilation =
+        javac()
+            .withProcessors(new AutoValueProcessor(ImmutableList.of(extension)))
+            .compile(untriggered, annotatedMethod, optionalProperty);
+    assertThat(compilation).succeeded();
+    Truth.assertThat(extension.applicableCalls)
+        .containsExactly("AnnotatedMethod", "OptionalProperty");
+  }
+
   @Test
   public void testCantConsumeTwice() {
     class ConsumeDizzle extends NonFinalExtension {
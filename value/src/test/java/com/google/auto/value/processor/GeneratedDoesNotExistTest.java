@@ -198,8 +198,11 @@ public class GeneratedDoesNotExistTest {
             "  }",
             "",
             "  @Override public String toString() {",
-            "    return \"Baz{\"",
-            "        + \"}\";",
+            "    return appendTo(new StringBuilder(5)).toString();",
+            "  }",
+            "",
+            "  StringBuilder appendTo(StringBuilder sb) {",
+            "    return sb.append(\"Baz{}\");",
             "  }",
             "",
             "  @Override public boolean equals(Object o) {",
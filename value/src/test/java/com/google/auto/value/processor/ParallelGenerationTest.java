@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.value.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static com.google.testing.compile.Compiler.javac;
+
+import com.google.common.collect.ImmutableList;
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.JavaFileObjects;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.tools.JavaFileObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ParallelGenerationTest {
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static final int CLASS_COUNT = 12;
+
+  // A mixture of features that use different parts of the template: builders with property
+  // builders, Optional properties, packed properties, serialization, and extensions.
+  private static ImmutableList<JavaFileObject> sources() {
+    List<JavaFileObject> sources = new ArrayList<>();
+    for (int i = 0; i < CLASS_COUNT; i++) {
+      String name = "Value" + i;
+      sources.add(
+          JavaFileObjects.forSourceLines(
+              "foo.bar." + name,
+              "package foo.bar;",
+              "",
+              "import com.google.auto.value.AutoValue;",
+              "import com.google.auto.value.extension.memoized.Memoized;",
+              "import com.google.common.collect.ImmutableList;",
+              "import java.util.Optional;",
+              "import java.util.concurrent.TimeUnit;",
+              "",
+              "@AutoValue",
+              "@AutoValue.Packed",
+              "public abstract class " + name,
+              (i % 2 == 0) ? "    implements java.io.Serializable {" : "    {",
+              "  public abstract String string" + i + "();",
+              "  public abstract Optional<Integer> optional();",
+              "  public abstract ImmutableList<String> list();",
+              "  public abstract boolean flag();",
+              "  public abstract TimeUnit unit();",
+              "",
+              (i % 3 == 0) ? "  @Memoized public String upper() {" : "  public String upper() {",
+              "    return string" + i + "().toUpperCase();",
+              "  }",
+              "",
+              "  public abstract Builder toBuilder();",
+              "",
+              "  @AutoValue.Builder",
+              "  public abstract static class Builder {",
+              "    public abstract Builder string" + i + "(String x);",
+              "    public abstract Builder optional(int x);",
+              "    public abstract ImmutableList.Builder<String> listBuilder();",
+              "    public abstract Builder flag(boolean x);",
+              "    public abstract Builder unit(TimeUnit x);",
+              "    public abstract " + name + " build();",
+              "  }",
+              "}"));
+    }
+    return ImmutableList.copyOf(sources);
+  }
+
+  private static Map<String, String> generatedSources(Compilation compilation) throws Exception {
+    Map<String, String> generated = new LinkedHashMap<>();
+    for (JavaFileObject file : compilation.generatedSourceFiles()) {
+      generated.put(file.getName(), file.getCharContent(false).toString());
+    }
+    return generated;
+  }
+
+  private static Compilation compile(String... options) {
+    return javac()
+        .withProcessors(new AutoValueProcessor())
+        .withOptions((Object[]) options)
+        .compile(sources());
+  }
+
+  @Test
+  public void sameOutputAsSerial() throws Exception {
+    Compilation serial = compile();
+    assertThat(serial).succeededWithoutWarnings();
+    Compilation parallel = compile("-A" + AutoValueProcessor.GENERATION_THREADS_OPTION + "=4");
+    assertThat(parallel).succeededWithoutWarnings();
+
+    Map<String, String> serialSources = generatedSources(serial);
+    Map<String, String> parallelSources = generatedSources(parallel);
+    // Two files (the extension's class and the final class) for every third class, and one for
+    // the others.
+    assertThat(serialSources).hasSize(16);
+    assertThat(parallelSources.keySet()).containsExactlyElementsIn(serialSources.keySet());
+    serialSources.forEach(
+        (name, text) -> assertWithMessage(name).that(parallelSources.get(name)).isEqualTo(text));
+  }
+
+  @Test
+  public void withBuildCache() throws Exception {
+    File cache = temporaryFolder.newFolder("cache");
+    String[] options = {
+      "-A" + AutoValueProcessor.GENERATION_THREADS_OPTION + "=4",
+      "-A" + BuildCache.CACHE_OPTION + "=" + cache,
+    };
+    Compilation first = compile(options);
+    assertThat(first).succeededWithoutWarnings();
+    assertThat(cache.list()).hasLength(CLASS_COUNT);
+
+    Compilation second = compile(options);
+    assertThat(second).succeededWithoutWarnings();
+    assertThat(generatedSources(second)).isEqualTo(generatedSources(first));
+  }
+
+  @Test
+  public void badThreadCount() {
+    Compilation compilation =
+        compile("-A" + AutoValueProcessor.GENERATION_THREADS_OPTION + "=lots");
+    assertThat(compilation).succeeded();
+    assertThat(compilation).hadWarningContaining("is not a number");
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.value.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static com.google.testing.compile.Compiler.javac;
+
+import com.google.auto.value.processor.PhaseTimer.Phase;
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.JavaFileObjects;
+import javax.tools.JavaFileObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PhaseTimerTest {
+  @Test
+  public void autoValuePhases() {
+    JavaFileObject javaFileObject =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Baz",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "",
+            "@AutoValue",
+            "abstract class Baz {",
+            "  abstract int foo();",
+            "  abstract String bar();",
+            "}");
+    AutoValueProcessor processor = new AutoValueProcessor();
+    processor.phaseTimer().enable();
+    Compilation compilation = javac().withProcessors(processor).compile(javaFileObject);
+    assertThat(compilation).succeededWithoutWarnings();
+    PhaseTimer timer = processor.phaseTimer();
+    for (Phase phase : Phase.values()) {
+      assertThat(timer.nanos(phase)).isAtLeast(0L);
+    }
+    assertThat(timer.nanos(Phase.CLASSIFY)).isGreaterThan(0L);
+    assertThat(timer.nanos(Phase.TO_TEXT)).isGreaterThan(0L);
+    assertThat(timer.nanos(Phase.FORMAT)).isGreaterThan(0L);
+    assertThat(timer.nanos(Phase.WRITE)).isGreaterThan(0L);
+    assertThat(timer.nanosByPhase()).containsKey(Phase.DECODE);
+
+    timer.reset();
+    assertThat(timer.nanosByPhase().values()).containsExactly(0L, 0L, 0L, 0L, 0L, 0L, 0L);
+  }
+
+  @Test
+  public void noTimesUnlessEnabled() {
+    JavaFileObject javaFileObject =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Baz",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "",
+            "@AutoValue",
+            "abstract class Baz {",
+            "  abstract int foo();",
+            "}");
+    AutoValueProcessor processor = new AutoValueProcessor();
+    Compilation compilation = javac().withProcessors(processor).compile(javaFileObject);
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThat(processor.phaseTimer().enabled()).isFalse();
+    assertThat(processor.phaseTimer().nanosByPhase().values())
+        .containsExactly(0L, 0L, 0L, 0L, 0L, 0L, 0L);
+  }
+
+  @Test
+  public void autoOneOfPhases() {
+    JavaFileObject javaFileObject =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Baz",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoOneOf;",
+            "",
+            "@AutoOneOf(Baz.Kind.class)",
+            "abstract class Baz {",
+            "  enum Kind {FOO, BAR}",
+            "",
+            "  abstract Kind kind();",
+            "  abstract int foo();",
+            "  abstract String bar();",
+            "}");
+    AutoOneOfProcessor processor = new AutoOneOfProcessor();
+    processor.phaseTimer().enable();
+    Compilation compilation = javac().withProcessors(processor).compile(javaFileObject);
+    assertThat(compilation).succeededWithoutWarnings();
+    PhaseTimer timer = processor.phaseTimer();
+    assertThat(timer.nanos(Phase.CLASSIFY)).isGreaterThan(0L);
+    assertThat(timer.nanos(Phase.TO_TEXT)).isGreaterThan(0L);
+    assertThat(timer.nanos(Phase.WRITE)).isGreaterThan(0L);
+    assertThat(timer.nanos(Phase.EXTENSIONS)).isEqualTo(0L);
+  }
+}
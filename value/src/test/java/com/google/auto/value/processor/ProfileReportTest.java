@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.value.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static com.google.testing.compile.Compiler.javac;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.JavaFileObjects;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import javax.tools.JavaFileObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ProfileReportTest {
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static final JavaFileObject BAZ =
+      JavaFileObjects.forSourceLines(
+          "foo.bar.Baz",
+          "package foo.bar;",
+          "",
+          "import com.google.auto.value.AutoAnnotation;",
+          "import com.google.auto.value.AutoValue;",
+          "import com.google.auto.value.extension.memoized.Memoized;",
+          "",
+          "@AutoValue",
+          "abstract class Baz {",
+          "  abstract String string();",
+          "",
+          "  @Memoized",
+          "  String upper() {",
+          "    return string().toUpperCase();",
+          "  }",
+          "",
+          "  @AutoAnnotation",
+          "  static Deprecated deprecated() {",
+          "    return new AutoAnnotation_Baz_deprecated();",
+          "  }",
+          "}");
+
+  @Test
+  public void report() throws Exception {
+    File report = new File(temporaryFolder.getRoot(), "profile.jsonl");
+    Compilation compilation =
+        javac()
+            .withProcessors(new AutoValueProcessor(), new AutoAnnotationProcessor())
+            .withOptions("-Aauto.profile=" + report)
+            .compile(BAZ);
+    assertThat(compilation).succeededWithoutWarnings();
+    List<String> lines = Files.readAllLines(report.toPath(), UTF_8);
+    // AutoValueProcessor is also called in the round that compiles the generated code, and in the
+    // final round, though it has nothing to do there.
+    assertThat(lines).hasSize(6);
+    assertThat(lines.get(0))
+        .startsWith(
+            "{\"processor\":\"AutoValueProcessor\",\"round\":1,\"type\":\"foo.bar.Baz\","
+                + "\"outcome\":\"generated\",\"nanos\":{\"validate\":");
+    assertThat(lines.get(0))
+        .containsMatch("\"decode\":[0-9]+,\"format\":[0-9]+,\"write\":[0-9]+\\}");
+    assertThat(lines.get(0))
+        .containsMatch(
+            "\"extensions\":\\{\"com\\.google\\.auto\\.value\\.extension\\.memoized"
+                + "\\.processor\\.MemoizeExtension\":[0-9]+\\}");
+    assertThat(lines.get(1))
+        .startsWith(
+            "{\"processor\":\"AutoValueProcessor\",\"round\":1,\"types\":1,\"deferred\":0,");
+    assertThat(lines.get(2))
+        .startsWith(
+            "{\"processor\":\"AutoAnnotationProcessor\",\"round\":1,"
+                + "\"type\":\"foo.bar.Baz.deprecated\",\"outcome\":\"generated\",");
+    assertThat(lines.get(3))
+        .startsWith("{\"processor\":\"AutoAnnotationProcessor\",\"round\":1,\"types\":1,");
+    assertThat(lines.get(4))
+        .startsWith("{\"processor\":\"AutoValueProcessor\",\"round\":2,\"types\":0,");
+    assertThat(lines.get(5))
+        .startsWith("{\"processor\":\"AutoValueProcessor\",\"round\":3,\"types\":0,");
+    for (String line : lines) {
+      assertThat(line).startsWith("{");
+      assertThat(line).endsWith("}");
+    }
+  }
+
+  @Test
+  public void noReportByDefault() {
+    File report = new File(temporaryFolder.getRoot(), "profile.jsonl");
+    Compilation compilation =
+        javac()
+            .withProcessors(new AutoValueProcessor(), new AutoAnnotationProcessor())
+            .compile(BAZ);
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThat(report.exists()).isFalse();
+  }
+}
@@ -220,9 +220,13 @@ public class PropertyAnnotationsTest {
                   "  }",
                   "",
                   "  @Override public String toString() {",
-                  "    return \"Baz{\"",
-                  "        + \"buh=\" + buh",
-                  "        + \"}\";",
+                  "    return appendTo(new StringBuilder(27)).toString();",
+                  "  }",
+                  "",
+                  "  StringBuilder appendTo(StringBuilder sb) {",
+                  "    sb.append(\"Baz{buh=\");",
+                  "    sb.append(this.buh);",
+                  "    return sb.append('}');",
                   "  }",
                   "",
                   "  @Override public boolean equals(Object o) {",
@@ -31,6 +31,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.ServiceConfigurationError;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
 import org.junit.Test;
@@ -83,6 +84,31 @@ public final class SimpleServiceLoaderTest {
     assertThat(classes2).containsExactlyElementsIn(classes1).inOrder();
   }
 
+  @Test
+  public void loadTwiceReadsServiceFilesOnce() throws Exception {
+    URL jarUrl =
+        urlForJarWithEntries(
+            CharSequence.class.getName(), String.class.getName(), StringBuilder.class.getName());
+    AtomicInteger lookups = new AtomicInteger();
+    ClassLoader loader =
+        new URLClassLoader(new URL[] {jarUrl}) {
+          @Override
+          public Enumeration<URL> getResources(String name) throws IOException {
+            lookups.incrementAndGet();
+            return super.getResources(name);
+          }
+        };
+
+    ImmutableList<CharSequence> providers1 = SimpleServiceLoader.load(CharSequence.class, loader);
+    ImmutableList<CharSequence> providers2 = SimpleServiceLoader.load(CharSequence.class, loader);
+
+    assertThat(lookups.get()).isEqualTo(1);
+    // Each call makes new provider instances.
+    assertThat(providers2.get(1)).isNotSameInstanceAs(providers1.get(1));
+    List<Class<?>> classes2 = providers2.stream().map(Object::getClass).collect(toList());
+    assertThat(classes2).containsExactly(String.class, StringBuilder.class).inOrder();
+  }
+
   @Test
   public void loadTwiceFromDifferentLoaders() throws Exception {
     URL jarUrl =
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.auto.value.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static com.google.testing.compile.Compiler.javac;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.CompilationRule;
+import com.google.testing.compile.JavaFileObjects;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.tools.JavaFileObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class SymbolCacheTest {
+  @Rule public final CompilationRule compilationRule = new CompilationRule();
+
+  @Test
+  public void cachesLookups() {
+    Elements elementUtils = compilationRule.getElements();
+    SymbolCache cache = new SymbolCache(elementUtils);
+    TypeElement string = cache.getTypeElement("java.lang.String");
+    assertThat(string).isEqualTo(elementUtils.getTypeElement("java.lang.String"));
+    assertThat(cache.getTypeElement("java.lang.String")).isSameInstanceAs(string);
+    assertThat(cache.getTypeMirror("java.lang.String")).isEqualTo(string.asType());
+    assertThat(cache.hits()).isEqualTo(2);
+    assertThat(cache.misses()).isEqualTo(1);
+  }
+
+  @Test
+  public void cachesMissingClasses() {
+    SymbolCache cache = new SymbolCache(compilationRule.getElements());
+    assertThat(cache.getTypeElement("com.example.NoSuchClass")).isNull();
+    assertThat(cache.getTypeElement("com.example.NoSuchClass")).isNull();
+    assertThat(cache.hits()).isEqualTo(1);
+    assertThat(cache.misses()).isEqualTo(1);
+  }
+
+  @Test
+  public void clear() {
+    SymbolCache cache = new SymbolCache(compilationRule.getElements());
+    cache.getTypeElement("java.lang.String");
+    cache.clear();
+    cache.getTypeElement("java.lang.String");
+    assertThat(cache.hits()).isEqualTo(0);
+    assertThat(cache.misses()).isEqualTo(2);
+  }
+
+  @Test
+  public void processorUsesCache() {
+    JavaFileObject javaFileObject =
+        JavaFileObjects.forSourceLines(
+            "foo.bar.Baz",
+            "package foo.bar;",
+            "",
+            "import com.google.auto.value.AutoValue;",
+            "import java.util.List;",
+            "",
+            "@AutoValue",
+            "abstract class Baz {",
+            "  abstract String string();",
+            "  abstract List<String> list();",
+            "",
+            "  @AutoValue",
+            "  abstract static class Inner {",
+            "    abstract String string();",
+            "  }",
+            "}");
+    AutoValueProcessor processor = new AutoValueProcessor();
+    Compilation compilation = javac().withProcessors(processor).compile(javaFileObject);
+    assertThat(compilation).succeededWithoutWarnings();
+    // Both generated classes reference java.lang.String, and both check whether foo.bar.String
+    // exists, so at least those lookups are answered from the cache the second time.
+    assertThat(processor.symbolCache().hits()).isGreaterThan(0L);
+    assertThat(processor.symbolCache().misses()).isGreaterThan(0L);
+  }
+}
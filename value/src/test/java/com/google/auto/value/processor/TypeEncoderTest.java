@@ -27,6 +27,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.testing.compile.Compilation;
 import com.google.testing.compile.CompilationRule;
 import com.google.testing.compile.JavaFileObjects;
+import java.io.IOException;
 import java.util.List;
 import java.util.Set;
 import javax.annotation.processing.AbstractProcessor;
@@ -95,6 +96,21 @@ public class TypeEncoderTest {
             + "\nEND\n"
             + spellings.stream().collect(joining("}\n{", "{", "}"));
     assertThat(decoded).isEqualTo(expected);
+
+    // Decoding and reformatting in a single pass should have the same result as the two passes.
+    StringBuilder reformatted = new StringBuilder();
+    try {
+      new TypeEncoder.TypeRewriter(
+              fakeProgram,
+              new SymbolCache(elementUtils),
+              typeUtils,
+              fakePackage,
+              baseWithoutContainedTypes())
+          .rewriteReformatted(reformatted);
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+    assertThat(reformatted.toString()).isEqualTo(Reformatter.fixup(decoded));
   }
 
   private static class MultipleBounds<K extends List<V> & Comparable<K>, V> {}